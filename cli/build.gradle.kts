@@ -0,0 +1,116 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+plugins {
+    application
+    id("net.octyl.level-headered") version "0.1.2"
+}
+
+repositories {
+    mavenCentral()
+}
+
+java.toolchain.languageVersion = JavaLanguageVersion.of(17)
+
+dependencies {
+    implementation(project(":core"))
+    implementation(libs.groovy.templates)
+    compileOnly(libs.jspecify)
+
+    testImplementation(libs.junit.jupiter)
+    testImplementation(libs.truth)
+    testCompileOnly(libs.jspecify)
+
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+
+    components {
+        withModule("com.google.truth:truth") {
+            withVariant("compile") {
+                withDependencies {
+                    // junit is actually a runtime-only dependency
+                    // See https://github.com/google/truth/issues/333
+                    removeAll { it.group == "junit" }
+                }
+            }
+        }
+    }
+}
+
+levelHeadered {
+    headerTemplate(rootProject.file("HEADER.txt"))
+}
+
+// Git hooks start the CLI for a handful of files, so starting fast matters more than running fast
+val fastStartJvmArgs = listOf("-XX:TieredStopAtLevel=1", "-XX:+UseSerialGC")
+val cdsArchiveName = "levelheadered.jsa"
+
+application {
+    mainClass = "net.octyl.levelheadered.cli.LevelHeaderedCli"
+    applicationName = "levelheadered"
+    applicationDefaultJvmArgs = fastStartJvmArgs + listOf(
+        // Written by cdsArchive. A missing archive, or one from another JDK, is quietly not used.
+        "-XX:SharedArchiveFile=__APP_HOME__/lib/$cdsArchiveName",
+        "-Xshare:auto",
+        "-Xlog:cds=off",
+        "-Xlog:cds+dynamic=off",
+    )
+}
+
+tasks.startScripts {
+    doLast {
+        unixScript.writeText(unixScript.readText().replace("__APP_HOME__", "'\"\$APP_HOME\"'"))
+        windowsScript.writeText(windowsScript.readText().replace("__APP_HOME__", "%APP_HOME%"))
+    }
+}
+
+val cdsArchive by tasks.registering(JavaExec::class) {
+    description = "Archives the classes the installed CLI loads, so it starts faster with the JDK it was " +
+        "installed with."
+    group = "distribution"
+    val libDir = tasks.installDist.map { it.destinationDir.resolve("lib") }
+    val archive = libDir.map { it.resolve(cdsArchiveName) }
+    dependsOn(tasks.installDist)
+    javaLauncher = javaToolchains.launcherFor(java.toolchain)
+    mainClass = application.mainClass
+    // The archive is only used with the same class path, in the same order, as the start scripts
+    classpath(libDir.zip(tasks.startScripts) { dir, startScripts ->
+        startScripts.classpath!!.map { dir.resolve(it.name) }
+    })
+    outputs.file(archive)
+    // Dumping warns about every class it cannot archive, such as Groovy's Java 5 classes
+    jvmArgs(fastStartJvmArgs + listOf("-Xlog:cds=off", "-Xlog:cds+dynamic=off"))
+    jvmArgumentProviders.add { listOf("-XX:ArchiveClassesAtExit=${archive.get()}") }
+
+    // The samples have no headers, so the run exits with 1, and the template has an expression, so Groovy loads
+    val trainingDir = temporaryDir
+    isIgnoreExitValue = true
+    args(
+        "verify", "--header", trainingDir.resolve("HEADER.txt"), "--var", "year=2025",
+        "--", trainingDir.resolve("Example.java"), trainingDir.resolve("example.sh"),
+    )
+    doFirst {
+        trainingDir.resolve("HEADER.txt").writeText("Copyright \${year} Example\n")
+        trainingDir.resolve("Example.java").writeText("class Example {\n}\n")
+        trainingDir.resolve("example.sh").writeText("echo example\n")
+    }
+    doLast {
+        val exitValue = executionResult.get().exitValue
+        if (exitValue != 1) {
+            throw GradleException("Training run of the CLI failed with exit code $exitValue")
+        }
+    }
+}
+
+tasks.installDist {
+    // Not part of the installed files, so a sync must not delete it
+    preserve {
+        include("lib/$cdsArchiveName")
+    }
+    finalizedBy(cdsArchive)
+}
+
+tasks.test {
+    useJUnitPlatform()
+}
@@ -0,0 +1,180 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered.cli;
+
+import net.octyl.levelheadered.rewriter.FileHeaderRewriter;
+import net.octyl.levelheadered.rewriter.StandardFileHeaderRewriter;
+import net.octyl.levelheadered.rewriter.TemplateVariableMatch;
+import org.jspecify.annotations.Nullable;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The parsed command line.
+ *
+ * @param apply whether to apply headers, rather than only verify them
+ * @param headerTemplate the header template file
+ * @param templateVariables the variables to expand the header template with
+ * @param templateVariableMatches how the values of variables may differ in headers that are already present
+ * @param legacyHeaders the files holding the texts of legacy headers to replace
+ * @param rewriters the rewriters, keyed by file name suffix or whole file name
+ * @param readStdin whether to read NUL-separated paths from standard input
+ * @param files the files given as arguments
+ */
+record CliOptions(
+    boolean apply,
+    Path headerTemplate,
+    Map<String, String> templateVariables,
+    Map<String, TemplateVariableMatch> templateVariableMatches,
+    List<Path> legacyHeaders,
+    Map<String, FileHeaderRewriter> rewriters,
+    boolean readStdin,
+    List<Path> files
+) {
+    static final String USAGE = """
+        Usage: levelheadered (verify | apply) --header <file> [options] [--] [<file>...]
+
+        Verifies or applies file headers, like the LevelHeadered Gradle plugin.
+
+        Options:
+          --header <file>           The header template, expanded with Groovy's SimpleTemplateEngine. Required.
+          --var <name>=<value>      A template variable. May be repeated.
+          --match <name>=<match>    How a variable may differ in present headers, YEAR_RANGE or ANY. May be repeated.
+          --legacy-header <file>    A legacy header text to replace with the header. May be repeated.
+          --rewriter <key>=<name>   Use a standard rewriter, such as HASH_COMMENT, for files whose name ends with the
+                                    key. Replaces the default for that key. May be repeated.
+          -z, --stdin               Also read NUL-separated paths from standard input, as written by
+                                    `git diff --cached --name-only -z`.
+          -h, --help                Show this help.
+
+        Exit codes:
+          0  All headers are present, or nothing needed to be applied.
+          1  Headers are missing (verify), or were applied, so the files must be staged again (apply).
+          2  The command line or the header configuration is invalid.
+          3  A file could not be read or written, or another error occurred.
+        """;
+
+    /**
+     * The command line is invalid.
+     */
+    static final class UsageException extends Exception {
+        UsageException(String message) {
+            super(message);
+        }
+
+        UsageException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private static final Map<String, StandardFileHeaderRewriter> STANDARD_REWRITERS = Map.of(
+        "SLASH_STAR_COMMENT", StandardFileHeaderRewriter.SLASH_STAR_COMMENT,
+        "HASH_COMMENT", StandardFileHeaderRewriter.HASH_COMMENT,
+        "PYTHON_COMMENT", StandardFileHeaderRewriter.PYTHON_COMMENT,
+        "DOUBLE_SLASH_COMMENT", StandardFileHeaderRewriter.DOUBLE_SLASH_COMMENT,
+        "DOUBLE_DASH_COMMENT", StandardFileHeaderRewriter.DOUBLE_DASH_COMMENT,
+        "XML_COMMENT", StandardFileHeaderRewriter.XML_COMMENT,
+        "PHP_SLASH_STAR_COMMENT", StandardFileHeaderRewriter.PHP_SLASH_STAR_COMMENT
+    );
+
+    /**
+     * Parses the command line.
+     *
+     * @param args the arguments
+     * @return the options, or {@code null} if help was asked for
+     * @throws UsageException if the arguments are invalid
+     */
+    static @Nullable CliOptions parse(String[] args) throws UsageException {
+        if (args.length == 0) {
+            throw new UsageException("No command given");
+        }
+        if (args[0].equals("-h") || args[0].equals("--help")) {
+            return null;
+        }
+        boolean apply = switch (args[0]) {
+            case "verify" -> false;
+            case "apply" -> true;
+            default -> throw new UsageException("Unknown command '" + args[0] + "', expected verify or apply");
+        };
+        Path headerTemplate = null;
+        Map<String, String> templateVariables = new LinkedHashMap<>();
+        Map<String, TemplateVariableMatch> templateVariableMatches = new LinkedHashMap<>();
+        List<Path> legacyHeaders = new ArrayList<>();
+        Map<String, FileHeaderRewriter> rewriters = new LinkedHashMap<>(StandardFileHeaderRewriter.defaults());
+        boolean readStdin = false;
+        List<Path> files = new ArrayList<>();
+        boolean onlyFiles = false;
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            if (onlyFiles || !arg.startsWith("-")) {
+                files.add(Path.of(arg));
+                continue;
+            }
+            switch (arg) {
+                case "--" -> onlyFiles = true;
+                case "-h", "--help" -> {
+                    return null;
+                }
+                case "-z", "--stdin" -> readStdin = true;
+                case "--header" -> headerTemplate = Path.of(value(args, ++i, arg));
+                case "--legacy-header" -> legacyHeaders.add(Path.of(value(args, ++i, arg)));
+                case "--var" -> {
+                    Map.Entry<String, String> pair = pair(value(args, ++i, arg), arg);
+                    templateVariables.put(pair.getKey(), pair.getValue());
+                }
+                case "--match" -> {
+                    Map.Entry<String, String> pair = pair(value(args, ++i, arg), arg);
+                    templateVariableMatches.put(pair.getKey(), match(pair.getValue()));
+                }
+                case "--rewriter" -> {
+                    Map.Entry<String, String> pair = pair(value(args, ++i, arg), arg);
+                    StandardFileHeaderRewriter rewriter = STANDARD_REWRITERS.get(pair.getValue());
+                    if (rewriter == null) {
+                        throw new UsageException(
+                            "Unknown rewriter '" + pair.getValue() + "', expected one of " + STANDARD_REWRITERS.keySet()
+                        );
+                    }
+                    rewriters.put(pair.getKey(), rewriter);
+                }
+                default -> throw new UsageException("Unknown option '" + arg + "'");
+            }
+        }
+        if (headerTemplate == null) {
+            throw new UsageException("No header template given, use --header <file>");
+        }
+        return new CliOptions(
+            apply, headerTemplate, templateVariables, templateVariableMatches, legacyHeaders, rewriters, readStdin,
+            files
+        );
+    }
+
+    private static String value(String[] args, int index, String option) throws UsageException {
+        if (index >= args.length) {
+            throw new UsageException("Missing value for " + option);
+        }
+        return args[index];
+    }
+
+    private static Map.Entry<String, String> pair(String value, String option) throws UsageException {
+        int equals = value.indexOf('=');
+        if (equals <= 0) {
+            throw new UsageException("Expected <key>=<value> for " + option + ", got '" + value + "'");
+        }
+        return Map.entry(value.substring(0, equals), value.substring(equals + 1));
+    }
+
+    private static TemplateVariableMatch match(String name) throws UsageException {
+        try {
+            return TemplateVariableMatch.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            throw new UsageException("Unknown variable match '" + name + "'", e);
+        }
+    }
+}
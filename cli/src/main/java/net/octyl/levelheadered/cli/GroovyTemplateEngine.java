@@ -0,0 +1,43 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered.cli;
+
+import groovy.text.SimpleTemplateEngine;
+import net.octyl.levelheadered.rewriter.HeaderTexts;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Expands header templates with {@link SimpleTemplateEngine}, like the plugin does.
+ *
+ * <p>
+ * Compiling a template loads the Groovy compiler, which takes longer than checking a few files. Templates without
+ * any expressions or escapes expand to themselves, apart from line endings, so they skip it.
+ * </p>
+ */
+final class GroovyTemplateEngine implements HeaderTexts.TemplateEngine {
+    @Override
+    public String expand(String template, Map<String, String> variables) throws IOException {
+        if (template.indexOf('$') == -1 && template.indexOf('\\') == -1 && !template.contains("<%")) {
+            // SimpleTemplateEngine reads CRLF and CR as LF
+            return template.replace("\r\n", "\n").replace('\r', '\n');
+        }
+        StringWriter writer = new StringWriter();
+        try {
+            // Must copy variables into a new map, as the SimpleTemplateEngine may modify the map during expansion
+            new SimpleTemplateEngine().createTemplate(template).make(new HashMap<>(variables)).writeTo(writer);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Failed to compile header template", e);
+        } catch (RuntimeException e) {
+            // Such as a variable the template uses, but that is not given
+            throw new IOException("Failed to expand header template: " + e.getMessage(), e);
+        }
+        return writer.toString();
+    }
+}
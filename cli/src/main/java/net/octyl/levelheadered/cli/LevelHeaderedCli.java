@@ -0,0 +1,239 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered.cli;
+
+import net.octyl.levelheadered.rewriter.FileHeaderRewriter;
+import net.octyl.levelheadered.rewriter.HeaderReplacement;
+import net.octyl.levelheadered.rewriter.HeaderTexts;
+import net.octyl.levelheadered.rewriter.ModificationWriter;
+import net.octyl.levelheadered.rewriter.PreparedHeader;
+import net.octyl.levelheadered.rewriter.SuffixIndex;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Verifies or applies file headers from the command line, with the same rewriters and template expansion as the
+ * plugin, but without starting Gradle.
+ *
+ * <p>
+ * Files are given as arguments, or as a NUL-separated list on standard input. Files without a rewriter, and binary
+ * files, are skipped. See {@link CliOptions#USAGE} for the options and exit codes.
+ * </p>
+ */
+public final class LevelHeaderedCli {
+    /**
+     * All headers are present, or nothing needed to be applied.
+     */
+    static final int EXIT_OK = 0;
+    /**
+     * Headers are missing, or were applied. Either way, the commit should not go ahead as it is.
+     */
+    static final int EXIT_HEADERS_CHANGED = 1;
+    /**
+     * The command line or the header configuration is invalid.
+     */
+    static final int EXIT_USAGE = 2;
+    /**
+     * A file could not be read or written, or another error occurred.
+     */
+    static final int EXIT_ERROR = 3;
+
+    /**
+     * Runs the command line, and exits with its exit code.
+     *
+     * @param args the arguments
+     */
+    public static void main(String[] args) {
+        int exitCode;
+        try {
+            exitCode = run(args, System.in, System.out, System.err);
+        } catch (RuntimeException e) {
+            // Must not look like missing headers to a git hook
+            e.printStackTrace();
+            exitCode = EXIT_ERROR;
+        }
+        System.exit(exitCode);
+    }
+
+    /**
+     * Runs the command line.
+     *
+     * @param args the arguments
+     * @param stdin the standard input, to read paths from
+     * @param out where to report processed files
+     * @param err where to report problems
+     * @return the exit code
+     */
+    static int run(String[] args, InputStream stdin, PrintStream out, PrintStream err) {
+        CliOptions options;
+        try {
+            options = CliOptions.parse(args);
+        } catch (CliOptions.UsageException e) {
+            err.println("error: " + e.getMessage());
+            err.print(CliOptions.USAGE);
+            return EXIT_USAGE;
+        }
+        if (options == null) {
+            out.print(CliOptions.USAGE);
+            return EXIT_OK;
+        }
+        List<Path> files = new ArrayList<>(options.files());
+        HeaderTexts headerTexts;
+        try {
+            if (options.readStdin()) {
+                files.addAll(readNulSeparatedPaths(stdin));
+            }
+            List<String> legacyHeaders = new ArrayList<>(options.legacyHeaders().size());
+            for (Path legacyHeader : options.legacyHeaders()) {
+                legacyHeaders.add(Files.readString(legacyHeader));
+            }
+            headerTexts = HeaderTexts.expand(
+                new GroovyTemplateEngine(), Files.readString(options.headerTemplate()),
+                options.templateVariables(), options.templateVariableMatches(), legacyHeaders
+            );
+        } catch (IOException e) {
+            err.println("error: " + e.getMessage());
+            return EXIT_USAGE;
+        } catch (IllegalArgumentException e) {
+            err.println("error: " + e.getMessage());
+            return EXIT_USAGE;
+        }
+
+        SuffixIndex<FileHeaderRewriter> rewriters = new SuffixIndex<>(options.rewriters());
+        Map<FileHeaderRewriter, PreparedHeader> preparedHeaders = new HashMap<>();
+        int exitCode = EXIT_OK;
+        for (Path file : files) {
+            Path fileName = file.getFileName();
+            Map.Entry<String, FileHeaderRewriter> rewriterEntry =
+                fileName == null ? null : rewriters.find(fileName.toString());
+            if (rewriterEntry == null) {
+                continue;
+            }
+            FileHeaderRewriter rewriter = rewriterEntry.getValue();
+            PreparedHeader header;
+            try {
+                header = preparedHeaders.computeIfAbsent(
+                    rewriter, k -> headerTexts.prepare(rewriterEntry.getKey(), k)
+                );
+            } catch (IllegalArgumentException e) {
+                err.println("error: " + e.getMessage());
+                return EXIT_USAGE;
+            }
+            try {
+                if (process(file, rewriter, header, options.apply())) {
+                    if (options.apply()) {
+                        out.println("Applied header: " + file);
+                    } else {
+                        err.println("Missing header: " + file);
+                    }
+                    exitCode = Math.max(exitCode, EXIT_HEADERS_CHANGED);
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                err.println("error: " + file + ": " + e.getMessage());
+                exitCode = EXIT_ERROR;
+            }
+        }
+        return exitCode;
+    }
+
+    private static List<Path> readNulSeparatedPaths(InputStream stdin) throws IOException {
+        String list = new String(stdin.readAllBytes(), StandardCharsets.UTF_8);
+        List<Path> paths = new ArrayList<>();
+        int start = 0;
+        while (start < list.length()) {
+            int end = list.indexOf('\0', start);
+            if (end == -1) {
+                end = list.length();
+            }
+            if (end > start) {
+                paths.add(Path.of(list.substring(start, end)));
+            }
+            start = end + 1;
+        }
+        return paths;
+    }
+
+    /**
+     * Checks the header of one file, and applies it if asked to.
+     *
+     * @return whether the header was missing
+     */
+    private static boolean process(Path file, FileHeaderRewriter rewriter, PreparedHeader header, boolean apply)
+        throws IOException {
+        // Staged files are few and small, so read them whole instead of windowing like the plugin
+        byte[] bytes = Files.readAllBytes(file);
+        for (byte b : bytes) {
+            if (b == 0) {
+                // Binary
+                return false;
+            }
+        }
+        if (rewriter.isHeaderPresent(bytes, bytes.length, header)) {
+            return false;
+        }
+        String content;
+        try {
+            content = StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(bytes)).toString();
+        } catch (CharacterCodingException e) {
+            throw new IOException("File is not valid UTF-8", e);
+        }
+        ModificationWriter modificationWriter = rewriter.rewriteHeader(content, header);
+        if (modificationWriter == null) {
+            return false;
+        }
+        if (apply) {
+            StringBuilder newContent = new StringBuilder(content.length() + header.getHeaderText().length() * 2);
+            if (modificationWriter instanceof HeaderReplacement headerReplacement) {
+                newContent.append(headerReplacement.replacement())
+                    .append(content, headerReplacement.replacedLength(), content.length());
+            } else {
+                modificationWriter.writeTo(newContent);
+            }
+            replaceAtomically(file, newContent);
+        }
+        return true;
+    }
+
+    /**
+     * Writes the new content to a sibling temporary file, then moves it over the original, so a failed write never
+     * leaves a truncated file behind.
+     */
+    private static void replaceAtomically(Path file, CharSequence content) throws IOException {
+        Path realFile = file.toRealPath();
+        Path tempFile = Files.createTempFile(realFile.getParent(), "." + realFile.getFileName(), ".tmp");
+        try {
+            Files.write(tempFile, content.toString().getBytes(StandardCharsets.UTF_8));
+            PosixFileAttributeView posixView = Files.getFileAttributeView(realFile, PosixFileAttributeView.class);
+            if (posixView != null) {
+                Files.setPosixFilePermissions(tempFile, posixView.readAttributes().permissions());
+            }
+            try {
+                Files.move(tempFile, realFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, realFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private LevelHeaderedCli() {
+    }
+}
@@ -0,0 +1,12 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+/**
+ * The LevelHeadered command line, for checking headers without Gradle, such as in git hooks.
+ */
+@NullMarked
+package net.octyl.levelheadered.cli;
+
+import org.jspecify.annotations.NullMarked;
@@ -0,0 +1,169 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered.cli;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Tests for {@link LevelHeaderedCli}.
+ */
+class LevelHeaderedCliTest {
+    private static final String BASE_CONTENT = "public class App {\n}\n";
+    private static final String WITH_HEADER_CONTENT = "/*\n * Copyright 2026 Example\n */\n\n" + BASE_CONTENT;
+
+    @TempDir
+    Path dir;
+    private Path headerTemplate;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    @BeforeEach
+    void writeHeaderTemplate() throws IOException {
+        headerTemplate = writeFile("HEADER.txt", "Copyright ${year} Example\n");
+    }
+
+    private Path writeFile(String name, String content) throws IOException {
+        Path file = dir.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+        return file;
+    }
+
+    private int run(String stdin, String... args) {
+        return LevelHeaderedCli.run(
+            args,
+            new ByteArrayInputStream(stdin.getBytes(StandardCharsets.UTF_8)),
+            new PrintStream(out, true, StandardCharsets.UTF_8),
+            new PrintStream(err, true, StandardCharsets.UTF_8)
+        );
+    }
+
+    private int runOn(String command, Path... files) {
+        String[] args = new String[files.length + 6];
+        args[0] = command;
+        args[1] = "--header";
+        args[2] = headerTemplate.toString();
+        args[3] = "--var";
+        args[4] = "year=2026";
+        args[5] = "--";
+        for (int i = 0; i < files.length; i++) {
+            args[i + 6] = files[i].toString();
+        }
+        return run("", args);
+    }
+
+    private String out() {
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private String err() {
+        return err.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void printsUsageForHelp() {
+        assertThat(run("", "--help")).isEqualTo(LevelHeaderedCli.EXIT_OK);
+        assertThat(out()).isEqualTo(CliOptions.USAGE);
+    }
+
+    @Test
+    void rejectsInvalidCommandLine() {
+        assertThat(run("")).isEqualTo(LevelHeaderedCli.EXIT_USAGE);
+        assertThat(run("", "check", "--header", headerTemplate.toString())).isEqualTo(LevelHeaderedCli.EXIT_USAGE);
+        assertThat(run("", "verify")).isEqualTo(LevelHeaderedCli.EXIT_USAGE);
+        assertThat(run("", "verify", "--header", headerTemplate.toString(), "--rewriter", ".x=NONE"))
+            .isEqualTo(LevelHeaderedCli.EXIT_USAGE);
+        assertThat(err()).contains("error: Unknown command 'check'");
+        assertThat(err()).contains(CliOptions.USAGE);
+    }
+
+    @Test
+    void rejectsMissingHeaderTemplate() throws IOException {
+        Files.delete(headerTemplate);
+        assertThat(runOn("verify", writeFile("App.java", BASE_CONTENT))).isEqualTo(LevelHeaderedCli.EXIT_USAGE);
+        assertThat(err()).startsWith("error: ");
+    }
+
+    @Test
+    void verifyReportsMissingHeaderWithoutChangingFile() throws IOException {
+        Path missing = writeFile("App.java", BASE_CONTENT);
+        Path present = writeFile("Other.java", WITH_HEADER_CONTENT);
+        assertThat(runOn("verify", missing, present)).isEqualTo(LevelHeaderedCli.EXIT_HEADERS_CHANGED);
+        assertThat(err()).isEqualTo("Missing header: " + missing + System.lineSeparator());
+        assertThat(Files.readString(missing)).isEqualTo(BASE_CONTENT);
+    }
+
+    @Test
+    void verifyPassesWhenHeadersArePresent() throws IOException {
+        assertThat(runOn("verify", writeFile("App.java", WITH_HEADER_CONTENT))).isEqualTo(LevelHeaderedCli.EXIT_OK);
+        assertThat(err()).isEmpty();
+    }
+
+    @Test
+    void applyWritesMissingHeader() throws IOException {
+        Path file = writeFile("App.java", BASE_CONTENT);
+        assertThat(runOn("apply", file)).isEqualTo(LevelHeaderedCli.EXIT_HEADERS_CHANGED);
+        assertThat(out()).isEqualTo("Applied header: " + file + System.lineSeparator());
+        assertThat(Files.readString(file)).isEqualTo(WITH_HEADER_CONTENT);
+
+        out.reset();
+        assertThat(runOn("apply", file)).isEqualTo(LevelHeaderedCli.EXIT_OK);
+        assertThat(out()).isEmpty();
+        assertThat(runOn("verify", file)).isEqualTo(LevelHeaderedCli.EXIT_OK);
+    }
+
+    @Test
+    void skipsFilesWithoutRewriterAndBinaryFiles() throws IOException {
+        Path noRewriter = writeFile("notes.unknown", BASE_CONTENT);
+        Path binary = writeFile("Binary.java", "class Binary {\0}\n");
+        assertThat(runOn("apply", noRewriter, binary)).isEqualTo(LevelHeaderedCli.EXIT_OK);
+        assertThat(Files.readString(noRewriter)).isEqualTo(BASE_CONTENT);
+        assertThat(Files.readString(binary)).isEqualTo("class Binary {\0}\n");
+    }
+
+    @Test
+    void reportsUnreadableFile() throws IOException {
+        Path present = writeFile("App.java", WITH_HEADER_CONTENT);
+        Path absent = dir.resolve("Absent.java");
+        assertThat(runOn("verify", absent, present)).isEqualTo(LevelHeaderedCli.EXIT_ERROR);
+        assertThat(err()).startsWith("error: " + absent + ": ");
+    }
+
+    @Test
+    void readsNulSeparatedPathsFromStdin() throws IOException {
+        Path first = writeFile("First.java", BASE_CONTENT);
+        Path second = writeFile("with space/Second.java", BASE_CONTENT);
+        Path argument = writeFile("Third.java", BASE_CONTENT);
+        int exitCode = run(
+            first + "\0\0" + second + "\0",
+            "apply", "--header", headerTemplate.toString(), "--var", "year=2026", "-z", argument.toString()
+        );
+        assertThat(exitCode).isEqualTo(LevelHeaderedCli.EXIT_HEADERS_CHANGED);
+        assertThat(Files.readString(first)).isEqualTo(WITH_HEADER_CONTENT);
+        assertThat(Files.readString(second)).isEqualTo(WITH_HEADER_CONTENT);
+        assertThat(Files.readString(argument)).isEqualTo(WITH_HEADER_CONTENT);
+    }
+
+    @Test
+    void ignoresStdinWithoutOption() throws IOException {
+        Path file = writeFile("App.java", BASE_CONTENT);
+        int exitCode = run(file + "\0", "verify", "--header", headerTemplate.toString(), "--var", "year=2026");
+        assertThat(exitCode).isEqualTo(LevelHeaderedCli.EXIT_OK);
+        assertThat(Files.readString(file)).isEqualTo(BASE_CONTENT);
+    }
+}
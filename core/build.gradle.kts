@@ -0,0 +1,71 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+plugins {
+    `java-library`
+    id("net.octyl.level-headered") version "0.1.2"
+    id("me.champeau.jmh") version "0.7.3"
+}
+
+repositories {
+    mavenCentral()
+}
+
+java.toolchain.languageVersion = JavaLanguageVersion.of(17)
+
+dependencies {
+    // The rewriters must not depend on Gradle, so the CLI can use them without it
+    compileOnlyApi(libs.jspecify)
+    jmhCompileOnly(libs.jspecify)
+
+    testImplementation(libs.junit.jupiter)
+    testImplementation(libs.truth)
+    testCompileOnly(libs.jspecify)
+
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+
+    components {
+        withModule("com.google.truth:truth") {
+            withVariant("compile") {
+                withDependencies {
+                    // junit is actually a runtime-only dependency
+                    // See https://github.com/google/truth/issues/333
+                    removeAll { it.group == "junit" }
+                }
+            }
+        }
+    }
+}
+
+levelHeadered {
+    headerTemplate(rootProject.file("HEADER.txt"))
+}
+
+jmh {
+    jmhVersion = "1.37"
+    // Report allocation rates next to timings, so allocation regressions show up as numbers too
+    profilers.add("gc")
+    resultFormat = "JSON"
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+    options.compilerArgs.addAll(listOf("-parameters", "-Werror"))
+}
+
+tasks.javadoc {
+    val options = options as StandardJavadocDocletOptions
+    options.encoding = "UTF-8"
+    options.addBooleanOption("Werror", true)
+
+    // Allow @SuppressWarnings with doclint
+    javadocTool = javaToolchains.javadocToolFor {
+        languageVersion.set(JavaLanguageVersion.of(21))
+    }
+}
+
+tasks.test {
+    useJUnitPlatform()
+}
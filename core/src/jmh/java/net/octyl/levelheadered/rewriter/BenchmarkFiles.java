@@ -0,0 +1,58 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered.rewriter;
+
+/**
+ * Generates file contents for the rewriter benchmarks.
+ */
+final class BenchmarkFiles {
+    static final String HEADER_TEXT = """
+        SPDX-FileCopyrightText: Example Author <author@example.com>
+        SPDX-License-Identifier: MPL-2.0
+        """;
+
+    private static final String CLASS_BODY = """
+        package com.example;
+
+        import java.util.List;
+        import java.util.Objects;
+
+        public final class Example {
+            private final String name;
+            private final List<String> values;
+
+            public Example(String name, List<String> values) {
+                this.name = Objects.requireNonNull(name);
+                this.values = List.copyOf(values);
+            }
+
+            @Override
+            public String toString() {
+                return "Example[" + name + ", " + values + "]";
+            }
+        }
+        """;
+
+    /**
+     * Generates Java-like source code of about the given size, by repeating a class body.
+     *
+     * @param size the size in characters
+     * @param newline the line ending to use
+     * @return the source code
+     */
+    static String javaSource(int size, String newline) {
+        String body = CLASS_BODY.replace("\n", newline);
+        StringBuilder builder = new StringBuilder(size + body.length());
+        while (builder.length() < size) {
+            builder.append(body);
+        }
+        builder.setLength(size);
+        return builder.toString();
+    }
+
+    private BenchmarkFiles() {
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered.rewriter;
+
+import org.jspecify.annotations.Nullable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link FileHeaderRewriter#detectLineEnding(String)}, and its byte equivalent.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileHeaderRewriterBenchmark {
+    public enum LineEnding {
+        LF("\n"),
+        CRLF("\r\n");
+
+        final String value;
+
+        LineEnding(String value) {
+            this.value = value;
+        }
+    }
+
+    @Param({"1024", "102400", "10485760"})
+    public int fileSize;
+
+    @Param
+    public LineEnding lineEnding;
+
+    private String fileContent;
+    private byte[] fileBytes;
+
+    @Setup
+    public void setUp() {
+        fileContent = BenchmarkFiles.javaSource(fileSize, lineEnding.value);
+        fileBytes = fileContent.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String detectLineEnding() {
+        return FileHeaderRewriter.detectLineEnding(fileContent);
+    }
+
+    @Benchmark
+    public @Nullable String detectLineEndingBytes() {
+        return RewriteUtil.detectLineEnding(fileBytes, fileBytes.length);
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered.rewriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link RewriteUtil#getIndexOfFirstNonWhitespaceChar(String)}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RewriteUtilBenchmark {
+    @Param({"1024", "102400", "10485760"})
+    public int fileSize;
+
+    /**
+     * How much of the file is leading whitespace. A whitespace-only file is the worst case.
+     */
+    @Param({"0", "64", "ALL"})
+    public String leadingWhitespace;
+
+    private String fileContent;
+
+    @Setup
+    public void setUp() {
+        if (leadingWhitespace.equals("ALL")) {
+            fileContent = " \n\t".repeat(fileSize / 3 + 1).substring(0, fileSize);
+        } else {
+            fileContent = " ".repeat(Integer.parseInt(leadingWhitespace))
+                + BenchmarkFiles.javaSource(fileSize, "\n");
+        }
+    }
+
+    @Benchmark
+    public int getIndexOfFirstNonWhitespaceChar() {
+        return RewriteUtil.getIndexOfFirstNonWhitespaceChar(fileContent);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered.rewriter;
+
+import org.jspecify.annotations.Nullable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks each branch of {@link SlashStarCommentRewriter#rewriteHeader(String, PreparedHeader)}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SlashStarCommentRewriterBenchmark {
+    public enum FileCase {
+        HEADER_PRESENT,
+        JAVADOC_FIRST,
+        EXISTING_COMMENT_REPLACED,
+        UNCLOSED_COMMENT,
+        EMPTY_FILE,
+    }
+
+    @Param({"1024", "102400", "10485760"})
+    public int fileSize;
+
+    @Param
+    public FileCase fileCase;
+
+    private final FileHeaderRewriter rewriter = StandardFileHeaderRewriter.SLASH_STAR_COMMENT;
+    private PreparedHeader header;
+    private String fileContent;
+    private StringBuilder output;
+
+    @Setup
+    public void setUp() {
+        header = rewriter.prepare(BenchmarkFiles.HEADER_TEXT);
+        String source = BenchmarkFiles.javaSource(fileSize, "\n");
+        fileContent = switch (fileCase) {
+            case HEADER_PRESENT -> header.getRendered("\n") + "\n\n" + source;
+            case JAVADOC_FIRST -> "/**\n * Some documentation.\n */\n" + source;
+            case EXISTING_COMMENT_REPLACED -> "/*\n * An old license header.\n */\n\n" + source;
+            case UNCLOSED_COMMENT -> "/*\n * A comment that never ends.\n" + source.replace("*/", "");
+            // Whitespace only, which takes the empty file branch
+            case EMPTY_FILE -> "\n".repeat(fileSize);
+        };
+        output = new StringBuilder(fileContent.length() + header.getRendered("\n").length() + 2);
+    }
+
+    @Benchmark
+    public @Nullable ModificationWriter rewriteHeader() {
+        return rewriter.rewriteHeader(fileContent, header);
+    }
+
+    @Benchmark
+    public StringBuilder rewriteHeaderAndWrite() throws IOException {
+        output.setLength(0);
+        ModificationWriter modificationWriter = rewriter.rewriteHeader(fileContent, header);
+        if (modificationWriter != null) {
+            modificationWriter.writeTo(output);
+        }
+        return output;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered.rewriter;
+
+import org.jspecify.annotations.Nullable;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Describes how a language writes comments, so {@link CommentStyleRewriter} can write headers in it.
+ *
+ * <p>
+ * A style either uses line comments, where every line starts with {@link #linePrefix()}, or block comments, which
+ * open with {@link #blockStart()}, continue with {@link #linePrefix()} and close with {@link #blockEnd()} on their own
+ * lines.
+ * </p>
+ *
+ * <p>
+ * Not a record, as the configuration cache can only recreate records that are public.
+ * </p>
+ */
+final class CommentStyle implements Serializable {
+    /**
+     * A shebang line, such as {@code #!/bin/sh}.
+     */
+    static final Preamble SHEBANG = new Preamble("#!", null, false);
+    /**
+     * A Python coding declaration, such as {@code # -*- coding: utf-8 -*-}, which is only read on the first two lines.
+     */
+    static final Preamble CODING_COLON = new Preamble("#", "coding:", true);
+    /**
+     * A Python coding declaration, such as {@code # vim: set fileencoding=utf-8 :}.
+     */
+    static final Preamble CODING_EQUALS = new Preamble("#", "coding=", true);
+    /**
+     * An XML declaration, such as {@code <?xml version="1.0"?>}.
+     */
+    static final Preamble XML_DECLARATION = new Preamble("<?xml", "?>", false);
+    /**
+     * A PHP opening tag.
+     */
+    static final Preamble PHP_OPEN_TAG = new Preamble("<?php", null, false);
+
+    /**
+     * Text that must stay at the very start of a file. It extends to the end of the line that contains {@link #end()}.
+     * Preambles may follow each other, like a shebang and a coding declaration, but each one only appears once.
+     */
+    static final class Preamble implements Serializable {
+        private final String start;
+        private final @Nullable String end;
+        private final boolean singleLine;
+
+        /**
+         * Creates a preamble.
+         *
+         * @param start how the preamble starts
+         * @param end how the preamble ends, or {@code null} if it ends with its first line
+         * @param singleLine whether {@code end} must be on the first line, otherwise the text is not this preamble
+         */
+        Preamble(String start, @Nullable String end, boolean singleLine) {
+            this.start = start;
+            this.end = end;
+            this.singleLine = singleLine;
+        }
+
+        /**
+         * {@return how the preamble starts}
+         */
+        String start() {
+            return start;
+        }
+
+        /**
+         * {@return how the preamble ends, or {@code null} if it ends with its first line}
+         */
+        @Nullable String end() {
+            return end;
+        }
+
+        /**
+         * {@return whether {@link #end()} must be on the first line, otherwise the text is not this preamble}
+         */
+        boolean singleLine() {
+            return singleLine;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object o) {
+            return o instanceof Preamble that
+                && start.equals(that.start)
+                && Objects.equals(end, that.end)
+                && singleLine == that.singleLine;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(start, end, singleLine);
+        }
+
+        @Override
+        public String toString() {
+            return "Preamble[start=" + start + ", end=" + end + ", singleLine=" + singleLine + "]";
+        }
+    }
+
+    static CommentStyle lineComment(String linePrefix, Preamble... preambles) {
+        return new CommentStyle(null, linePrefix, null, null, null, List.of(preambles));
+    }
+
+    static CommentStyle blockComment(
+        String blockStart, String linePrefix, String blockEnd, @Nullable String docCommentStart, String forbidden,
+        Preamble... preambles
+    ) {
+        return new CommentStyle(blockStart, linePrefix, blockEnd, docCommentStart, forbidden, List.of(preambles));
+    }
+
+    private final @Nullable String blockStart;
+    private final String linePrefix;
+    private final @Nullable String blockEnd;
+    private final @Nullable String docCommentStart;
+    private final @Nullable String forbidden;
+    private final List<Preamble> preambles;
+
+    private CommentStyle(
+        @Nullable String blockStart,
+        String linePrefix,
+        @Nullable String blockEnd,
+        @Nullable String docCommentStart,
+        @Nullable String forbidden,
+        List<Preamble> preambles
+    ) {
+        if ((blockStart == null) != (blockEnd == null)) {
+            throw new IllegalArgumentException("Block comments need both a start and an end");
+        }
+        this.blockStart = blockStart;
+        this.linePrefix = linePrefix;
+        this.blockEnd = blockEnd;
+        this.docCommentStart = docCommentStart;
+        this.forbidden = forbidden;
+        this.preambles = List.copyOf(preambles);
+    }
+
+    /**
+     * {@return the start of a block comment, or {@code null} for line comments}
+     */
+    @Nullable String blockStart() {
+        return blockStart;
+    }
+
+    /**
+     * {@return the prefix of each line of the header text}
+     */
+    String linePrefix() {
+        return linePrefix;
+    }
+
+    /**
+     * {@return the end of a block comment, or {@code null} for line comments}
+     */
+    @Nullable String blockEnd() {
+        return blockEnd;
+    }
+
+    /**
+     * {@return the start of a documentation comment, which is kept after the header instead of replaced, or
+     * {@code null} if there are none}
+     */
+    @Nullable String docCommentStart() {
+        return docCommentStart;
+    }
+
+    /**
+     * {@return a sequence the header text may not contain, as it would end the comment, or {@code null}}
+     */
+    @Nullable String forbidden() {
+        return forbidden;
+    }
+
+    /**
+     * {@return the lines that must stay at the start of the file, before the header}
+     */
+    List<Preamble> preambles() {
+        return preambles;
+    }
+
+    /**
+     * {@return whether this style uses line comments}
+     */
+    boolean isLineComment() {
+        return blockStart == null;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+        return o instanceof CommentStyle that
+            && Objects.equals(blockStart, that.blockStart)
+            && linePrefix.equals(that.linePrefix)
+            && Objects.equals(blockEnd, that.blockEnd)
+            && Objects.equals(docCommentStart, that.docCommentStart)
+            && Objects.equals(forbidden, that.forbidden)
+            && preambles.equals(that.preambles);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(blockStart, linePrefix, blockEnd, docCommentStart, forbidden, preambles);
+    }
+
+    @Override
+    public String toString() {
+        return "CommentStyle[blockStart=" + blockStart + ", linePrefix=" + linePrefix + ", blockEnd=" + blockEnd
+            + ", docCommentStart=" + docCommentStart + ", forbidden=" + forbidden + ", preambles=" + preambles + "]";
+    }
+}
@@ -0,0 +1,436 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered.rewriter;
+
+import org.jspecify.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Writes headers as comments described by a {@link CommentStyle}. All styles share this one scan over the start of
+ * the file, so a new language only needs a new descriptor.
+ *
+ * <p>
+ * The preambles of the style, such as a shebang, are kept at the start of the file and the header goes right after
+ * them. After any whitespace, an existing block comment is taken to be the old header and replaced. Line comments are
+ * only replaced if they are a legacy header, as they also hold other things, like documentation or tool directives.
+ * A changed header in line comments must therefore be given as a legacy header to be replaced. Otherwise, the header
+ * is inserted, followed by a blank line.
+ * </p>
+ */
+final class CommentStyleRewriter implements StandardFileHeaderRewriter {
+    /**
+     * How much whitespace to allow before the header when sizing the header window.
+     */
+    private static final int LEADING_WHITESPACE_ALLOWANCE = 256;
+    /**
+     * How long the preambles may be together for the header window to cover them.
+     */
+    private static final int PREAMBLE_ALLOWANCE = 256;
+
+    private final CommentStyle style;
+    private final transient byte[][] preambleStarts;
+    private final transient byte[] @Nullable [] preambleEnds;
+    private final transient boolean[] preambleSingleLine;
+    private final transient byte[] linePrefixBytes;
+
+    CommentStyleRewriter(CommentStyle style) {
+        this.style = style;
+        int preambleCount = style.preambles().size();
+        this.preambleStarts = new byte[preambleCount][];
+        this.preambleEnds = new byte[preambleCount][];
+        this.preambleSingleLine = new boolean[preambleCount];
+        for (int i = 0; i < preambleCount; i++) {
+            CommentStyle.Preamble preamble = style.preambles().get(i);
+            preambleStarts[i] = preamble.start().getBytes(StandardCharsets.UTF_8);
+            String end = preamble.end();
+            preambleEnds[i] = end == null ? null : end.getBytes(StandardCharsets.UTF_8);
+            preambleSingleLine[i] = preamble.singleLine();
+        }
+        this.linePrefixBytes = style.linePrefix().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private String makeComment(String newline, String headerText) {
+        StringBuilder commentBuilder = new StringBuilder();
+        if (style.blockStart() != null) {
+            commentBuilder.append(style.blockStart()).append(newline);
+        }
+        String forbidden = style.forbidden();
+        // The header text is not split by `newline` as it comes normalized from the user input.
+        String[] lines = headerText.strip().split("\n", -1);
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+            if (forbidden != null && line.contains(forbidden)) {
+                throw new IllegalArgumentException("Header text cannot contain '" + forbidden + "' sequence");
+            }
+            if (i > 0) {
+                commentBuilder.append(newline);
+            }
+            if (line.isBlank()) {
+                commentBuilder.append(style.linePrefix().stripTrailing());
+                continue;
+            }
+            commentBuilder.append(style.linePrefix()).append(' ').append(line.stripTrailing());
+        }
+        if (style.blockEnd() != null) {
+            commentBuilder.append(newline).append(style.blockEnd());
+        }
+        return commentBuilder.toString();
+    }
+
+    @Override
+    public PreparedHeader prepare(String headerText) {
+        return PreparedHeader.of(headerText, makeComment("\n", headerText));
+    }
+
+    @Override
+    public int headerWindowSize(PreparedHeader header) {
+        // Line comments also need the start of the next line, to see that the comment ends with the header.
+        LegacyHeaderIndex legacyHeaders = header.getLegacyHeaders();
+        int searchLength = legacyHeaders == null ? 0 : legacyHeaders.getSearchLength();
+        return PREAMBLE_ALLOWANCE + LEADING_WHITESPACE_ALLOWANCE + Math.max(header.getMaxMatchedLength(), searchLength)
+            + "\r\n".length() + style.linePrefix().length();
+    }
+
+    @Override
+    public boolean isHeaderPresent(byte[] window, int length, PreparedHeader header) {
+        String newline = RewriteUtil.detectLineEnding(window, length);
+        if (newline == null) {
+            // Let the full check report mixed line endings
+            return false;
+        }
+        int bodyStart = findBodyStart(window, length);
+        if (bodyStart == -1) {
+            return false;
+        }
+        int indexOfFirstNonWhitespace = RewriteUtil.getIndexOfFirstNonWhitespaceByte(window, bodyStart, length);
+        int headerEnd = indexOfFirstNonWhitespace == -1
+            ? -1
+            : header.matchAt(window, indexOfFirstNonWhitespace, length, newline);
+        if (headerEnd == -1) {
+            return false;
+        }
+        if (!style.isLineComment()) {
+            return true;
+        }
+        // The next line must not continue the comment
+        int nextLine = headerEnd + newline.length();
+        return nextLine + linePrefixBytes.length <= length
+            && window[nextLine - 1] == '\n'
+            && (newline.length() == 1 || window[nextLine - 2] == '\r')
+            && !startsWith(window, nextLine, length, linePrefixBytes);
+    }
+
+    /**
+     * Finds where the content after the preambles starts, in UTF-8 bytes.
+     *
+     * @return the index, or {@code -1} if the end of a preamble is not in the bytes
+     */
+    private int findBodyStart(byte[] bytes, int length) {
+        int bodyStart = 0;
+        boolean[] seen = new boolean[preambleStarts.length];
+        nextPreamble:
+        while (true) {
+            for (int i = 0; i < preambleStarts.length; i++) {
+                if (seen[i] || !startsWith(bytes, bodyStart, length, preambleStarts[i])) {
+                    continue;
+                }
+                int from = bodyStart + preambleStarts[i].length;
+                int lf = RewriteUtil.indexOf(bytes, (byte) '\n', from, length);
+                byte[] end = preambleEnds[i];
+                if (end != null) {
+                    int endIndex = indexOf(bytes, end, from, preambleSingleLine[i] && lf != -1 ? lf : length);
+                    if (endIndex == -1) {
+                        if (preambleSingleLine[i] && lf != -1) {
+                            // Some other text that starts the same way
+                            continue;
+                        }
+                        return -1;
+                    }
+                    lf = RewriteUtil.indexOf(bytes, (byte) '\n', endIndex, length);
+                }
+                if (lf == -1) {
+                    return -1;
+                }
+                seen[i] = true;
+                bodyStart = lf + 1;
+                continue nextPreamble;
+            }
+            return bodyStart;
+        }
+    }
+
+    private static boolean startsWith(byte[] bytes, int offset, int length, byte[] prefix) {
+        int end = offset + prefix.length;
+        return end <= length && Arrays.mismatch(bytes, offset, end, prefix, 0, prefix.length) == -1;
+    }
+
+    private static int indexOf(byte[] bytes, byte[] target, int from, int length) {
+        for (int i = RewriteUtil.indexOf(bytes, target[0], from, length); i != -1;
+             i = RewriteUtil.indexOf(bytes, target[0], i + 1, length)) {
+            if (startsWith(bytes, i, length, target)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    @Nullable
+    public ModificationWriter rewriteHeader(String fileContent, String headerText) {
+        return rewriteHeader(fileContent, prepare(headerText));
+    }
+
+    @Override
+    @Nullable
+    public ModificationWriter rewriteHeader(String fileContent, PreparedHeader header) {
+        String newline = FileHeaderRewriter.detectLineEnding(fileContent);
+        String headerTextAsComment = header.getRendered(newline);
+        int bodyStart = findBodyStart(fileContent);
+        boolean hasPreamble = bodyStart > 0;
+        if (bodyStart == -1) {
+            // The preamble is the whole file
+            bodyStart = fileContent.length();
+        }
+        String preamble = fileContent.substring(0, bodyStart);
+        if (!preamble.isEmpty() && !preamble.endsWith("\n")) {
+            preamble += newline;
+        }
+        int indexOfFirstNonWhitespace = RewriteUtil.getIndexOfFirstNonWhitespaceChar(fileContent, bodyStart);
+        if (indexOfFirstNonWhitespace == -1) {
+            // Nothing but the preamble, so the header replaces the whitespace after it, keeping a final line ending
+            String end = fileContent.indexOf('\n', bodyStart) == -1 ? "" : newline;
+            return replaceStart(fileContent, fileContent.length(), preamble + headerTextAsComment + end, false);
+        }
+        if (isHeaderAt(fileContent, indexOfFirstNonWhitespace, header, newline)) {
+            return null;
+        }
+        // If the content is only a header window, these decisions hold for the whole file only if we saw the whole
+        // preamble, the first token and a line ending in it.
+        boolean decidedByWindow = (!hasPreamble || bodyStart <= PREAMBLE_ALLOWANCE)
+            && indexOfFirstNonWhitespace - bodyStart <= LEADING_WHITESPACE_ALLOWANCE
+            && fileContent.indexOf('\n') != -1;
+        if (style.isLineComment()) {
+            int headerEnd = header.matchAt(fileContent, indexOfFirstNonWhitespace, newline);
+            if (headerEnd != -1 && fileContent.startsWith(newline, headerEnd)) {
+                // The header is present, but another comment follows right after it, so separate them with a blank
+                // line. Inserting another header would leave the header followed by a comment again.
+                return replaceStart(
+                    fileContent, headerEnd + newline.length(), fileContent.substring(0, headerEnd) + newline + newline,
+                    decidedByWindow
+                );
+            }
+        }
+        String leadingWhitespace = fileContent.substring(bodyStart, indexOfFirstNonWhitespace);
+        LegacyHeaderIndex legacyHeaders = header.getLegacyHeaders();
+        if (legacyHeaders != null) {
+            return replaceLegacyHeader(
+                fileContent, preamble, bodyStart, indexOfFirstNonWhitespace, legacyHeaders, header, newline,
+                decidedByWindow
+            );
+        }
+        String docCommentStart = style.docCommentStart();
+        if (docCommentStart != null && fileContent.startsWith(docCommentStart, indexOfFirstNonWhitespace)
+            && indexOfFirstNonWhitespace + docCommentStart.length() < fileContent.length()) {
+            // Insert the new header before the existing documentation comment, with newline inbetween
+            return replaceStart(
+                fileContent, indexOfFirstNonWhitespace,
+                preamble + leadingWhitespace + headerTextAsComment + newline + newline,
+                decidedByWindow
+            );
+        }
+        String blockStart = style.blockStart();
+        String blockEnd = style.blockEnd();
+        if (blockStart != null && blockEnd != null && fileContent.startsWith(blockStart, indexOfFirstNonWhitespace)) {
+            String closer = blockEnd.strip();
+            int indexOfExistingCommentEnd = fileContent.indexOf(
+                closer, indexOfFirstNonWhitespace + blockStart.length()
+            );
+            if (indexOfExistingCommentEnd != -1) {
+                // Replace the existing comment
+                return replaceStart(
+                    fileContent, indexOfExistingCommentEnd + closer.length(),
+                    preamble + leadingWhitespace + headerTextAsComment,
+                    decidedByWindow
+                );
+            }
+            // Unclosed comment, just insert the new header before it, with newline inbetween
+            // The comment may be closed past the end of a header window, so this is never decided by it
+            return replaceStart(
+                fileContent, indexOfFirstNonWhitespace,
+                preamble + leadingWhitespace + headerTextAsComment + newline + newline,
+                false
+            );
+        }
+        if (blockStart == null && fileContent.startsWith(style.linePrefix(), indexOfFirstNonWhitespace)) {
+            // Some other comment, keep it after the new header, with a blank line inbetween
+            return replaceStart(
+                fileContent, indexOfFirstNonWhitespace,
+                preamble + leadingWhitespace + headerTextAsComment + newline + newline,
+                decidedByWindow
+            );
+        }
+        // No existing comment, just insert the new header after the preamble
+        // Add a blank line if there is none in the whitespace
+        boolean addBlankLine = !leadingWhitespace.contains(newline);
+        String newlines = addBlankLine ? newline + newline : newline;
+        return replaceStart(fileContent, bodyStart, preamble + headerTextAsComment + newlines, decidedByWindow);
+    }
+
+    /**
+     * Replaces the first legacy header with the new header. Without one, other comments are kept, and the new header
+     * is inserted before them.
+     */
+    private ModificationWriter replaceLegacyHeader(
+        String fileContent, String preamble, int bodyStart, int indexOfFirstNonWhitespace,
+        LegacyHeaderIndex legacyHeaders, PreparedHeader header, String newline, boolean decidedByWindow
+    ) {
+        String headerTextAsComment = header.getRendered(newline);
+        String leadingWhitespace = fileContent.substring(bodyStart, indexOfFirstNonWhitespace);
+        // Legacy headers are only looked for in the header window, so the decision is the same for the whole file once
+        // all of it is seen
+        int searchLimit = headerWindowSize(header);
+        decidedByWindow &= fileContent.length() >= searchLimit;
+        LegacyHeaderIndex.Match legacyHeader = legacyHeaders.find(
+            fileContent, indexOfFirstNonWhitespace, searchLimit
+        );
+        if (legacyHeader != null && style.isLineComment()) {
+            // A line comment that continues past the legacy header is some other comment
+            int nextLine = legacyHeader.end() + newline.length();
+            if (nextLine + style.linePrefix().length() > fileContent.length()) {
+                decidedByWindow = false;
+            }
+            boolean endsLine = legacyHeader.end() == fileContent.length()
+                || fileContent.startsWith(newline, legacyHeader.end());
+            if (!endsLine || fileContent.startsWith(style.linePrefix(), nextLine)) {
+                legacyHeader = null;
+            }
+        }
+        if (legacyHeader == null) {
+            boolean startsWithComment = fileContent.startsWith(
+                style.isLineComment() ? style.linePrefix() : Objects.requireNonNull(style.blockStart()),
+                indexOfFirstNonWhitespace
+            );
+            if (startsWithComment) {
+                // Insert the new header before the existing comment, with newline inbetween
+                return replaceStart(
+                    fileContent, indexOfFirstNonWhitespace,
+                    preamble + leadingWhitespace + headerTextAsComment + newline + newline,
+                    decidedByWindow
+                );
+            }
+            // Add a blank line if there is none in the whitespace
+            String newlines = leadingWhitespace.contains(newline) ? newline : newline + newline;
+            return replaceStart(fileContent, bodyStart, preamble + headerTextAsComment + newlines, decidedByWindow);
+        }
+        if (legacyHeader.start() == indexOfFirstNonWhitespace) {
+            // Replace the legacy header in place
+            return replaceStart(
+                fileContent, legacyHeader.end(), preamble + leadingWhitespace + headerTextAsComment, decidedByWindow
+            );
+        }
+        // Other comments come first, keep them after the new header and drop the legacy header and whitespace after it
+        int indexAfterLegacyHeader = RewriteUtil.getIndexOfFirstNonWhitespaceChar(fileContent, legacyHeader.end());
+        // Only whitespace may follow in this content, but not in the rest of the file
+        boolean sawNextToken = indexAfterLegacyHeader != -1;
+        return replaceStart(
+            fileContent, sawNextToken ? indexAfterLegacyHeader : legacyHeader.end(),
+            preamble + leadingWhitespace + headerTextAsComment + newline + newline
+                + fileContent.substring(indexOfFirstNonWhitespace, legacyHeader.start()),
+            decidedByWindow && sawNextToken
+        );
+    }
+
+    /**
+     * Finds where the content after the preambles starts.
+     *
+     * @return the index, or {@code -1} if a preamble does not end with a line ending
+     */
+    private int findBodyStart(String content) {
+        int bodyStart = 0;
+        List<CommentStyle.Preamble> preambles = style.preambles();
+        boolean[] seen = new boolean[preambles.size()];
+        nextPreamble:
+        while (true) {
+            for (int i = 0; i < preambles.size(); i++) {
+                CommentStyle.Preamble preamble = preambles.get(i);
+                if (seen[i] || !content.startsWith(preamble.start(), bodyStart)) {
+                    continue;
+                }
+                int from = bodyStart + preamble.start().length();
+                int lf = content.indexOf('\n', from);
+                String end = preamble.end();
+                if (end != null) {
+                    int endIndex = content.indexOf(end, from);
+                    if (preamble.singleLine() && (endIndex == -1 || (lf != -1 && endIndex > lf))) {
+                        // Some other text that starts the same way
+                        continue;
+                    }
+                    if (endIndex == -1) {
+                        return -1;
+                    }
+                    lf = content.indexOf('\n', endIndex);
+                }
+                if (lf == -1) {
+                    return -1;
+                }
+                seen[i] = true;
+                bodyStart = lf + 1;
+                continue nextPreamble;
+            }
+            return bodyStart;
+        }
+    }
+
+    private boolean isHeaderAt(String content, int index, PreparedHeader header, String newline) {
+        int end = header.matchAt(content, index, newline);
+        if (end == -1) {
+            return false;
+        }
+        if (!style.isLineComment()) {
+            return true;
+        }
+        // For line comments, the next line must not continue the comment
+        if (end == content.length()) {
+            return true;
+        }
+        return content.startsWith(newline, end)
+            && !content.startsWith(style.linePrefix(), end + newline.length());
+    }
+
+    private static ModificationWriter replaceStart(
+        String fileContent, int replacedLength, String replacement, boolean decidedByWindow
+    ) {
+        HeaderReplacement headerReplacement = new HeaderReplacement(fileContent, replacedLength, replacement);
+        // Only reveal the replacement when it also holds for the rest of the file
+        return decidedByWindow ? headerReplacement : headerReplacement::writeTo;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+        return o instanceof CommentStyleRewriter that && style.equals(that.style);
+    }
+
+    @Override
+    public int hashCode() {
+        return style.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "CommentStyleRewriter[" + style + "]";
+    }
+
+    /**
+     * Recomputes the transient fields when deserialized.
+     */
+    private Object readResolve() {
+        return new CommentStyleRewriter(style);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered.rewriter;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Represents a way to change the file header to a specific text.
+ *
+ * <p>
+ * All implementations should be {@link java.io.Serializable} or a valid Gradle {@code @Nested} property
+ * value, as they will be used in task inputs.
+ * </p>
+ */
+public interface FileHeaderRewriter {
+    /**
+     * Detects the line ending used in the given content, from either LF or CRLF.
+     * If multiple line endings are used, an error is thrown.
+     * If no line endings are found, {@link System#lineSeparator()} is returned.
+     *
+     * @param content the content to analyze
+     * @return the detected line ending
+     * @throws IllegalArgumentException if multiple line endings are detected
+     */
+    static String detectLineEnding(String content) {
+        // String.indexOf is intrinsified by the JVM, and checks many chars at once
+        int firstLf = content.indexOf('\n');
+        if (firstLf == -1) {
+            return System.lineSeparator();
+        }
+        if (firstLf == 0 || content.charAt(firstLf - 1) != '\r') {
+            // LF, so any CRLF is mixed
+            if (content.indexOf("\r\n", firstLf + 1) != -1) {
+                throw new IllegalArgumentException("Multiple line endings detected in content");
+            }
+            return "\n";
+        }
+        // CRLF, so any LF without a CR is mixed
+        for (int lf = content.indexOf('\n', firstLf + 1); lf != -1; lf = content.indexOf('\n', lf + 1)) {
+            if (content.charAt(lf - 1) != '\r') {
+                throw new IllegalArgumentException("Multiple line endings detected in content");
+            }
+        }
+        return "\r\n";
+    }
+
+    /**
+     * Validates and renders the given header text once, so it can be applied to many files.
+     *
+     * <p>
+     * The default implementation renders the header text as-is.
+     * </p>
+     *
+     * @param headerText the header text to apply
+     * @return the prepared header
+     * @throws IllegalArgumentException if the header text cannot be applied by this rewriter
+     */
+    default PreparedHeader prepare(String headerText) {
+        return PreparedHeader.of(headerText, headerText);
+    }
+
+    /**
+     * Rewrites the header of the given file content to the specified header text, if needed.
+     *
+     * @param fileContent the content of the file
+     * @param headerText the header text to apply
+     * @return a function that writes the modified content to an {@link Appendable} if the content needs to be modified,
+     * or {@code null} otherwise
+     */
+    @Nullable
+    ModificationWriter rewriteHeader(String fileContent, String headerText);
+
+    /**
+     * Rewrites the header of the given file content to the specified prepared header, if needed.
+     *
+     * <p>
+     * The default implementation calls {@link #rewriteHeader(String, String)} with the original header text.
+     * </p>
+     *
+     * @param fileContent the content of the file
+     * @param header the header to apply, prepared by this rewriter
+     * @return a function that writes the modified content to an {@link Appendable} if the content needs to be modified,
+     * or {@code null} otherwise
+     */
+    @Nullable
+    default ModificationWriter rewriteHeader(String fileContent, PreparedHeader header) {
+        return rewriteHeader(fileContent, header.getHeaderText());
+    }
+
+    /**
+     * {@return how many leading characters of a file are needed to confirm that the header is present, or {@code -1}
+     * if the whole file is always needed}
+     *
+     * <p>
+     * If {@link #rewriteHeader(String, PreparedHeader)} returns {@code null} for a prefix of a file at least this long,
+     * the header is considered present in the whole file, and the rest of it is not read. Otherwise, the whole file is
+     * read and passed to {@link #rewriteHeader(String, PreparedHeader)} again.
+     * </p>
+     *
+     * <p>
+     * The default implementation returns {@code -1}, which always reads the whole file.
+     * </p>
+     *
+     * @param header the header to apply, prepared by this rewriter
+     */
+    default int headerWindowSize(PreparedHeader header) {
+        return -1;
+    }
+
+    /**
+     * Checks whether the header is present, using the raw bytes at the start of a file without decoding them.
+     *
+     * <p>
+     * This is a fast path for verification. It may return {@code false} whenever it cannot decide cheaply, in which
+     * case the bytes are decoded and passed to {@link #rewriteHeader(String, PreparedHeader)}. The default
+     * implementation always returns {@code false}.
+     * </p>
+     *
+     * @param window the UTF-8 bytes at the start of the file, which must not be modified
+     * @param length the number of valid bytes in {@code window}, at least {@link #headerWindowSize(PreparedHeader)}
+     * unless the file is shorter
+     * @param header the header to apply, prepared by this rewriter
+     * @return {@code true} if the header is known to be present
+     */
+    default boolean isHeaderPresent(byte[] window, int length, PreparedHeader header) {
+        return false;
+    }
+}
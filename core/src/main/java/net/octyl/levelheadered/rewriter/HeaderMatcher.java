@@ -0,0 +1,297 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered.rewriter;
+
+import org.jspecify.annotations.Nullable;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Matches a rendered header whose variable parts may differ, compiled from a rendering with
+ * {@linkplain PreparedHeader#variableMarker(int) markers} in place of the variable parts.
+ *
+ * <p>
+ * The header is split into literal text and variable parts, which are matched in a single forward pass without going
+ * back. Each variable part ends where the literal text after it first starts, so it may not contain that text, and
+ * text only matches within one line and at most {@link #MAX_ANY_LENGTH} characters of it. Variable parts must
+ * therefore be separated by literal text. Checking a header takes about linear time, no matter how many variable parts
+ * it has.
+ * </p>
+ */
+final class HeaderMatcher implements Serializable {
+    /**
+     * The most characters, or UTF-8 bytes, that {@link TemplateVariableMatch#ANY} matches.
+     */
+    static final int MAX_ANY_LENGTH = 256;
+    /**
+     * The most characters {@link TemplateVariableMatch#YEAR_RANGE} matches.
+     */
+    private static final int MAX_YEAR_RANGE_LENGTH = "2019-2026".length();
+
+    /**
+     * Compiles a matcher from the given rendering.
+     *
+     * @param markedWithLf the header rendered with LF line endings, and markers in place of the variable parts
+     * @param parts how to match each variable part, by marker index
+     * @return the matcher
+     * @throws IllegalArgumentException if a variable part cannot be matched unambiguously
+     */
+    static HeaderMatcher compile(String markedWithLf, List<TemplateVariableMatch> parts) {
+        List<String> literals = new ArrayList<>();
+        List<TemplateVariableMatch> holes = new ArrayList<>();
+        int literalStart = 0;
+        for (int i = 0; i < markedWithLf.length(); i++) {
+            int index = PreparedHeader.variableMarkerIndex(markedWithLf.charAt(i));
+            if (index == -1) {
+                continue;
+            }
+            if (index >= parts.size()) {
+                throw new IllegalArgumentException("Unknown variable marker at index " + i);
+            }
+            literals.add(markedWithLf.substring(literalStart, i));
+            holes.add(parts.get(index));
+            literalStart = i + 1;
+        }
+        literals.add(markedWithLf.substring(literalStart));
+        for (int i = 1; i < holes.size(); i++) {
+            if (literals.get(i).isEmpty()) {
+                throw new IllegalArgumentException(
+                    "Variables whose values may differ must be separated by other header text"
+                );
+            }
+        }
+        return new HeaderMatcher(literals.toArray(String[]::new), holes.toArray(TemplateVariableMatch[]::new));
+    }
+
+    private final String[] literalsWithLf;
+    private final TemplateVariableMatch[] holes;
+    private final transient String[] literalsWithCrlf;
+    private final transient byte[][] literalsWithLfBytes;
+    private final transient byte[][] literalsWithCrlfBytes;
+
+    private HeaderMatcher(String[] literalsWithLf, TemplateVariableMatch[] holes) {
+        this.literalsWithLf = literalsWithLf;
+        this.holes = holes;
+        this.literalsWithCrlf = new String[literalsWithLf.length];
+        this.literalsWithLfBytes = new byte[literalsWithLf.length][];
+        this.literalsWithCrlfBytes = new byte[literalsWithLf.length][];
+        for (int i = 0; i < literalsWithLf.length; i++) {
+            literalsWithCrlf[i] = literalsWithLf[i].replace("\n", "\r\n");
+            literalsWithLfBytes[i] = literalsWithLf[i].getBytes(StandardCharsets.UTF_8);
+            literalsWithCrlfBytes[i] = literalsWithCrlf[i].getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * {@return how many more characters than the marked rendering a match can be}
+     */
+    int getMaxExtraLength() {
+        int extra = 0;
+        for (TemplateVariableMatch hole : holes) {
+            extra += switch (hole) {
+                case YEAR_RANGE -> MAX_YEAR_RANGE_LENGTH;
+                case ANY -> MAX_ANY_LENGTH;
+            };
+        }
+        return extra;
+    }
+
+    /**
+     * Matches the header at the given index of the content.
+     *
+     * @param content the content to match in
+     * @param offset where the header should start
+     * @param crlf whether the content uses CRLF line endings
+     * @return the index just past the header, or {@code -1} if it does not match
+     */
+    int match(String content, int offset, boolean crlf) {
+        String[] literals = crlf ? literalsWithCrlf : literalsWithLf;
+        if (!content.startsWith(literals[0], offset)) {
+            return -1;
+        }
+        int position = offset + literals[0].length();
+        for (int hole = 0; hole < holes.length; hole++) {
+            String next = literals[hole + 1];
+            int holeEnd = switch (holes[hole]) {
+                case YEAR_RANGE -> matchYearRange(content, position, next);
+                case ANY -> matchAny(content, position, next);
+            };
+            if (holeEnd == -1) {
+                return -1;
+            }
+            position = holeEnd + next.length();
+        }
+        return position;
+    }
+
+    /**
+     * Finds the end of a year range followed by {@code next}. A single year is taken if {@code next} follows it,
+     * otherwise a range, except at the end of the header, where a range is taken if there is one.
+     *
+     * @return the end of the year range, or {@code -1} if there is none followed by {@code next}
+     */
+    private static int matchYearRange(String content, int position, String next) {
+        int end = matchYear(content, position);
+        if (end == -1) {
+            return -1;
+        }
+        boolean hasRange = end < content.length() && content.charAt(end) == '-' && matchYear(content, end + 1) != -1;
+        if (!(next.isEmpty() && hasRange) && content.startsWith(next, end)) {
+            return end;
+        }
+        if (hasRange && content.startsWith(next, end + 5)) {
+            return end + 5;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the first place on the current line where {@code next} starts, or the end of the line if it is empty.
+     *
+     * @return the end of the text, or {@code -1} if {@code next} does not start on the line within
+     *     {@link #MAX_ANY_LENGTH} characters
+     */
+    private static int matchAny(String content, int position, String next) {
+        int limit = Math.min(content.length(), position + MAX_ANY_LENGTH);
+        for (int i = position; i <= limit; i++) {
+            boolean lineEnd = i == content.length() || isLineBreak(content.charAt(i));
+            if (next.isEmpty() ? lineEnd : content.startsWith(next, i)) {
+                return i;
+            }
+            if (lineEnd) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Matches the header at the given index of the UTF-8 bytes, without decoding them.
+     *
+     * @param bytes the bytes to match in
+     * @param offset where the header should start
+     * @param length the number of valid bytes in {@code bytes}
+     * @param crlf whether the bytes use CRLF line endings
+     * @return the index just past the header, or {@code -1} if it does not match
+     */
+    int match(byte[] bytes, int offset, int length, boolean crlf) {
+        byte[][] literals = crlf ? literalsWithCrlfBytes : literalsWithLfBytes;
+        if (!startsWith(bytes, offset, length, literals[0])) {
+            return -1;
+        }
+        int position = offset + literals[0].length;
+        for (int hole = 0; hole < holes.length; hole++) {
+            byte[] next = literals[hole + 1];
+            int holeEnd = switch (holes[hole]) {
+                case YEAR_RANGE -> matchYearRange(bytes, length, position, next);
+                case ANY -> matchAny(bytes, length, position, next);
+            };
+            if (holeEnd == -1) {
+                return -1;
+            }
+            position = holeEnd + next.length;
+        }
+        return position;
+    }
+
+    private static int matchYearRange(byte[] bytes, int length, int position, byte[] next) {
+        int end = matchYear(bytes, position, length);
+        if (end == -1) {
+            return -1;
+        }
+        boolean hasRange = end < length && bytes[end] == '-' && matchYear(bytes, end + 1, length) != -1;
+        if (!(next.length == 0 && hasRange) && startsWith(bytes, end, length, next)) {
+            return end;
+        }
+        if (hasRange && startsWith(bytes, end + 5, length, next)) {
+            return end + 5;
+        }
+        return -1;
+    }
+
+    private static int matchAny(byte[] bytes, int length, int position, byte[] next) {
+        int limit = Math.min(length, position + MAX_ANY_LENGTH);
+        for (int i = position; i <= limit; i++) {
+            boolean lineEnd = i == length || isLineBreak((char) bytes[i]);
+            if (next.length == 0 ? lineEnd : startsWith(bytes, i, length, next)) {
+                return i;
+            }
+            if (lineEnd) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static int matchYear(String content, int position) {
+        if (position + 4 > content.length()) {
+            return -1;
+        }
+        for (int i = position; i < position + 4; i++) {
+            if (!isAsciiDigit(content.charAt(i))) {
+                return -1;
+            }
+        }
+        return position + 4;
+    }
+
+    private static int matchYear(byte[] bytes, int position, int length) {
+        if (position + 4 > length) {
+            return -1;
+        }
+        for (int i = position; i < position + 4; i++) {
+            if (!isAsciiDigit((char) bytes[i])) {
+                return -1;
+            }
+        }
+        return position + 4;
+    }
+
+    private static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLineBreak(char c) {
+        return c == '\n' || c == '\r';
+    }
+
+    private static boolean startsWith(byte[] bytes, int offset, int length, byte[] prefix) {
+        int end = offset + prefix.length;
+        return end <= length && Arrays.mismatch(bytes, offset, end, prefix, 0, prefix.length) == -1;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+        return o instanceof HeaderMatcher that
+            && Arrays.equals(literalsWithLf, that.literalsWithLf)
+            && Arrays.equals(holes, that.holes);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(literalsWithLf) + Arrays.hashCode(holes);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("HeaderMatcher[").append(literalsWithLf[0]);
+        for (int i = 0; i < holes.length; i++) {
+            builder.append('<').append(holes[i]).append('>').append(literalsWithLf[i + 1]);
+        }
+        return builder.append(']').toString();
+    }
+
+    /**
+     * Recomputes the transient fields when deserialized.
+     */
+    private Object readResolve() {
+        return new HeaderMatcher(literalsWithLf, holes);
+    }
+}
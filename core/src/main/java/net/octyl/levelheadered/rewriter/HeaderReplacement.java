@@ -0,0 +1,44 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered.rewriter;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * A {@link ModificationWriter} that replaces the start of the file content and leaves the rest unchanged.
+ *
+ * <p>
+ * Callers that recognize this type may write the replacement and then copy the rest of the file as bytes, without
+ * decoding it. A rewriter should only return it from a
+ * {@linkplain FileHeaderRewriter#headerWindowSize(PreparedHeader) header window} when the same replacement applies to
+ * the whole file.
+ * </p>
+ *
+ * @param fileContent the content the replacement was computed from, which may be a prefix of the file
+ * @param replacedLength the number of characters at the start of {@code fileContent} to replace
+ * @param replacement the text to write instead of the replaced characters
+ */
+public record HeaderReplacement(String fileContent, int replacedLength, String replacement)
+    implements ModificationWriter {
+    @SuppressWarnings("doclint:missing")
+    public HeaderReplacement {
+        Objects.checkIndex(replacedLength, fileContent.length() + 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * If {@link #fileContent()} is a prefix of the file, only the modified prefix is written.
+     * </p>
+     */
+    @Override
+    public void writeTo(Appendable appendable) throws IOException {
+        appendable.append(replacement);
+        appendable.append(fileContent, replacedLength, fileContent.length());
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered.rewriter;
+
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The texts of a header, expanded from its template once, so the header can be prepared for each rewriter without
+ * expanding it again.
+ */
+public final class HeaderTexts {
+    /**
+     * Expands header templates.
+     */
+    @FunctionalInterface
+    public interface TemplateEngine {
+        /**
+         * Expands the given template.
+         *
+         * @param template the template text
+         * @param variables the variables to expand the template with
+         * @return the expanded template
+         * @throws IOException if the template cannot be compiled or expanded
+         */
+        String expand(String template, Map<String, String> variables) throws IOException;
+    }
+
+    /**
+     * The header text with markers in place of the values of variables that may differ.
+     *
+     * @param text the header text
+     * @param parts how to match each variable, by marker index
+     */
+    private record MarkedHeaderText(String text, List<TemplateVariableMatch> parts) {
+    }
+
+    /**
+     * Expands the header template.
+     *
+     * @param engine the engine to expand the template with
+     * @param template the header template
+     * @param variables the variables to expand the template with
+     * @param variableMatches how the values of variables may differ in headers that are already present
+     * @param legacyHeaders the texts of legacy headers to replace with the header
+     * @return the header texts
+     * @throws IOException if the template cannot be expanded
+     * @throws IllegalArgumentException if a variable has a match, but no value
+     */
+    public static HeaderTexts expand(
+        TemplateEngine engine, String template, Map<String, String> variables,
+        Map<String, TemplateVariableMatch> variableMatches, List<String> legacyHeaders
+    ) throws IOException {
+        return new HeaderTexts(
+            engine.expand(template, variables),
+            expandMarked(engine, template, variables, variableMatches),
+            List.copyOf(legacyHeaders)
+        );
+    }
+
+    private static @Nullable MarkedHeaderText expandMarked(
+        TemplateEngine engine, String template, Map<String, String> variables,
+        Map<String, TemplateVariableMatch> matches
+    ) throws IOException {
+        if (matches.isEmpty()) {
+            return null;
+        }
+        Map<String, String> markedVariables = new HashMap<>(variables);
+        List<TemplateVariableMatch> parts = new ArrayList<>(matches.size());
+        for (Map.Entry<String, TemplateVariableMatch> match : matches.entrySet()) {
+            if (!markedVariables.containsKey(match.getKey())) {
+                throw new IllegalArgumentException(
+                    "Template variable '" + match.getKey() + "' has a match configured, but no value"
+                );
+            }
+            markedVariables.put(match.getKey(), PreparedHeader.variableMarker(parts.size()));
+            parts.add(match.getValue());
+        }
+        return new MarkedHeaderText(engine.expand(template, markedVariables), List.copyOf(parts));
+    }
+
+    private final String headerText;
+    private final @Nullable MarkedHeaderText markedHeaderText;
+    private final List<String> legacyHeaderTexts;
+
+    private HeaderTexts(
+        String headerText, @Nullable MarkedHeaderText markedHeaderText, List<String> legacyHeaderTexts
+    ) {
+        this.headerText = headerText;
+        this.markedHeaderText = markedHeaderText;
+        this.legacyHeaderTexts = legacyHeaderTexts;
+    }
+
+    /**
+     * {@return the expanded header text}
+     */
+    public String getHeaderText() {
+        return headerText;
+    }
+
+    /**
+     * Prepares the header for the given rewriter, so invalid header text fails here instead of for every file.
+     *
+     * @param rewriterKey the key the rewriter is configured under, for error messages
+     * @param rewriter the rewriter
+     * @return the prepared header
+     * @throws IllegalArgumentException if the rewriter cannot apply the header
+     */
+    public PreparedHeader prepare(String rewriterKey, FileHeaderRewriter rewriter) {
+        PreparedHeader header;
+        try {
+            header = rewriter.prepare(headerText);
+            if (markedHeaderText != null) {
+                // Compiled once per rewriter, so each file is matched in a single pass
+                header = header.withVariableParts(rewriter.prepare(markedHeaderText.text()), markedHeaderText.parts());
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(
+                "Header cannot be applied by the rewriter for '" + rewriterKey + "': " + e.getMessage(), e
+            );
+        }
+        if (legacyHeaderTexts.isEmpty()) {
+            return header;
+        }
+        List<PreparedHeader> legacyHeaders = new ArrayList<>(legacyHeaderTexts.size());
+        for (String legacyHeaderText : legacyHeaderTexts) {
+            try {
+                legacyHeaders.add(rewriter.prepare(legacyHeaderText));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(
+                    "Legacy header cannot be rendered by the rewriter for '" + rewriterKey + "': " + e.getMessage(), e
+                );
+            }
+        }
+        // Compiled once per rewriter, so each file is scanned once for all of them
+        return header.withLegacyHeaders(legacyHeaders);
+    }
+}
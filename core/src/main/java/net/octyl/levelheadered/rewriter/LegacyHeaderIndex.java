@@ -0,0 +1,208 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered.rewriter;
+
+import org.jspecify.annotations.Nullable;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds any of many rendered legacy headers in one pass over the start of a file, using an Aho-Corasick automaton.
+ *
+ * <p>
+ * The automaton is built once, from both the LF and CRLF renderings of each legacy header. Each character is then
+ * looked at once, no matter how many legacy headers there are.
+ * </p>
+ */
+final class LegacyHeaderIndex implements Serializable {
+    private static final char[] NO_CHARS = new char[0];
+    /**
+     * How much of other comments to allow before a legacy header when sizing the header window.
+     */
+    private static final int PRECEDING_COMMENT_ALLOWANCE = 1024;
+
+    /**
+     * A legacy header found in the content.
+     *
+     * @param start the index of its first character
+     * @param end the index just past its last character
+     */
+    record Match(int start, int end) {
+    }
+
+    private static final class State {
+        char[] keys = NO_CHARS;
+        State[] next = new State[0];
+        @Nullable State fail;
+        /**
+         * The length of the pattern that ends at this state, or {@code -1} if none does.
+         */
+        int output = -1;
+        /**
+         * The closest state on the failure chain that ends a pattern.
+         */
+        @Nullable State dictionary;
+
+        @Nullable State child(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? next[index] : null;
+        }
+
+        State addChild(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            if (index >= 0) {
+                return next[index];
+            }
+            int insertAt = -index - 1;
+            char[] newKeys = new char[keys.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertAt);
+            System.arraycopy(keys, insertAt, newKeys, insertAt + 1, keys.length - insertAt);
+            newKeys[insertAt] = c;
+            State[] newNext = Arrays.copyOf(next, next.length + 1);
+            System.arraycopy(next, insertAt, newNext, insertAt + 1, next.length - insertAt);
+            State child = new State();
+            newNext[insertAt] = child;
+            keys = newKeys;
+            next = newNext;
+            return child;
+        }
+    }
+
+    /**
+     * Builds an index of the given legacy headers.
+     *
+     * @param legacyHeaders the legacy headers, prepared by the rewriter that looks for them
+     * @return the index
+     */
+    static LegacyHeaderIndex of(List<PreparedHeader> legacyHeaders) {
+        Set<String> patterns = new LinkedHashSet<>();
+        for (PreparedHeader legacyHeader : legacyHeaders) {
+            for (String newline : List.of("\n", "\r\n")) {
+                String rendered = legacyHeader.getRendered(newline);
+                if (!rendered.isEmpty()) {
+                    patterns.add(rendered);
+                }
+            }
+        }
+        return new LegacyHeaderIndex(patterns.toArray(String[]::new));
+    }
+
+    private final String[] patterns;
+    private final transient State root;
+    private final transient int maxLength;
+
+    private LegacyHeaderIndex(String[] patterns) {
+        this.patterns = patterns;
+        this.root = new State();
+        int longest = 0;
+        for (String pattern : patterns) {
+            State state = root;
+            for (int i = 0; i < pattern.length(); i++) {
+                state = state.addChild(pattern.charAt(i));
+            }
+            state.output = pattern.length();
+            longest = Math.max(longest, pattern.length());
+        }
+        this.maxLength = longest;
+        linkFailures();
+    }
+
+    private void linkFailures() {
+        ArrayDeque<State> queue = new ArrayDeque<>();
+        for (State child : root.next) {
+            child.fail = root;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            State state = queue.remove();
+            for (int i = 0; i < state.keys.length; i++) {
+                State child = state.next[i];
+                State fail = step(state.fail, state.keys[i]);
+                child.fail = fail;
+                child.dictionary = fail.output != -1 ? fail : fail.dictionary;
+                queue.add(child);
+            }
+        }
+    }
+
+    private State step(@Nullable State state, char c) {
+        while (state != null) {
+            State child = state.child(c);
+            if (child != null) {
+                return child;
+            }
+            state = state.fail;
+        }
+        return root;
+    }
+
+    /**
+     * {@return how many leading characters of a file are searched for legacy headers}
+     */
+    int getSearchLength() {
+        return maxLength + PRECEDING_COMMENT_ALLOWANCE;
+    }
+
+    /**
+     * Finds the legacy header that starts first in {@code content[from, limit)}, preferring the longest one if
+     * several start at the same place. Only legacy headers at {@code from} or at the start of a line are found.
+     *
+     * @param content the content to search
+     * @param from where to start searching
+     * @param limit where to stop searching, legacy headers must end before it
+     * @return the legacy header, or {@code null} if none is found
+     */
+    @Nullable Match find(String content, int from, int limit) {
+        limit = Math.min(limit, content.length());
+        Match best = null;
+        State state = root;
+        for (int i = from; i < limit; i++) {
+            if (best != null && i - best.start() >= maxLength) {
+                // Anything found from here on starts after the best match
+                break;
+            }
+            state = step(state, content.charAt(i));
+            for (State found = state.output != -1 ? state : state.dictionary; found != null;
+                 found = found.dictionary) {
+                int start = i + 1 - found.output;
+                if (start != from && content.charAt(start - 1) != '\n') {
+                    continue;
+                }
+                if (best == null || start < best.start() || (start == best.start() && i + 1 > best.end())) {
+                    best = new Match(start, i + 1);
+                }
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+        return o instanceof LegacyHeaderIndex that && Arrays.equals(patterns, that.patterns);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(patterns);
+    }
+
+    @Override
+    public String toString() {
+        return "LegacyHeaderIndex[" + patterns.length + " patterns]";
+    }
+
+    /**
+     * Rebuilds the automaton when deserialized.
+     */
+    private Object readResolve() {
+        return new LegacyHeaderIndex(patterns);
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered.rewriter;
+
+import org.jspecify.annotations.Nullable;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A header text that has been validated and rendered by a {@link FileHeaderRewriter}, ready to be applied to many
+ * files.
+ *
+ * <p>
+ * Instances are immutable, and hold the rendered header for both LF and CRLF line endings, so that it does not need
+ * to be rendered again for each file. Both forms are also kept encoded as UTF-8, so they can be compared with file
+ * contents without decoding them.
+ * </p>
+ *
+ * <p>
+ * A header may also {@linkplain #withVariableParts(PreparedHeader, List) have variable parts}, such as copyright
+ * years, which are matched more leniently than the rendered text when checking whether a header is present.
+ * It may also {@linkplain #withLegacyHeaders(List) know legacy headers}, which rewriters replace with it.
+ * </p>
+ *
+ * @see FileHeaderRewriter#prepare(String)
+ */
+public final class PreparedHeader implements Serializable {
+    /**
+     * The first character of the Unicode private use area, which header text is not expected to contain.
+     */
+    private static final char FIRST_VARIABLE_MARKER = '\uE000';
+    private static final int MAX_VARIABLE_MARKERS = 256;
+
+    /**
+     * Gets the marker for a variable part of the header text, see {@link #withVariableParts(PreparedHeader, List)}.
+     *
+     * @param index the index of the variable part
+     * @return the marker
+     * @throws IllegalArgumentException if there are too many variable parts
+     */
+    public static String variableMarker(int index) {
+        if (index < 0 || index >= MAX_VARIABLE_MARKERS) {
+            throw new IllegalArgumentException("At most " + MAX_VARIABLE_MARKERS + " variable parts are supported");
+        }
+        return String.valueOf((char) (FIRST_VARIABLE_MARKER + index));
+    }
+
+    /**
+     * {@return the index of the variable part the given character marks, or {@code -1} if it is not a marker}
+     */
+    static int variableMarkerIndex(char c) {
+        int index = c - FIRST_VARIABLE_MARKER;
+        return index >= 0 && index < MAX_VARIABLE_MARKERS ? index : -1;
+    }
+
+    /**
+     * Creates a prepared header from the given header text and its rendering.
+     *
+     * @param headerText the header text, as given to {@link FileHeaderRewriter#prepare(String)}
+     * @param renderedWithLf the rendered header, using LF line endings
+     * @return the prepared header
+     */
+    public static PreparedHeader of(String headerText, String renderedWithLf) {
+        return new PreparedHeader(headerText, renderedWithLf, renderedWithLf.replace("\n", "\r\n"), null, null);
+    }
+
+    private final String headerText;
+    private final String renderedWithLf;
+    private final String renderedWithCrlf;
+    private final byte[] renderedWithLfBytes;
+    private final byte[] renderedWithCrlfBytes;
+    private final @Nullable HeaderMatcher matcher;
+    private final @Nullable LegacyHeaderIndex legacyHeaders;
+
+    private PreparedHeader(
+        String headerText, String renderedWithLf, String renderedWithCrlf, @Nullable HeaderMatcher matcher,
+        @Nullable LegacyHeaderIndex legacyHeaders
+    ) {
+        this.headerText = headerText;
+        this.renderedWithLf = renderedWithLf;
+        this.renderedWithCrlf = renderedWithCrlf;
+        this.renderedWithLfBytes = renderedWithLf.getBytes(StandardCharsets.UTF_8);
+        this.renderedWithCrlfBytes = renderedWithCrlf.getBytes(StandardCharsets.UTF_8);
+        this.matcher = matcher;
+        this.legacyHeaders = legacyHeaders;
+    }
+
+    /**
+     * Makes a copy of this header whose variable parts may differ when checking whether it is present.
+     *
+     * <p>
+     * The marked header must be prepared by the same rewriter, from the same header text but with the
+     * {@linkplain #variableMarker(int) marker} of each variable part in place of its value. The matcher is compiled
+     * here, once, so checking each file stays a single forward pass. This header is still the one written to files.
+     * </p>
+     *
+     * @param marked the header prepared with markers in place of the variable parts
+     * @param parts how to match each variable part, by marker index
+     * @return the header with variable parts
+     * @throws IllegalArgumentException if the variable parts cannot be matched, or this header does not match them
+     */
+    public PreparedHeader withVariableParts(PreparedHeader marked, List<TemplateVariableMatch> parts) {
+        HeaderMatcher newMatcher = HeaderMatcher.compile(marked.renderedWithLf, parts);
+        if (newMatcher.match(renderedWithLf, 0, false) != renderedWithLf.length()) {
+            throw new IllegalArgumentException(
+                "Header does not match its own variable parts, check that the values of the variables fit them"
+            );
+        }
+        return new PreparedHeader(headerText, renderedWithLf, renderedWithCrlf, newMatcher, legacyHeaders);
+    }
+
+    /**
+     * Makes a copy of this header that replaces the given legacy headers.
+     *
+     * <p>
+     * Rewriters that support legacy headers replace the first one found near the start of a file with this header.
+     * Other leading comments are then left alone, and this header is inserted before them. The legacy headers are
+     * compiled into a single automaton here, once, so each file is scanned once no matter how many there are.
+     * </p>
+     *
+     * @param legacyHeaders the legacy headers, prepared by the same rewriter
+     * @return the header with legacy headers
+     */
+    public PreparedHeader withLegacyHeaders(List<PreparedHeader> legacyHeaders) {
+        LegacyHeaderIndex index = legacyHeaders.isEmpty() ? null : LegacyHeaderIndex.of(legacyHeaders);
+        return new PreparedHeader(headerText, renderedWithLf, renderedWithCrlf, matcher, index);
+    }
+
+    /**
+     * {@return the legacy headers this header replaces, or {@code null} if there are none}
+     */
+    @Nullable LegacyHeaderIndex getLegacyHeaders() {
+        return legacyHeaders;
+    }
+
+    /**
+     * {@return the header text this was prepared from}
+     */
+    public String getHeaderText() {
+        return headerText;
+    }
+
+    /**
+     * Gets the rendered header for the given line ending.
+     *
+     * @param newline the line ending, as returned by {@link FileHeaderRewriter#detectLineEnding(String)}
+     * @return the rendered header
+     * @throws IllegalArgumentException if the line ending is neither LF nor CRLF
+     */
+    public String getRendered(String newline) {
+        return switch (newline) {
+            case "\n" -> renderedWithLf;
+            case "\r\n" -> renderedWithCrlf;
+            default -> throw new IllegalArgumentException(
+                "Unsupported line ending: " + newline.replace("\r", "\\r").replace("\n", "\\n")
+            );
+        };
+    }
+
+    /**
+     * {@return the most characters the header can take up in a file} That is its length with CRLF line endings, and
+     * the longest values of any variable parts.
+     */
+    public int getMaxMatchedLength() {
+        return renderedWithCrlf.length() + (matcher == null ? 0 : matcher.getMaxExtraLength());
+    }
+
+    /**
+     * Checks whether the header is found at the given index of the content. With variable parts, their values may
+     * differ from the rendered header.
+     *
+     * @param content the content to check
+     * @param offset the index in {@code content} where the header should start
+     * @param newline the line ending, either LF or CRLF
+     * @return the index just past the header, or {@code -1} if it is not found
+     * @throws IllegalArgumentException if the line ending is neither LF nor CRLF
+     */
+    public int matchAt(String content, int offset, String newline) {
+        String rendered = getRendered(newline);
+        if (matcher == null) {
+            return content.startsWith(rendered, offset) ? offset + rendered.length() : -1;
+        }
+        return matcher.match(content, offset, newline.length() == 2);
+    }
+
+    /**
+     * Checks whether the header is found at the given offset in the given UTF-8 bytes, without decoding them. With
+     * variable parts, their values may differ from the rendered header.
+     *
+     * @param bytes the bytes to check
+     * @param offset the offset in {@code bytes} where the header should start
+     * @param length the number of valid bytes in {@code bytes}
+     * @param newline the line ending, either LF or CRLF
+     * @return the offset just past the header, or {@code -1} if it is not found
+     * @throws IllegalArgumentException if the line ending is neither LF nor CRLF
+     */
+    public int matchAt(byte[] bytes, int offset, int length, String newline) {
+        byte[] rendered = getRenderedBytes(newline);
+        if (matcher == null) {
+            int end = offset + rendered.length;
+            return end <= length && Arrays.mismatch(bytes, offset, end, rendered, 0, rendered.length) == -1 ? end : -1;
+        }
+        return matcher.match(bytes, offset, length, newline.length() == 2);
+    }
+
+    private byte[] getRenderedBytes(String newline) {
+        return switch (newline) {
+            case "\n" -> renderedWithLfBytes;
+            case "\r\n" -> renderedWithCrlfBytes;
+            default -> throw new IllegalArgumentException(
+                "Unsupported line ending: " + newline.replace("\r", "\\r").replace("\n", "\\n")
+            );
+        };
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+        return o instanceof PreparedHeader that
+            && headerText.equals(that.headerText)
+            && renderedWithLf.equals(that.renderedWithLf)
+            && Objects.equals(matcher, that.matcher)
+            && Objects.equals(legacyHeaders, that.legacyHeaders);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(headerText, renderedWithLf, matcher, legacyHeaders);
+    }
+
+    @Override
+    public String toString() {
+        return "PreparedHeader[" + renderedWithLf
+            + (matcher == null ? "" : ", " + matcher)
+            + (legacyHeaders == null ? "" : ", " + legacyHeaders)
+            + "]";
+    }
+}
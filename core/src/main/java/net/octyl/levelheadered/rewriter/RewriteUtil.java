@@ -0,0 +1,147 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered.rewriter;
+
+import org.jspecify.annotations.Nullable;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+class RewriteUtil {
+    /**
+     * Reads bytes eight at a time, so they can be scanned as one {@code long}. Little-endian, so that the lowest byte
+     * of the word is the first byte in the array.
+     */
+    private static final VarHandle LONG_VIEW =
+        MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+    /**
+     * Finds the first byte that is not ASCII whitespace, as defined by {@link Character#isWhitespace(char)}.
+     * Non-ASCII bytes are never considered whitespace, so callers must fall back to decoding if that matters.
+     */
+    static int getIndexOfFirstNonWhitespaceByte(byte[] bytes, int length) {
+        return getIndexOfFirstNonWhitespaceByte(bytes, 0, length);
+    }
+
+    /**
+     * Finds the first byte in {@code bytes[from, length)} that is not ASCII whitespace, in the same way as
+     * {@link #getIndexOfFirstNonWhitespaceByte(byte[], int)}.
+     */
+    static int getIndexOfFirstNonWhitespaceByte(byte[] bytes, int from, int length) {
+        int i = from;
+        for (; i + Long.BYTES <= length; i += Long.BYTES) {
+            long word = (long) LONG_VIEW.get(bytes, i);
+            // ASCII whitespace: 0x09-0x0D, 0x1C-0x20
+            long whitespace = bytesBetween(word, 0x08, 0x0E) | bytesBetween(word, 0x1B, 0x21);
+            if (whitespace != HIGH_BITS) {
+                return i + firstMarkedByte(~whitespace & HIGH_BITS);
+            }
+        }
+        for (; i < length; i++) {
+            int b = bytes[i];
+            if (!((b >= 0x09 && b <= 0x0D) || (b >= 0x1C && b <= 0x20))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Detects the line ending used in the given UTF-8 bytes, in the same way as
+     * {@link FileHeaderRewriter#detectLineEnding(String)}.
+     *
+     * @return the line ending, or {@code null} if there are none or multiple
+     */
+    static @Nullable String detectLineEnding(byte[] bytes, int length) {
+        int firstLf = indexOf(bytes, (byte) '\n', 0, length);
+        if (firstLf == -1) {
+            return null;
+        }
+        if (firstLf == 0 || bytes[firstLf - 1] != '\r') {
+            // LF files rarely contain CR at all, so look for those instead of every LF
+            for (int cr = indexOf(bytes, (byte) '\r', firstLf, length); cr != -1;
+                 cr = indexOf(bytes, (byte) '\r', cr + 1, length)) {
+                if (cr + 1 < length && bytes[cr + 1] == '\n') {
+                    return null;
+                }
+            }
+            return "\n";
+        }
+        for (int lf = indexOf(bytes, (byte) '\n', firstLf + 1, length); lf != -1;
+             lf = indexOf(bytes, (byte) '\n', lf + 1, length)) {
+            if (bytes[lf - 1] != '\r') {
+                return null;
+            }
+        }
+        return "\r\n";
+    }
+
+    static int getIndexOfFirstNonWhitespaceChar(String content) {
+        return getIndexOfFirstNonWhitespaceChar(content, 0);
+    }
+
+    static int getIndexOfFirstNonWhitespaceChar(String content, int from) {
+        for (int i = from; i < content.length(); i++) {
+            char c = content.charAt(i);
+            // Most files start with a printable ASCII character, which never needs the full whitespace check
+            if ((c > ' ' && c < 0x7F) || !Character.isWhitespace(c)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the first occurrence of the given byte in {@code bytes[from, length)}.
+     *
+     * @return the index of the byte, or {@code -1} if it does not occur
+     */
+    static int indexOf(byte[] bytes, byte target, int from, int length) {
+        long pattern = ONES * (target & 0xFF);
+        int i = from;
+        for (; i + Long.BYTES <= length; i += Long.BYTES) {
+            long matches = zeroBytes((long) LONG_VIEW.get(bytes, i) ^ pattern);
+            if (matches != 0) {
+                return i + firstMarkedByte(matches);
+            }
+        }
+        for (; i < length; i++) {
+            if (bytes[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * {@return a word with the high bit set in each byte of {@code word} that is zero, and no other bits set}
+     */
+    private static long zeroBytes(long word) {
+        return ~(((word & LOW_BITS) + LOW_BITS) | word | LOW_BITS);
+    }
+
+    /**
+     * Marks the bytes of {@code word} that are strictly between {@code low} and {@code high}, which must be in
+     * {@code [0, 128]}. The low 7 bits of each byte are handled separately, so no carry crosses into the next byte.
+     *
+     * @return a word with the high bit set in each matching byte, and no other bits set
+     */
+    private static long bytesBetween(long word, int low, int high) {
+        long lowBits = word & LOW_BITS;
+        return (ONES * (127 + high) - lowBits) & ~word & (lowBits + ONES * (127 - low)) & HIGH_BITS;
+    }
+
+    /**
+     * {@return the index of the first byte with its high bit set in {@code marks}, which must not be zero}
+     */
+    private static int firstMarkedByte(long marks) {
+        return Long.numberOfTrailingZeros(marks) >>> 3;
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered.rewriter;
+
+import org.jspecify.annotations.Nullable;
+
+final class SlashStarCommentRewriter implements StandardFileHeaderRewriter {
+    /**
+     * How much whitespace to allow before the header when sizing the header window.
+     */
+    private static final int LEADING_WHITESPACE_ALLOWANCE = 256;
+
+    private static String makeSlashStarComment(String newline, String headerText) {
+        StringBuilder commentBuilder = new StringBuilder();
+        commentBuilder.append("/*").append(newline);
+        // The header text is not split by `newline` as it comes normalized from the user input.
+        String[] lines = headerText.strip().split("\n", -1);
+        for (String line : lines) {
+            if (line.contains("*/")) {
+                throw new IllegalArgumentException("Header text cannot contain '*/' sequence");
+            }
+            if (line.isBlank()) {
+                commentBuilder.append(" *").append(newline);
+                continue;
+            }
+            commentBuilder.append(" * ").append(line.stripTrailing()).append(newline);
+        }
+        commentBuilder.append(" */");
+        return commentBuilder.toString();
+    }
+
+    @Override
+    public PreparedHeader prepare(String headerText) {
+        return PreparedHeader.of(headerText, makeSlashStarComment("\n", headerText));
+    }
+
+    @Override
+    public int headerWindowSize(PreparedHeader header) {
+        LegacyHeaderIndex legacyHeaders = header.getLegacyHeaders();
+        int searchLength = legacyHeaders == null ? 0 : legacyHeaders.getSearchLength();
+        return Math.max(header.getMaxMatchedLength(), searchLength) + LEADING_WHITESPACE_ALLOWANCE;
+    }
+
+    @Override
+    public boolean isHeaderPresent(byte[] window, int length, PreparedHeader header) {
+        String newline = RewriteUtil.detectLineEnding(window, length);
+        if (newline == null) {
+            // Let the full check report mixed line endings
+            return false;
+        }
+        int indexOfFirstNonWhitespace = RewriteUtil.getIndexOfFirstNonWhitespaceByte(window, length);
+        return indexOfFirstNonWhitespace != -1
+            && header.matchAt(window, indexOfFirstNonWhitespace, length, newline) != -1;
+    }
+
+    @Override
+    @Nullable
+    public ModificationWriter rewriteHeader(String fileContent, String headerText) {
+        return rewriteHeader(fileContent, prepare(headerText));
+    }
+
+    @Override
+    @Nullable
+    public ModificationWriter rewriteHeader(String fileContent, PreparedHeader header) {
+        String newline = FileHeaderRewriter.detectLineEnding(fileContent);
+        String headerTextAsComment = header.getRendered(newline);
+        int indexOfFirstNonWhitespace = RewriteUtil.getIndexOfFirstNonWhitespaceChar(fileContent);
+        if (indexOfFirstNonWhitespace == -1) {
+            // empty file, just insert the header at the start
+            return replaceStart(fileContent, 0, headerTextAsComment, false);
+        }
+        if (header.matchAt(fileContent, indexOfFirstNonWhitespace, newline) != -1) {
+            // The header is already present.
+            return null;
+        }
+        // If the content is only a header window, these decisions hold for the whole file only if we saw the first
+        // token and a line ending in it.
+        boolean decidedByWindow = indexOfFirstNonWhitespace <= LEADING_WHITESPACE_ALLOWANCE
+            && fileContent.indexOf('\n') != -1;
+        String leadingWhitespace = fileContent.substring(0, indexOfFirstNonWhitespace);
+        LegacyHeaderIndex legacyHeaders = header.getLegacyHeaders();
+        if (legacyHeaders != null) {
+            // Legacy headers are only looked for in the header window, so the decision is the same for the whole file
+            // once all of it is seen
+            int searchLimit = headerWindowSize(header);
+            decidedByWindow &= fileContent.length() >= searchLimit;
+            LegacyHeaderIndex.Match legacyHeader = legacyHeaders.find(
+                fileContent, indexOfFirstNonWhitespace, searchLimit
+            );
+            if (legacyHeader != null) {
+                return replaceLegacyHeader(
+                    fileContent, indexOfFirstNonWhitespace, legacyHeader, headerTextAsComment, newline, decidedByWindow
+                );
+            }
+        }
+        // Delete any existing comment header
+        if (fileContent.startsWith("/*", indexOfFirstNonWhitespace)) {
+            // 3: '/**' potential, if +2 is '*'
+            // With legacy headers configured, other comments are not headers, so they are kept as well
+            if (legacyHeaders != null || (indexOfFirstNonWhitespace + 3 < fileContent.length()
+                && fileContent.charAt(indexOfFirstNonWhitespace + 2) == '*')) {
+                // Insert the new header before the existing comment, with newline inbetween
+                return replaceStart(
+                    fileContent, indexOfFirstNonWhitespace,
+                    leadingWhitespace + headerTextAsComment + newline + newline,
+                    decidedByWindow
+                );
+            }
+            int indexOfExistingCommentEnd = fileContent.indexOf("*/", indexOfFirstNonWhitespace);
+            if (indexOfExistingCommentEnd != -1) {
+                // Replace the existing comment
+                return replaceStart(
+                    fileContent, indexOfExistingCommentEnd + 2,
+                    leadingWhitespace + headerTextAsComment,
+                    decidedByWindow
+                );
+            } else {
+                // Unclosed comment, just insert the new header before it, with newline inbetween
+                // The comment may be closed past the end of a header window, so this is never decided by it
+                return replaceStart(
+                    fileContent, indexOfFirstNonWhitespace,
+                    leadingWhitespace + headerTextAsComment + newline + newline,
+                    false
+                );
+            }
+        }
+        // No existing comment, just insert the new header at the start of the file
+        // Add a blank line if there is none in the whitespace
+        boolean addBlankLine = !leadingWhitespace.contains(newline);
+        String newlines = addBlankLine ? newline + newline : newline;
+        return replaceStart(fileContent, 0, headerTextAsComment + newlines, decidedByWindow);
+    }
+
+    private static ModificationWriter replaceLegacyHeader(
+        String fileContent, int indexOfFirstNonWhitespace, LegacyHeaderIndex.Match legacyHeader,
+        String headerTextAsComment, String newline, boolean decidedByWindow
+    ) {
+        String leadingWhitespace = fileContent.substring(0, indexOfFirstNonWhitespace);
+        if (legacyHeader.start() == indexOfFirstNonWhitespace) {
+            // Replace the legacy header in place
+            return replaceStart(
+                fileContent, legacyHeader.end(), leadingWhitespace + headerTextAsComment, decidedByWindow
+            );
+        }
+        // Other comments come first, keep them after the new header and drop the legacy header and whitespace after it
+        int indexAfterLegacyHeader = RewriteUtil.getIndexOfFirstNonWhitespaceChar(fileContent, legacyHeader.end());
+        // Only whitespace may follow in this content, but not in the rest of the file
+        boolean sawNextToken = indexAfterLegacyHeader != -1;
+        return replaceStart(
+            fileContent, sawNextToken ? indexAfterLegacyHeader : legacyHeader.end(),
+            leadingWhitespace + headerTextAsComment + newline + newline
+                + fileContent.substring(indexOfFirstNonWhitespace, legacyHeader.start()),
+            decidedByWindow && sawNextToken
+        );
+    }
+
+    private static ModificationWriter replaceStart(
+        String fileContent, int replacedLength, String replacement, boolean decidedByWindow
+    ) {
+        HeaderReplacement headerReplacement = new HeaderReplacement(fileContent, replacedLength, replacement);
+        // Only reveal the replacement when it also holds for the rest of the file
+        return decidedByWindow ? headerReplacement : headerReplacement::writeTo;
+    }
+
+    /**
+     * Keeps this a singleton when deserialized, so it can be compared by identity.
+     */
+    private Object readResolve() {
+        return SLASH_STAR_COMMENT;
+    }
+}
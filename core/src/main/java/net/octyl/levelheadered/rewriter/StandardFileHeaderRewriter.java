@@ -0,0 +1,101 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered.rewriter;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * The standard file header rewriter implementations.
+ */
+public sealed interface StandardFileHeaderRewriter extends FileHeaderRewriter, Serializable
+    permits CommentStyleRewriter, SlashStarCommentRewriter {
+    /**
+     * Writes file headers as slash-star comments (<code>/* ... *{@literal /}</code>).
+     */
+    StandardFileHeaderRewriter SLASH_STAR_COMMENT = new SlashStarCommentRewriter();
+    /**
+     * Writes file headers as hash line comments ({@code # ...}), after any shebang line.
+     */
+    StandardFileHeaderRewriter HASH_COMMENT = new CommentStyleRewriter(
+        CommentStyle.lineComment("#", CommentStyle.SHEBANG)
+    );
+    /**
+     * Writes file headers as hash line comments ({@code # ...}) for Python, after any shebang line and coding
+     * declaration.
+     */
+    StandardFileHeaderRewriter PYTHON_COMMENT = new CommentStyleRewriter(
+        CommentStyle.lineComment("#", CommentStyle.SHEBANG, CommentStyle.CODING_COLON, CommentStyle.CODING_EQUALS)
+    );
+    /**
+     * Writes file headers as double-slash line comments ({@code // ...}), after any shebang line.
+     */
+    StandardFileHeaderRewriter DOUBLE_SLASH_COMMENT = new CommentStyleRewriter(
+        CommentStyle.lineComment("//", CommentStyle.SHEBANG)
+    );
+    /**
+     * Writes file headers as double-dash line comments ({@code -- ...}), as used by SQL and Lua.
+     */
+    StandardFileHeaderRewriter DOUBLE_DASH_COMMENT = new CommentStyleRewriter(
+        CommentStyle.lineComment("--")
+    );
+    /**
+     * Writes file headers as XML comments ({@code <!-- ... -->}), after any XML declaration.
+     */
+    StandardFileHeaderRewriter XML_COMMENT = new CommentStyleRewriter(
+        CommentStyle.blockComment("<!--", " ", "-->", null, "--", CommentStyle.XML_DECLARATION)
+    );
+    /**
+     * Writes file headers as slash-star comments after the PHP opening tag ({@code <?php}).
+     */
+    StandardFileHeaderRewriter PHP_SLASH_STAR_COMMENT = new CommentStyleRewriter(
+        CommentStyle.blockComment("/*", " *", " */", "/**", "*/", CommentStyle.PHP_OPEN_TAG)
+    );
+
+    /**
+     * {@return the default rewriters, keyed by file name suffix} These are all slash-star comments, for source files.
+     */
+    static Map<String, StandardFileHeaderRewriter> defaults() {
+        // Keep alphabetized for better merging:
+        return Map.of(
+            ".css", SLASH_STAR_COMMENT,
+            ".gradle", SLASH_STAR_COMMENT,
+            ".groovy", SLASH_STAR_COMMENT,
+            ".java", SLASH_STAR_COMMENT,
+            ".js", SLASH_STAR_COMMENT,
+            ".kt", SLASH_STAR_COMMENT,
+            ".kts", SLASH_STAR_COMMENT,
+            ".scala", SLASH_STAR_COMMENT
+        );
+    }
+
+    /**
+     * {@return rewriters for scripts, markup and configuration files, keyed by file name suffix}
+     *
+     * <p>
+     * These are not part of the {@linkplain #defaults() defaults}, as source sets also hold resources, which would
+     * otherwise start to need headers. Add them to the rewriters to opt in.
+     * </p>
+     */
+    static Map<String, StandardFileHeaderRewriter> commentStyleDefaults() {
+        // Keep alphabetized for better merging:
+        return Map.ofEntries(
+            Map.entry(".bash", HASH_COMMENT),
+            Map.entry(".html", XML_COMMENT),
+            Map.entry(".lua", DOUBLE_DASH_COMMENT),
+            Map.entry(".php", PHP_SLASH_STAR_COMMENT),
+            Map.entry(".properties", HASH_COMMENT),
+            Map.entry(".py", PYTHON_COMMENT),
+            Map.entry(".rb", HASH_COMMENT),
+            Map.entry(".sh", HASH_COMMENT),
+            Map.entry(".sql", DOUBLE_DASH_COMMENT),
+            Map.entry(".toml", HASH_COMMENT),
+            Map.entry(".xml", XML_COMMENT),
+            Map.entry(".yaml", HASH_COMMENT),
+            Map.entry(".yml", HASH_COMMENT)
+        );
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered.rewriter;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Finds the value for a file name by its longest configured suffix.
+ *
+ * <p>
+ * Keys that start with a dot, such as {@code .java} or {@code .test.java}, match any file name that ends with them.
+ * Other keys, such as {@code Makefile}, only match the whole file name. The keys are stored in a trie of reversed
+ * characters, so a lookup walks the file name once from its end, without allocating.
+ * </p>
+ *
+ * @param <V> the value type
+ */
+public final class SuffixIndex<V> {
+    private static final char[] NO_CHARS = new char[0];
+
+    private static final class Node<V> {
+        char[] chars = NO_CHARS;
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Node<V>[] children = new Node[0];
+        Map.@Nullable Entry<String, V> suffixEntry;
+        Map.@Nullable Entry<String, V> nameEntry;
+
+        Node<V> child(char c) {
+            int index = Arrays.binarySearch(chars, c);
+            if (index >= 0) {
+                return children[index];
+            }
+            int insertAt = -index - 1;
+            char[] newChars = new char[chars.length + 1];
+            System.arraycopy(chars, 0, newChars, 0, insertAt);
+            System.arraycopy(chars, insertAt, newChars, insertAt + 1, chars.length - insertAt);
+            newChars[insertAt] = c;
+            Node<V>[] newChildren = Arrays.copyOf(children, children.length + 1);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+            Node<V> child = new Node<>();
+            newChildren[insertAt] = child;
+            chars = newChars;
+            children = newChildren;
+            return child;
+        }
+
+        @Nullable Node<V> find(char c) {
+            int index = Arrays.binarySearch(chars, c);
+            return index >= 0 ? children[index] : null;
+        }
+    }
+
+    private final Node<V> root = new Node<>();
+
+    /**
+     * Builds an index of the given map.
+     *
+     * @param values the values, keyed by suffix or file name
+     */
+    public SuffixIndex(Map<String, V> values) {
+        for (Map.Entry<String, V> entry : values.entrySet()) {
+            String key = entry.getKey();
+            Node<V> node = root;
+            for (int i = key.length() - 1; i >= 0; i--) {
+                node = node.child(key.charAt(i));
+            }
+            if (key.startsWith(".")) {
+                node.suffixEntry = Map.entry(key, entry.getValue());
+            } else {
+                node.nameEntry = Map.entry(key, entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Finds the entry with the longest key that matches the given file name.
+     *
+     * @param fileName the file name, without any directories
+     * @return the entry, or {@code null} if no key matches
+     */
+    public Map.@Nullable Entry<String, V> find(String fileName) {
+        Map.Entry<String, V> found = null;
+        Node<V> node = root;
+        for (int i = fileName.length() - 1; i >= 0; i--) {
+            node = node.find(fileName.charAt(i));
+            if (node == null) {
+                return found;
+            }
+            if (node.suffixEntry != null) {
+                found = node.suffixEntry;
+            }
+        }
+        return node.nameEntry != null ? node.nameEntry : found;
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered.rewriter;
+
+/**
+ * How the value of a template variable may differ in a header that is already present.
+ *
+ * <p>
+ * The configured value is still written when a header is applied. These only decide whether an existing header is
+ * accepted as it is.
+ * </p>
+ *
+ * <p>
+ * Variables that use these must be separated by other header text.
+ * </p>
+ */
+public enum TemplateVariableMatch {
+    /**
+     * Matches a four-digit year, such as {@code 2026}, or a range of them, such as {@code 2019-2026}. A single year is
+     * matched if the header text that follows it comes right after it.
+     */
+    YEAR_RANGE,
+    /**
+     * Matches any text on one line, including none, up to where the header text that follows it first starts, so the
+     * text may not contain it. If nothing follows it on its line, it matches up to the end of the line. At most 256
+     * characters are matched.
+     */
+    ANY,
+}
@@ -0,0 +1,122 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered.rewriter;
+
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Tests for {@link CommentStyleRewriter}.
+ */
+class CommentStyleRewriterTest {
+    private static final StandardFileHeaderRewriter HASH = StandardFileHeaderRewriter.HASH_COMMENT;
+    private static final StandardFileHeaderRewriter PYTHON = StandardFileHeaderRewriter.PYTHON_COMMENT;
+
+    private static PreparedHeader header(String text, String... legacyHeaders) throws IOException {
+        return header(HASH, text, legacyHeaders);
+    }
+
+    private static PreparedHeader header(
+        StandardFileHeaderRewriter rewriter, String text, String... legacyHeaders
+    ) throws IOException {
+        return HeaderTexts.expand((template, variables) -> template, text, Map.of(), Map.of(), List.of(legacyHeaders))
+            .prepare(".sh", rewriter);
+    }
+
+    private static @Nullable String apply(String content, PreparedHeader header) throws IOException {
+        return apply(HASH, content, header);
+    }
+
+    private static @Nullable String apply(
+        StandardFileHeaderRewriter rewriter, String content, PreparedHeader header
+    ) throws IOException {
+        ModificationWriter writer = rewriter.rewriteHeader(content, header);
+        if (writer == null) {
+            return null;
+        }
+        StringBuilder result = new StringBuilder();
+        writer.writeTo(result);
+        return result.toString();
+    }
+
+    /**
+     * Applies the header, and checks that it is then present, both in full and in the header window.
+     */
+    private static String applyAndCheck(String content, PreparedHeader header) throws IOException {
+        return applyAndCheck(HASH, content, header);
+    }
+
+    private static String applyAndCheck(
+        StandardFileHeaderRewriter rewriter, String content, PreparedHeader header
+    ) throws IOException {
+        String result = apply(rewriter, content, header);
+        assertThat(result).isNotNull();
+        assertThat(apply(rewriter, result, header)).isNull();
+        byte[] bytes = result.getBytes(StandardCharsets.UTF_8);
+        assertThat(rewriter.isHeaderPresent(bytes, bytes.length, header)).isTrue();
+        return result;
+    }
+
+    @Test
+    void keepsOtherLeadingComments() throws IOException {
+        assertThat(applyAndCheck("# Some documentation\necho hi\n", header("My header"))).isEqualTo(
+            "# My header\n\n# Some documentation\necho hi\n"
+        );
+    }
+
+    @Test
+    void keepsCommentsAfterShebang() throws IOException {
+        assertThat(applyAndCheck("#!/bin/sh\n# Usage: run.sh\necho hi\n", header("My header"))).isEqualTo(
+            "#!/bin/sh\n# My header\n\n# Usage: run.sh\necho hi\n"
+        );
+    }
+
+    @Test
+    void keepsPythonCodingDeclarationFirst() throws IOException {
+        PreparedHeader header = header(PYTHON, "My header");
+        assertThat(applyAndCheck(PYTHON, "# -*- coding: latin-1 -*-\nprint('hi')\n", header)).isEqualTo(
+            "# -*- coding: latin-1 -*-\n# My header\n\nprint('hi')\n"
+        );
+        assertThat(applyAndCheck(
+            PYTHON, "#!/usr/bin/env python\n# vim: set fileencoding=latin-1 :\nprint('hi')\n", header
+        )).isEqualTo(
+            "#!/usr/bin/env python\n# vim: set fileencoding=latin-1 :\n# My header\n\nprint('hi')\n"
+        );
+    }
+
+    @Test
+    void keepsCodingCommentsAfterHeaderOutsidePython() throws IOException {
+        assertThat(applyAndCheck("# coding: see the wiki\nkey=value\n", header("My header"))).isEqualTo(
+            "# My header\n\n# coding: see the wiki\nkey=value\n"
+        );
+    }
+
+    @Test
+    void replacesLegacyHeader() throws IOException {
+        assertThat(applyAndCheck(
+            "# Old header\n\n# Some documentation\nkey=value\n", header("My header", "Old header")
+        )).isEqualTo(
+            "# My header\n\n# Some documentation\nkey=value\n"
+        );
+    }
+
+    @Test
+    void separatesHeaderFromFollowingComment() throws IOException {
+        PreparedHeader header = header("My header");
+        byte[] bytes = "# My header\n# Some documentation\n".getBytes(StandardCharsets.UTF_8);
+        assertThat(HASH.isHeaderPresent(bytes, bytes.length, header)).isFalse();
+        assertThat(applyAndCheck("# My header\n# Some documentation\n", header)).isEqualTo(
+            "# My header\n\n# Some documentation\n"
+        );
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered.rewriter;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+import static net.octyl.levelheadered.rewriter.PreparedHeader.variableMarker;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link HeaderMatcher}.
+ */
+class HeaderMatcherTest {
+    /**
+     * Matches the content both as text and as UTF-8 bytes, which must agree.
+     *
+     * @return the index just past the header, or {@code -1} if it does not match
+     */
+    private static int match(HeaderMatcher matcher, String content) {
+        int end = matcher.match(content, 0, false);
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        assertWithMessage("byte match of %s", content).that(matcher.match(bytes, 0, bytes.length, false))
+            .isEqualTo(end);
+        return end;
+    }
+
+    @Test
+    void doesNotMatchValueContainingNextText() {
+        HeaderMatcher matcher = HeaderMatcher.compile(
+            "Copyright " + variableMarker(0) + " - " + variableMarker(1) + ".",
+            List.of(TemplateVariableMatch.ANY, TemplateVariableMatch.YEAR_RANGE)
+        );
+        assertThat(match(matcher, "Copyright Alice - 2026.")).isEqualTo("Copyright Alice - 2026.".length());
+        // The value ends at the first " - ", it does not go back to try the second one
+        assertThat(match(matcher, "Copyright Alice - Bob - 2026.")).isEqualTo(-1);
+    }
+
+    @Test
+    void matchesSeveralValuesOnOneLine() {
+        HeaderMatcher matcher = HeaderMatcher.compile(
+            "(c) " + variableMarker(0) + " " + variableMarker(1) + ", " + variableMarker(2) + ", "
+                + variableMarker(3) + ".",
+            List.of(
+                TemplateVariableMatch.YEAR_RANGE, TemplateVariableMatch.ANY, TemplateVariableMatch.ANY,
+                TemplateVariableMatch.ANY
+            )
+        );
+        String content = "(c) 2019-2026 Alice, Bob, Carol.";
+        assertThat(match(matcher, content)).isEqualTo(content.length());
+        // Every value could end at any of the separators, which takes exponential time to rule out by going back
+        String nearMiss = "(c) 2019-2026 " + "a, ".repeat(80) + "a";
+        assertThat(match(matcher, nearMiss)).isEqualTo(-1);
+    }
+
+    @Test
+    void rejectsAdjacentVariables() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> HeaderMatcher.compile(
+            "Copyright " + variableMarker(0) + variableMarker(1) + ".",
+            List.of(TemplateVariableMatch.YEAR_RANGE, TemplateVariableMatch.ANY)
+        ));
+        assertThat(e.getMessage()).contains("separated by other header text");
+    }
+
+    @Test
+    void matchesEmptyValue() {
+        HeaderMatcher matcher = HeaderMatcher.compile(
+            "Copyright " + variableMarker(0) + " and contributors\nMore text",
+            List.of(TemplateVariableMatch.ANY)
+        );
+        String content = "Copyright  and contributors\nMore text";
+        assertThat(match(matcher, content)).isEqualTo(content.length());
+    }
+
+    @Test
+    void matchesEmptyValueAtEndOfLine() {
+        HeaderMatcher matcher = HeaderMatcher.compile(
+            "Owner: " + variableMarker(0) + "\nMore text", List.of(TemplateVariableMatch.ANY)
+        );
+        String content = "Owner: \nMore text";
+        assertThat(match(matcher, content)).isEqualTo(content.length());
+    }
+
+    @Test
+    void doesNotMatchValueOnOtherLines() {
+        HeaderMatcher matcher = HeaderMatcher.compile(
+            "Copyright " + variableMarker(0) + " and contributors", List.of(TemplateVariableMatch.ANY)
+        );
+        assertThat(match(matcher, "Copyright Alice\nBob and contributors")).isEqualTo(-1);
+    }
+
+    @Test
+    void matchesSingleYear() {
+        HeaderMatcher matcher = HeaderMatcher.compile(
+            "Copyright " + variableMarker(0) + " Alice", List.of(TemplateVariableMatch.YEAR_RANGE)
+        );
+        String content = "Copyright 2026 Alice";
+        assertThat(match(matcher, content)).isEqualTo(content.length());
+        assertThat(match(matcher, "Copyright 2019-2026 Alice")).isEqualTo("Copyright 2019-2026 Alice".length());
+        assertThat(match(matcher, "Copyright 26 Alice")).isEqualTo(-1);
+    }
+
+    @Test
+    void matchesSingleYearFollowedByRangeLikeText() {
+        // A year range would take "2019-2026", leaving the literal text nothing to match
+        HeaderMatcher matcher = HeaderMatcher.compile(
+            "Copyright " + variableMarker(0) + "-2026 Alice", List.of(TemplateVariableMatch.YEAR_RANGE)
+        );
+        String content = "Copyright 2019-2026 Alice";
+        assertThat(match(matcher, content)).isEqualTo(content.length());
+        assertThat(match(matcher, "Copyright 2019-2025 Alice")).isEqualTo(-1);
+    }
+
+    @Test
+    void matchesYearRangeAtEndOfHeader() {
+        HeaderMatcher matcher = HeaderMatcher.compile(
+            "Copyright " + variableMarker(0), List.of(TemplateVariableMatch.YEAR_RANGE)
+        );
+        assertThat(match(matcher, "Copyright 2019-2026\n")).isEqualTo("Copyright 2019-2026".length());
+        assertThat(match(matcher, "Copyright 2026\n")).isEqualTo("Copyright 2026".length());
+    }
+
+    @Test
+    void doesNotMatchValueLongerThanLimit() {
+        HeaderMatcher matcher = HeaderMatcher.compile(
+            "Copyright " + variableMarker(0) + ".", List.of(TemplateVariableMatch.ANY)
+        );
+        String atLimit = "Copyright " + "a".repeat(HeaderMatcher.MAX_ANY_LENGTH) + ".";
+        assertThat(match(matcher, atLimit)).isEqualTo(atLimit.length());
+        assertThat(match(matcher, "Copyright " + "a".repeat(HeaderMatcher.MAX_ANY_LENGTH + 1) + ".")).isEqualTo(-1);
+    }
+}
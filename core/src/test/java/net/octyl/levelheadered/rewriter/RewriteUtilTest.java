@@ -0,0 +1,123 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered.rewriter;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Random;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+
+/**
+ * Checks the word-at-a-time scans of {@link RewriteUtil} against plain loops over each byte.
+ */
+class RewriteUtilTest {
+    /**
+     * Bytes at the edges of the ranges the scans look for, and ones that only differ from those in the high bit, as
+     * those are where carries and borrows between bytes would show up.
+     */
+    private static final byte[] INTERESTING_BYTES = {
+        0x00, 0x08, 0x09, 0x0A, 0x0D, 0x0E, 0x1B, 0x1C, 0x20, 0x21, 0x2A, 0x2F, 0x7F,
+        (byte) 0x80, (byte) 0x89, (byte) 0x8A, (byte) 0x8D, (byte) 0xA0, (byte) 0xA1, (byte) 0xFF,
+    };
+    private static final int MAX_LENGTH = 40;
+    private static final int RANDOM_ARRAYS = 20_000;
+
+    private static int scalarIndexOfFirstNonWhitespaceByte(byte[] bytes, int from, int length) {
+        for (int i = from; i < length; i++) {
+            if (!Character.isWhitespace((char) bytes[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int scalarIndexOf(byte[] bytes, byte target, int from, int length) {
+        for (int i = from; i < length; i++) {
+            if (bytes[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String scalarDetectLineEnding(byte[] bytes, int length) {
+        // Each byte becomes one char, so the checks see the same CRs and LFs at the same places
+        String content = new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+        if (content.indexOf('\n') == -1) {
+            return null;
+        }
+        try {
+            return FileHeaderRewriter.detectLineEnding(content);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void checkAllScans(byte[] bytes, int length) {
+        String input = HexFormat.ofDelimiter(" ").formatHex(bytes, 0, length) + " (of " + bytes.length + ")";
+        for (int from = 0; from <= length; from++) {
+            assertWithMessage("first non-whitespace from %s in %s", from, input)
+                .that(RewriteUtil.getIndexOfFirstNonWhitespaceByte(bytes, from, length))
+                .isEqualTo(scalarIndexOfFirstNonWhitespaceByte(bytes, from, length));
+            for (byte target : new byte[] {'\n', '\r', '*', (byte) 0x8A}) {
+                assertWithMessage("index of %s from %s in %s", target, from, input)
+                    .that(RewriteUtil.indexOf(bytes, target, from, length))
+                    .isEqualTo(scalarIndexOf(bytes, target, from, length));
+            }
+        }
+        assertWithMessage("line ending of %s", input)
+            .that(RewriteUtil.detectLineEnding(bytes, length))
+            .isEqualTo(scalarDetectLineEnding(bytes, length));
+    }
+
+    @Test
+    void matchesScalarForEachByteAtEachPosition() {
+        for (int value = 0; value < 256; value++) {
+            for (int position = 0; position < 2 * Long.BYTES + 1; position++) {
+                // Non-whitespace before the byte, so every scan gets to it
+                byte[] bytes = new byte[2 * Long.BYTES + 1];
+                Arrays.fill(bytes, (byte) ' ');
+                bytes[position] = (byte) value;
+                checkAllScans(bytes, bytes.length);
+            }
+        }
+    }
+
+    @Test
+    void matchesScalarForRandomInput() {
+        Random random = new Random(0x1E7E1);
+        for (int n = 0; n < RANDOM_ARRAYS; n++) {
+            // Longer than the length, with bytes past it that the scans must not look at
+            byte[] bytes = new byte[MAX_LENGTH + Long.BYTES];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = random.nextInt(4) == 0
+                    ? (byte) random.nextInt(256)
+                    : INTERESTING_BYTES[random.nextInt(INTERESTING_BYTES.length)];
+            }
+            checkAllScans(bytes, random.nextInt(MAX_LENGTH + 1));
+        }
+    }
+
+    @Test
+    void matchesScalarForLineEndingsAroundWordBoundaries() {
+        Random random = new Random(0xC21F);
+        for (int n = 0; n < RANDOM_ARRAYS; n++) {
+            byte[] bytes = new byte[MAX_LENGTH];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = switch (random.nextInt(6)) {
+                    case 0 -> '\r';
+                    case 1 -> '\n';
+                    default -> 'a';
+                };
+            }
+            checkAllScans(bytes, bytes.length - random.nextInt(Long.BYTES));
+        }
+    }
+}
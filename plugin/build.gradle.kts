@@ -15,7 +15,16 @@ repositories {
 
 java.toolchain.languageVersion = JavaLanguageVersion.of(17)
 
+// The core is not published on its own, so its classes ship inside the plugin jar
+val bundled by configurations.creating {
+    isCanBeConsumed = false
+    isTransitive = false
+}
+
 dependencies {
+    compileOnly(project(":core"))
+    bundled(project(":core"))
+
     testImplementation(libs.junit.jupiter)
     testImplementation(libs.intellij.annotations)
     testImplementation(libs.truth)
@@ -60,6 +69,14 @@ gradlePlugin {
                     " activates applying and verifying headers when certain plugins are present"
             tags = listOf("header", "license")
         }
+        create("levelHeaderedAggregate") {
+            id = "net.octyl.level-headered.aggregate"
+            implementationClass = "net.octyl.levelheadered.LevelHeaderedAggregatePlugin"
+            displayName = "LevelHeadered Aggregate Plugin"
+            description = "Aggregate interface for LevelHeadered, a file header management plugin," +
+                    " applies and verifies headers for a project and all subprojects in one task"
+            tags = listOf("header", "license")
+        }
     }
 }
 
@@ -81,10 +98,50 @@ tasks.check {
     dependsOn(functionalTest)
 }
 
+val perfTestSourceSet = sourceSets.create("perfTest") {
+}
+
+configurations["perfTestImplementation"].extendsFrom(configurations["functionalTestImplementation"])
+configurations["perfTestRuntimeOnly"].extendsFrom(configurations["functionalTestRuntimeOnly"])
+
+dependencies {
+    "perfTestImplementation"(functionalTestSourceSet.output)
+}
+
+// Not part of check, as the synthetic builds take minutes. Scale with -Plevelheadered.perf.<option>=<value>.
+val perfTest by tasks.registering(Test::class) {
+    description = "Measures the plugin on large synthetic builds."
+    group = "verification"
+    testClassesDirs = perfTestSourceSet.output.classesDirs
+    classpath = perfTestSourceSet.runtimeClasspath
+    useJUnitPlatform()
+    // Measurements are the point, so never skip them
+    outputs.upToDateWhen { false }
+    systemProperty(
+        "levelheadered.perf.results",
+        layout.buildDirectory.file("reports/perf/results.json").get().asFile.absolutePath
+    )
+    providers.gradlePropertiesPrefixedBy("levelheadered.perf.").get().forEach { (key, value) ->
+        systemProperty(key, value)
+    }
+}
+
+gradlePlugin.testSourceSets.add(perfTestSourceSet)
+
 tasks.test {
     useJUnitPlatform()
 }
 
+tasks.jar {
+    from(provider { bundled.map { zipTree(it) } }) {
+        exclude("META-INF/MANIFEST.MF")
+    }
+}
+
+tasks.pluginUnderTestMetadata {
+    pluginClasspath.from(bundled)
+}
+
 tasks.withType<JavaCompile>().configureEach {
     options.encoding = "UTF-8"
     options.compilerArgs.addAll(listOf("-parameters", "-Werror"))
@@ -11,10 +11,15 @@ import org.junit.jupiter.api.io.TempDir;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Pattern;
 
+import static com.google.common.truth.Truth.assertWithMessage;
+
 public abstract class AbstractFunctionalTest {
     @TempDir
     Path projectDir;
@@ -59,4 +64,17 @@ public abstract class AbstractFunctionalTest {
             .withArguments(args)
             .withPluginClasspath();
     }
+
+    protected void git(String... args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(List.of(
+            "git", "-c", "user.name=Test", "-c", "user.email=test@example.com", "-c", "commit.gpgSign=false"
+        ));
+        command.addAll(List.of(args));
+        Process process = new ProcessBuilder(command)
+            .directory(projectDir.toFile())
+            .redirectErrorStream(true)
+            .start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertWithMessage("git %s: %s", String.join(" ", args), output).that(process.waitFor()).isEqualTo(0);
+    }
 }
@@ -0,0 +1,101 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered;
+
+import org.gradle.testkit.runner.BuildResult;
+import org.gradle.testkit.runner.TaskOutcome;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Verifies functionality of the aggregate plugin when applied to the root of a multi-project build.
+ */
+class AggregateFunctionalTest extends AbstractFunctionalTest {
+    private static final String BASE_CONTENT =
+        """
+        public class App {
+        }
+        """;
+    private static final String SUBPROJECT_BUILD_FILE =
+        """
+        plugins {
+            java
+            id("net.octyl.level-headered")
+        }
+        
+        levelHeadered {
+            headerTemplate("Header of ${project.name}")
+            sourceMatchPatterns {
+                exclude("**/Excluded.java")
+            }
+        }
+        """;
+
+    private static String withHeader(String projectName) {
+        return """
+            /*
+             * Header of %s
+             */
+            
+            public class App {
+            }
+            """.formatted(projectName);
+    }
+
+    @Test
+    void processesAllSubprojectsInOneTask() throws IOException {
+        settingsFile(
+            """
+            include("a", "b")
+            """
+        );
+        buildFile(
+            """
+            plugins {
+                id("net.octyl.level-headered.aggregate")
+            }
+            
+            levelHeadered.headerTemplate("Root header")
+            """
+        );
+        writeFile(projectDir.resolve("a/build.gradle.kts"), SUBPROJECT_BUILD_FILE);
+        writeFile(projectDir.resolve("b/build.gradle.kts"), SUBPROJECT_BUILD_FILE);
+        writeFile(projectDir.resolve("a/src/main/java/App.java"), BASE_CONTENT);
+        writeFile(projectDir.resolve("b/src/test/java/App.java"), BASE_CONTENT);
+        writeFile(projectDir.resolve("b/src/main/java/Excluded.java"), BASE_CONTENT);
+
+        BuildResult result = createGradleRunner("verifyHeaderAggregate").buildAndFail();
+        assertThat(result.task(":verifyHeaderAggregate").getOutcome()).isEqualTo(TaskOutcome.FAILED);
+        assertThat(result.getOutput()).contains("Header verification failed for 2 of 2 files.");
+
+        result = createGradleRunner("applyHeaderAggregate").build();
+        assertThat(result.task(":applyHeaderAggregate").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+        assertThat(result.task(":a:applyHeader")).isNull();
+        // Each project is processed with its own header
+        assertThat(Files.readString(projectDir.resolve("a/src/main/java/App.java"))).isEqualTo(withHeader("a"));
+        assertThat(Files.readString(projectDir.resolve("b/src/test/java/App.java"))).isEqualTo(withHeader("b"));
+        assertThat(Files.readString(projectDir.resolve("b/src/main/java/Excluded.java"))).isEqualTo(BASE_CONTENT);
+
+        result = createGradleRunner("verifyHeaderAggregate").build();
+        assertThat(result.task(":verifyHeaderAggregate").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+        result = createGradleRunner("verifyHeaderAggregate").build();
+        assertThat(result.task(":verifyHeaderAggregate").getOutcome()).isEqualTo(TaskOutcome.UP_TO_DATE);
+
+        // A changed header of one project must be picked up
+        writeFile(
+            projectDir.resolve("b/build.gradle.kts"),
+            SUBPROJECT_BUILD_FILE.replace("Header of", "New header of")
+        );
+        result = createGradleRunner("verifyHeaderAggregate").buildAndFail();
+        assertThat(result.getOutput()).containsMatch(
+            "Header verification failed for file: .*" + quotedFilePath("b/src/test/java/App.java")
+        );
+    }
+}
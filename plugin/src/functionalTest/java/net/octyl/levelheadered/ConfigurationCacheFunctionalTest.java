@@ -0,0 +1,219 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered;
+
+import org.gradle.testkit.runner.BuildResult;
+import org.gradle.testkit.runner.TaskOutcome;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Verifies that the plugin works with the configuration cache and isolated projects.
+ */
+class ConfigurationCacheFunctionalTest extends AbstractFunctionalTest {
+    private static final String BUILD_FILE =
+        """
+        plugins {
+            java
+            id("net.octyl.level-headered")
+        }
+        
+        levelHeadered.headerTemplate("My custom header")
+        """;
+    private static final String WITH_HEADER_CONTENT =
+        """
+        /*
+         * My custom header
+         */
+        
+        public class App {
+        }
+        """;
+
+    @Test
+    void reusesConfigurationCache() throws IOException {
+        settingsFile("");
+        buildFile(BUILD_FILE);
+        writeFile(projectDir.resolve("src/main/java/App.java"), WITH_HEADER_CONTENT);
+
+        BuildResult result = createGradleRunner("verifyHeader", "--configuration-cache").build();
+        assertThat(result.task(":verifyHeader").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+        assertThat(result.getOutput()).contains("Configuration cache entry stored.");
+
+        result = createGradleRunner("verifyHeader", "--configuration-cache").build();
+        assertThat(result.task(":verifyHeader").getOutcome()).isEqualTo(TaskOutcome.UP_TO_DATE);
+        assertThat(result.getOutput()).contains("Configuration cache entry reused.");
+
+        // A changed source file must still be verified when the cache is reused
+        writeFile(projectDir.resolve("src/main/java/App.java"), "public class App {\n}\n");
+        result = createGradleRunner("verifyHeader", "--configuration-cache").buildAndFail();
+        assertThat(result.task(":verifyHeader").getOutcome()).isEqualTo(TaskOutcome.FAILED);
+        assertThat(result.getOutput()).contains("Configuration cache entry reused.");
+
+        result = createGradleRunner("applyHeader", "--configuration-cache").build();
+        assertThat(result.task(":applyHeader").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+        result = createGradleRunner("applyHeader", "--configuration-cache").build();
+        assertThat(result.getOutput()).contains("Configuration cache entry reused.");
+    }
+
+    @Test
+    void supportsIsolatedProjects() throws IOException {
+        settingsFile(
+            """
+            include("a", "b")
+            """
+        );
+        writeFile(projectDir.resolve("a/build.gradle.kts"), BUILD_FILE);
+        writeFile(projectDir.resolve("b/build.gradle.kts"), BUILD_FILE);
+        writeFile(projectDir.resolve("a/src/main/java/App.java"), WITH_HEADER_CONTENT);
+        writeFile(projectDir.resolve("b/src/main/java/App.java"), WITH_HEADER_CONTENT);
+
+        String[] args = {"verifyHeader", "-Dorg.gradle.unsafe.isolated-projects=true"};
+        BuildResult result = createGradleRunner(args).build();
+        assertThat(result.task(":a:verifyHeader").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+        assertThat(result.task(":b:verifyHeader").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+
+        result = createGradleRunner(args).build();
+        assertThat(result.getOutput()).contains("Configuration cache entry reused.");
+    }
+
+    @Test
+    void supportsIsolatedProjectsWithFilteredSources() throws IOException, InterruptedException {
+        settingsFile(
+            """
+            include("a", "b")
+            """
+        );
+        String buildFile =
+            """
+            plugins {
+                java
+                id("net.octyl.level-headered")
+            }
+            
+            levelHeadered {
+                headerTemplate("My custom header")
+                sourceMatchPatterns {
+                    exclude("**/Excluded.java")
+                }
+                changedSince = "base"
+            }
+            """;
+        writeFile(projectDir.resolve("a/build.gradle.kts"), buildFile);
+        writeFile(projectDir.resolve("b/build.gradle.kts"), buildFile);
+        writeFile(projectDir.resolve(".gitignore"), ".gradle/\nbuild/\n");
+        writeFile(projectDir.resolve("a/src/main/java/App.java"), "public class App {\n}\n");
+        writeFile(projectDir.resolve("b/src/main/java/App.java"), WITH_HEADER_CONTENT);
+        git("init", "--quiet");
+        git("add", ".");
+        git("commit", "--quiet", "-m", "Base");
+        git("tag", "base");
+        writeFile(projectDir.resolve("b/src/main/java/Changed.java"), WITH_HEADER_CONTENT);
+        writeFile(projectDir.resolve("b/src/main/java/Excluded.java"), "public class Excluded {\n}\n");
+
+        String[] args = {"verifyHeader", "-Dorg.gradle.unsafe.isolated-projects=true", "-i"};
+        BuildResult result = createGradleRunner(args).build();
+        assertThat(result.getOutput()).contains("Configuration cache entry stored.");
+        // Only the changed file is left after filtering
+        assertThat(result.task(":a:verifyHeader").getOutcome()).isEqualTo(TaskOutcome.NO_SOURCE);
+        assertThat(result.task(":b:verifyHeader").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+        assertThat(result.getOutput()).contains(":b:verifyHeader: 1 files considered");
+
+        result = createGradleRunner(args).build();
+        assertThat(result.getOutput()).contains("Configuration cache entry reused.");
+        assertThat(result.task(":b:verifyHeader").getOutcome()).isEqualTo(TaskOutcome.UP_TO_DATE);
+
+        // A newly changed file must be picked up, even though it changes which files are filtered out
+        writeFile(projectDir.resolve("a/src/main/java/App.java"), "public class App {\n    // Changed\n}\n");
+        result = createGradleRunner(args).buildAndFail();
+        assertThat(result.task(":a:verifyHeader").getOutcome()).isEqualTo(TaskOutcome.FAILED);
+        assertThat(result.getOutput()).containsMatch(
+            "Header verification failed for file: .*" + quotedFilePath("a/src/main/java/App.java")
+        );
+    }
+
+    @Test
+    void reusesConfigurationCacheWithCommentStyleRewriter() throws IOException {
+        settingsFile("");
+        buildFile(
+            """
+            import net.octyl.levelheadered.rewriter.StandardFileHeaderRewriter
+            
+            plugins {
+                java
+                id("net.octyl.level-headered")
+            }
+            
+            levelHeadered {
+                headerTemplate("My custom header")
+                rewriters.put(".sh", StandardFileHeaderRewriter.HASH_COMMENT)
+                rewriters.put(".xml", StandardFileHeaderRewriter.XML_COMMENT)
+            }
+            """
+        );
+        writeFile(projectDir.resolve("src/main/resources/run.sh"), "#!/bin/sh\n# My custom header\n\necho hi\n");
+        writeFile(
+            projectDir.resolve("src/main/resources/config.xml"),
+            "<?xml version=\"1.0\"?>\n<!--\n  My custom header\n-->\n\n<config/>\n"
+        );
+
+        // The rewriters, with their comment styles and preambles, must be stored in and restored from the cache
+        BuildResult result = createGradleRunner("verifyHeader", "--configuration-cache").build();
+        assertThat(result.task(":verifyHeader").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+        assertThat(result.getOutput()).contains("Configuration cache entry stored.");
+
+        writeFile(projectDir.resolve("src/main/resources/run.sh"), "#!/bin/sh\necho hi\n");
+        result = createGradleRunner("verifyHeader", "--configuration-cache").buildAndFail();
+        assertThat(result.getOutput()).contains("Configuration cache entry reused.");
+        assertThat(result.getOutput()).containsMatch(
+            "Header verification failed for file: .*" + quotedFilePath("src/main/resources/run.sh")
+        );
+    }
+
+    @Test
+    void supportsIsolatedProjectsWithAggregate() throws IOException {
+        settingsFile(
+            """
+            include("a", "b", "c")
+            """
+        );
+        buildFile(
+            """
+            plugins {
+                id("net.octyl.level-headered.aggregate")
+            }
+            """
+        );
+        writeFile(projectDir.resolve("a/build.gradle.kts"), BUILD_FILE);
+        writeFile(projectDir.resolve("b/build.gradle.kts"), BUILD_FILE.replace("My custom", "Other"));
+        // Projects without the plugin publish nothing, and are skipped
+        writeFile(projectDir.resolve("c/build.gradle.kts"), "plugins {\n    java\n}\n");
+        writeFile(projectDir.resolve("a/src/main/java/App.java"), WITH_HEADER_CONTENT);
+        writeFile(projectDir.resolve("b/src/main/java/App.java"), WITH_HEADER_CONTENT.replace("My custom", "Other"));
+        writeFile(projectDir.resolve("c/src/main/java/App.java"), "public class App {\n}\n");
+
+        String[] args = {"verifyHeaderAggregate", "-Dorg.gradle.unsafe.isolated-projects=true", "-i"};
+        BuildResult result = createGradleRunner(args).build();
+        assertThat(result.getOutput()).contains("Configuration cache entry stored.");
+        assertThat(result.task(":verifyHeaderAggregate").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+        assertThat(result.getOutput()).contains(":verifyHeaderAggregate: 2 files considered");
+
+        result = createGradleRunner(args).build();
+        assertThat(result.getOutput()).contains("Configuration cache entry reused.");
+        assertThat(result.task(":verifyHeaderAggregate").getOutcome()).isEqualTo(TaskOutcome.UP_TO_DATE);
+
+        // A changed source file must still be verified when the cache is reused
+        writeFile(projectDir.resolve("a/src/main/java/App.java"), "public class App {\n}\n");
+        result = createGradleRunner(args).buildAndFail();
+        assertThat(result.getOutput()).contains("Configuration cache entry reused.");
+        assertThat(result.getOutput()).containsMatch(
+            "Header verification failed for file: .*" + quotedFilePath("a/src/main/java/App.java")
+        );
+    }
+}
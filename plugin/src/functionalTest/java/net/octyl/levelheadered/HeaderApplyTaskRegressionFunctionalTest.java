@@ -212,4 +212,46 @@ class HeaderApplyTaskRegressionFunctionalTest extends AbstractFunctionalTest {
             """.formatted(quotedFilePath("src/main/java/AppSwapped.java"))
         );
     }
+
+    @Test
+    void failsOnMixedLineEndingsPastHeaderWindow() throws IOException {
+        settingsFile("");
+        buildFile(
+            """
+            plugins {
+                java
+                id("net.octyl.level-headered")
+            }
+            
+            levelHeadered.headerTemplate("A header")
+            """
+        );
+
+        // Only the start of the file is read to decide the header, so put the CRLF well past it
+        StringBuilder content = new StringBuilder("public class App {\n");
+        while (content.length() < 64 * 1024) {
+            content.append("    // Filler to push the next line past the header window\n");
+        }
+        content.append("    // CRLF here ->\r\n");
+        content.append("}\n");
+        Files.createDirectories(projectDir.resolve("src/main/java"));
+        Files.writeString(projectDir.resolve("src/main/java/App.java"), content);
+
+        BuildResult result = createGradleRunner("applyHeader").buildAndFail();
+        BuildTask task = result.task(":applyHeader");
+        assertThat(task).isNotNull();
+        assertThat(task.getOutcome()).isEqualTo(TaskOutcome.FAILED);
+        assertThat(withoutLocalLineSep(result.getOutput())).containsMatch(
+            """
+               > A failure occurred while executing net\\.octyl\\.levelheadered\\.HeaderApplyWorkAction
+                  > Failed to apply header
+                      Multiple line endings detected in content
+                        File: .+%s
+            """.formatted(quotedFilePath("src/main/java/App.java"))
+        );
+        assertThat(Files.readString(projectDir.resolve("src/main/java/App.java"))).isEqualTo(content.toString());
+        try (var files = Files.list(projectDir.resolve("src/main/java"))) {
+            assertThat(files.map(file -> file.getFileName().toString()).toList()).containsExactly("App.java");
+        }
+    }
 }
@@ -0,0 +1,120 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered;
+
+import org.gradle.testkit.runner.BuildResult;
+import org.gradle.testkit.runner.TaskOutcome;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Verifies that only reading the start of files gives the same results as reading them whole.
+ */
+class HeaderWindowFunctionalTest extends AbstractFunctionalTest {
+    /**
+     * The smallest number of bytes read from a file, see {@code HeaderWindow}.
+     */
+    private static final int MIN_WINDOW_BYTES = 4096;
+    private static final String HEADER = "/*\n * My custom header\n */\n\n";
+
+    private void buildFileWithHeader(String headerText) throws IOException {
+        settingsFile("");
+        buildFile(
+            """
+            plugins {
+                java
+                id("net.octyl.level-headered")
+            }
+
+            levelHeadered.headerTemplate("%s")
+            """.formatted(headerText)
+        );
+    }
+
+    private String metrics(String taskName) throws IOException {
+        return Files.readString(projectDir.resolve("build/reports/levelHeadered/" + taskName + "/metrics.json"));
+    }
+
+    @Test
+    void skipsBinaryFiles() throws IOException {
+        buildFileWithHeader("My custom header");
+        Path file = projectDir.resolve("src/main/java/App.java");
+        Files.createDirectories(file.getParent());
+        byte[] content = "public class App {\0}\n".getBytes(StandardCharsets.UTF_8);
+        Files.write(file, content);
+
+        BuildResult result = createGradleRunner("verifyHeader", "-i").build();
+        assertThat(result.task(":verifyHeader").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+        assertThat(result.getOutput()).contains("Skipping binary file " + file);
+        assertThat(metrics("verifyHeader")).contains("\"filesBinary\": 1");
+
+        result = createGradleRunner("applyHeader", "-i").build();
+        assertThat(result.task(":applyHeader").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+        assertThat(result.getOutput()).contains("Skipping binary file " + file);
+        assertThat(metrics("applyHeader")).contains("\"filesBinary\": 1");
+        assertThat(Files.readAllBytes(file)).isEqualTo(content);
+    }
+
+    @Test
+    void appliesHeaderLongerThanMinimumWindow() throws IOException {
+        // Each line takes 23 bytes in the file, so the header is twice as long as the minimum window
+        String line = "0123456789abcdefghi";
+        int lineCount = MIN_WINDOW_BYTES / 10;
+        buildFileWithHeader((line + "\\\\n").repeat(lineCount).trim());
+        String header = "/*\n" + (" * " + line + "\n").repeat(lineCount) + " */\n\n";
+        Path file = projectDir.resolve("src/main/java/App.java");
+        writeFile(file, "public class App {\n}\n");
+
+        assertThat(createGradleRunner("verifyHeader").buildAndFail().task(":verifyHeader").getOutcome())
+            .isEqualTo(TaskOutcome.FAILED);
+        createGradleRunner("applyHeader").build();
+        assertThat(withoutLocalLineSep(Files.readString(file))).isEqualTo(header + "public class App {\n}\n");
+        assertThat(createGradleRunner("verifyHeader").build().task(":verifyHeader").getOutcome())
+            .isEqualTo(TaskOutcome.SUCCESS);
+    }
+
+    @Test
+    void readsWholeFileWhenWindowHasNoLineEnding() throws IOException {
+        buildFileWithHeader("My custom header");
+        // The window cannot tell which line ending the file uses, so the whole file must be read to apply the header
+        String content = "// " + "a".repeat(MIN_WINDOW_BYTES * 2) + "\r\npublic class App {\r\n}\r\n";
+        Path file = projectDir.resolve("src/main/java/App.java");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+
+        createGradleRunner("applyHeader").build();
+        assertThat(Files.readString(file)).isEqualTo(HEADER.replace("\n", "\r\n") + content);
+        assertThat(metrics("applyHeader")).contains("\"bytesRead\": " + (MIN_WINDOW_BYTES + content.length()));
+    }
+
+    @Test
+    void keepsCharacterSplitAtWindowEnd() throws IOException {
+        buildFileWithHeader("My custom header");
+        // Two byte characters starting at an odd offset, so one of them is cut in half at the end of the window
+        String start = "public class App {\n}\n// ";
+        if ((MIN_WINDOW_BYTES - start.length()) % 2 == 0) {
+            start += " ";
+        }
+        String content = start + "é".repeat(MIN_WINDOW_BYTES) + "\n";
+        Path file = projectDir.resolve("src/main/java/App.java");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+
+        assertThat(createGradleRunner("verifyHeader").buildAndFail().task(":verifyHeader").getOutcome())
+            .isEqualTo(TaskOutcome.FAILED);
+        assertThat(metrics("verifyHeader")).contains("\"bytesRead\": " + MIN_WINDOW_BYTES);
+        createGradleRunner("applyHeader").build();
+        assertThat(Files.readString(file)).isEqualTo(HEADER + content);
+        assertThat(createGradleRunner("verifyHeader").build().task(":verifyHeader").getOutcome())
+            .isEqualTo(TaskOutcome.SUCCESS);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered;
+
+import org.gradle.testkit.runner.BuildResult;
+import org.gradle.testkit.runner.TaskOutcome;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Verifies that the watch task applies headers to files as they are created.
+ */
+class WatchFunctionalTest extends AbstractFunctionalTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(60);
+    private static final String BASE_CONTENT =
+        """
+        public class App {
+        }
+        """;
+    private static final String WITH_HEADER_CONTENT =
+        """
+        /*
+         * My custom header
+         */
+
+        public class App {
+        }
+        """;
+
+    private static boolean hasHeader(Path file) throws IOException {
+        return Files.exists(file) && withoutLocalLineSep(Files.readString(file)).equals(WITH_HEADER_CONTENT);
+    }
+
+    private interface Check {
+        boolean test() throws Exception;
+    }
+
+    /**
+     * Runs {@code poll} until {@code done} holds, failing if that takes longer than {@link #TIMEOUT}.
+     */
+    private static void awaitUntil(String description, Check done, Check poll, Duration interval) throws Exception {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (!done.test()) {
+            if (System.nanoTime() > deadline || !poll.test()) {
+                throw new AssertionError("Timed out waiting until " + description);
+            }
+            Thread.sleep(interval.toMillis());
+        }
+    }
+
+    @Test
+    void appliesHeadersToFilesInNewDirectories() throws Exception {
+        settingsFile("");
+        buildFile(
+            """
+            import java.time.Duration
+
+            plugins {
+                java
+                id("net.octyl.level-headered")
+            }
+
+            levelHeadered.headerTemplate("My custom header")
+
+            tasks.watchHeader {
+                debounce = Duration.ofMillis(50)
+                // Stands in for cancelling the build, which the test kit cannot do
+                val stopFile = layout.projectDirectory.file("stop").asFile
+                doFirst {
+                    val taskThread = Thread.currentThread()
+                    Thread {
+                        while (!stopFile.exists()) {
+                            Thread.sleep(50)
+                        }
+                        taskThread.interrupt()
+                    }.apply { isDaemon = true }.start()
+                }
+            }
+            """
+        );
+        Path probe = projectDir.resolve("src/main/java/Probe.java");
+        writeFile(probe, BASE_CONTENT);
+
+        CompletableFuture<BuildResult> build = CompletableFuture.supplyAsync(
+            () -> createGradleRunner("watchHeader").build()
+        );
+        try {
+            // Rewrite the probe until the watcher picks it up, so it is known to be watching
+            awaitUntil("the watcher started", () -> hasHeader(probe), () -> {
+                writeFile(probe, BASE_CONTENT);
+                return !build.isDone();
+            }, Duration.ofMillis(500));
+
+            // Files created right after their directory must not be missed while the directory is registered
+            Path first = projectDir.resolve("src/main/java/com/example/First.java");
+            Path second = projectDir.resolve("src/main/java/com/example/nested/Second.java");
+            writeFile(first, BASE_CONTENT);
+            writeFile(second, BASE_CONTENT);
+            awaitUntil(
+                "headers are applied in new directories",
+                () -> hasHeader(first) && hasHeader(second),
+                () -> !build.isDone(),
+                Duration.ofMillis(100)
+            );
+        } finally {
+            Files.createFile(projectDir.resolve("stop"));
+        }
+
+        BuildResult result = build.get(TIMEOUT.toSeconds(), TimeUnit.SECONDS);
+        assertThat(result.task(":watchHeader").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+        assertThat(result.getOutput()).contains("Stopped watching");
+    }
+}
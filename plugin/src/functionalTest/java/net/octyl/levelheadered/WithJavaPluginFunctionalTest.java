@@ -7,11 +7,18 @@ package net.octyl.levelheadered;
 
 import org.gradle.testkit.runner.BuildResult;
 import org.gradle.testkit.runner.TaskOutcome;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
 
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static com.google.common.truth.Truth.assertThat;
 
@@ -144,6 +151,9 @@ class WithJavaPluginFunctionalTest extends AbstractFunctionalTest {
         assertThat(result.getOutput()).containsMatch(
             "Processing ADDED file: .*" + quotedFilePath("/" + FILE_PATH)
         );
+        assertThat(result.getOutput()).contains(":verifyHeader: 1 files considered");
+        assertThat(Files.readString(projectDir.resolve("build/reports/levelHeadered/verifyHeader/metrics.json")))
+            .contains("\"filesProcessed\": 1");
 
         result = createGradleRunner("verifyHeader", "-iS").build();
         assertThat(result.task(":verifyHeader").getOutcome()).isEqualTo(TaskOutcome.UP_TO_DATE);
@@ -269,4 +279,566 @@ class WithJavaPluginFunctionalTest extends AbstractFunctionalTest {
             "Processing ADDED file: .*" + quotedFilePath("/" + CUSTOM_HEADERED_FILE_PATH)
         );
     }
+
+    @Test
+    void reusesResultForFileSharedBetweenTasks() throws IOException {
+        settingsFile("");
+        buildFile(
+            """
+            plugins {
+                java
+                id("net.octyl.level-headered")
+            }
+            
+            levelHeadered.headerTemplate("%s")
+            
+            // Both source sets cover the same file
+            sourceSets.main { java.srcDir("src/shared/java") }
+            sourceSets.test { java.srcDir("src/shared/java") }
+            """.formatted(HEADER_TEXT_AS_EMBEDDABLE_STRING)
+        );
+        writeFile(projectDir.resolve("src/shared/java/App.java"), WITH_JAVADOC_CONTENT);
+
+        BuildResult result = createGradleRunner("applyHeader", "applyTestHeader", "-i").build();
+        assertThat(result.task(":applyHeader").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+        assertThat(result.task(":applyTestHeader").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+        assertThat(result.getOutput()).contains(":applyTestHeader: 1 files considered, 0 without a rewriter, " +
+            "1 processed (1 reused");
+        assertThat(Files.readString(projectDir.resolve("src/shared/java/App.java")))
+            .isEqualTo(withLocalLineSep(WITH_JAVADOC_AND_HEADER_CONTENT));
+    }
+
+    @Test
+    void reverifiesFileModifiedBetweenTasks() throws IOException {
+        settingsFile("");
+        buildFile(
+            """
+            plugins {
+                java
+                id("net.octyl.level-headered")
+            }
+            
+            levelHeadered.headerTemplate("%s")
+            
+            // Both source sets cover the same file
+            sourceSets.main { java.srcDir("src/shared/java") }
+            sourceSets.test { java.srcDir("src/shared/java") }
+            
+            val removeHeader by tasks.registering {
+                mustRunAfter(tasks.verifyHeader)
+                val file = layout.projectDirectory.file("src/shared/java/App.java").asFile
+                doLast { file.writeText("public class App {}\\n") }
+            }
+            tasks.verifyTestHeader { mustRunAfter(removeHeader) }
+            """.formatted(HEADER_TEXT_AS_EMBEDDABLE_STRING)
+        );
+        writeFile(projectDir.resolve("src/shared/java/App.java"), WITH_HEADER_CONTENT);
+
+        BuildResult result = createGradleRunner(
+            "verifyHeader", "removeHeader", "verifyTestHeader", "-i"
+        ).buildAndFail();
+        assertThat(result.task(":verifyHeader").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+        assertThat(result.task(":verifyTestHeader").getOutcome()).isEqualTo(TaskOutcome.FAILED);
+        assertThat(result.getOutput()).containsMatch(
+            "Header verification failed for file: .*" + quotedFilePath("/src/shared/java/App.java")
+        );
+        assertThat(result.getOutput()).contains(":verifyTestHeader: 1 files considered, 0 without a rewriter, " +
+            "1 processed (0 reused");
+    }
+
+    @Test
+    void failsOnceForInvalidHeader() throws IOException {
+        settingsFile("");
+        buildFile(
+            """
+            plugins {
+                java
+                id("net.octyl.level-headered")
+            }
+            
+            levelHeadered.headerTemplate("A header that ends a comment */ too early")
+            """
+        );
+        writeFile(projectDir.resolve(FILE_PATH), BASE_CONTENT);
+        writeFile(projectDir.resolve(CUSTOM_HEADERED_FILE_PATH), BASE_CONTENT);
+
+        BuildResult result = createGradleRunner("verifyHeader").buildAndFail();
+        assertThat(result.task(":verifyHeader").getOutcome()).isEqualTo(TaskOutcome.FAILED);
+        String message = "Header cannot be applied by the rewriter for '.java': " +
+            "Header text cannot contain '*/' sequence";
+        assertThat(result.getOutput()).contains(message);
+        assertThat(result.getOutput().indexOf(message)).isEqualTo(result.getOutput().lastIndexOf(message));
+    }
+
+    @Test
+    void reportsAllInvalidHeadersTogether() throws IOException {
+        settingsFile("");
+        buildFile(
+            """
+            plugins {
+                java
+                id("net.octyl.level-headered")
+            }
+            
+            levelHeadered.headerTemplate("%s")
+            """.formatted(HEADER_TEXT_AS_EMBEDDABLE_STRING)
+        );
+        writeFile(projectDir.resolve(FILE_PATH), BASE_CONTENT);
+        writeFile(projectDir.resolve(CUSTOM_HEADERED_FILE_PATH), BASE_CONTENT);
+
+        BuildResult result = createGradleRunner("verifyHeader").buildAndFail();
+        assertThat(result.task(":verifyHeader").getOutcome()).isEqualTo(TaskOutcome.FAILED);
+        assertThat(result.getOutput()).contains("Header verification failed for 2 of 2 files.");
+        assertThat(result.getOutput()).containsMatch("- .*" + quotedFilePath("/" + FILE_PATH));
+        assertThat(result.getOutput()).containsMatch("- .*" + quotedFilePath("/" + CUSTOM_HEADERED_FILE_PATH));
+        assertThat(Files.readString(
+            projectDir.resolve("build/reports/levelHeadered/verifyHeader/header-verification.sarif")
+        )).contains("\"failedFileCount\":2");
+    }
+
+    @Test
+    void stopsAtMaxFailures() throws IOException {
+        settingsFile("");
+        buildFile(
+            """
+            plugins {
+                java
+                id("net.octyl.level-headered")
+            }
+            
+            levelHeadered {
+                headerTemplate("%s")
+                batchSize = 1
+            }
+            
+            tasks.verifyHeader {
+                maxFailures = 1
+                maxInFlightBatches = 1
+            }
+            """.formatted(HEADER_TEXT_AS_EMBEDDABLE_STRING)
+        );
+        for (int i = 0; i < 20; i++) {
+            writeFile(projectDir.resolve("src/main/java/App" + i + ".java"), BASE_CONTENT);
+        }
+
+        // One worker, so batches run one after the other
+        BuildResult result = createGradleRunner("verifyHeader", "--max-workers=1").buildAndFail();
+        assertThat(result.task(":verifyHeader").getOutcome()).isEqualTo(TaskOutcome.FAILED);
+        assertThat(result.getOutput()).containsMatch(
+            "Header verification failed for file: .*" + quotedFilePath("/src/main/java/App") + "\\d+\\.java\\."
+                + " Stopped at the failure limit, 19 files were not verified\\."
+        );
+        String report = Files.readString(
+            projectDir.resolve("build/reports/levelHeadered/verifyHeader/header-verification.sarif")
+        );
+        assertThat(report).contains("\"skippedFileCount\":19");
+        assertThat(report).contains("\"failedFileCount\":1");
+        // Batches after the failing one are never submitted
+        assertThat(Files.readString(projectDir.resolve("build/reports/levelHeadered/verifyHeader/metrics.json")))
+            .contains("\"batches\": 1,");
+    }
+
+    @Test
+    void keepsDefaultBatchingWithIoConcurrency() throws IOException {
+        settingsFile("");
+        buildFile(
+            """
+            plugins {
+                java
+                id("net.octyl.level-headered")
+            }
+            
+            levelHeadered {
+                headerTemplate("%s")
+                ioConcurrency = 4
+            }
+            """.formatted(HEADER_TEXT_AS_EMBEDDABLE_STRING)
+        );
+        for (int i = 0; i < 8; i++) {
+            writeFile(projectDir.resolve("src/main/java/App" + i + ".java"), BASE_CONTENT);
+        }
+
+        // The default batch size spreads the files over the batches of one worker, not all into one batch
+        BuildResult result = createGradleRunner("applyHeader", "--max-workers=1").build();
+        assertThat(result.task(":applyHeader").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+        assertThat(Files.readString(projectDir.resolve("build/reports/levelHeadered/applyHeader/metrics.json")))
+            .contains("\"batches\": 4");
+        for (int i = 0; i < 8; i++) {
+            assertThat(Files.readString(projectDir.resolve("src/main/java/App" + i + ".java")))
+                .isEqualTo(withLocalLineSep(WITH_HEADER_CONTENT));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4})
+    void limitsBatchesInFlightAcrossTasks(int maxWorkers) throws IOException {
+        settingsFile(
+            """
+            include("a", "b", "c")
+            """
+        );
+        buildFile("");
+        for (String subproject : List.of("a", "b", "c")) {
+            writeFile(
+                projectDir.resolve(subproject + "/build.gradle.kts"),
+                """
+                plugins {
+                    java
+                    id("net.octyl.level-headered")
+                }
+                
+                levelHeadered {
+                    headerTemplate("%s")
+                    batchSize = 1
+                }
+                """.formatted(HEADER_TEXT_AS_EMBEDDABLE_STRING)
+            );
+            for (int i = 0; i < 6; i++) {
+                writeFile(projectDir.resolve(subproject + "/src/main/java/App" + i + ".java"), BASE_CONTENT);
+            }
+        }
+
+        // With one worker, a task waiting for a permit holds the only worker lease, so it must not wait for batches
+        // that need it
+        BuildResult result = createGradleRunner(
+            "applyHeader", "--parallel", "--max-workers=" + maxWorkers, "-i",
+            "-PlevelHeadered.maxInFlightBatchesPerBuild=2"
+        ).build();
+        for (String subproject : List.of("a", "b", "c")) {
+            assertThat(result.task(":" + subproject + ":applyHeader").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+            assertThat(Files.readString(projectDir.resolve(subproject + "/src/main/java/App0.java")))
+                .isEqualTo(withLocalLineSep(WITH_HEADER_CONTENT));
+        }
+        // Every batch counts, and only the first batch of a task without others in flight may go over the limit
+        Matcher peak = Pattern.compile("At most (\\d+) of 2 header batches were in flight at once")
+            .matcher(result.getOutput());
+        assertThat(peak.find()).isTrue();
+        assertThat(Integer.parseInt(peak.group(1))).isAtMost(2 + 3 - 1);
+    }
+
+    @Test
+    void reusesCachedResultsInLaterBuilds() throws IOException {
+        settingsFile("");
+        buildFile(
+            """
+            plugins {
+                java
+                id("net.octyl.level-headered")
+            }
+            
+            levelHeadered {
+                headerTemplate("%s")
+                batchSize = 8
+            }
+            """.formatted(HEADER_TEXT_AS_EMBEDDABLE_STRING)
+        );
+        // Other tests share the daemon, and so the cache, so the contents must be new to it
+        String content = BASE_CONTENT + "// " + UUID.randomUUID() + "\n";
+        for (int i = 0; i < 4; i++) {
+            writeFile(projectDir.resolve("src/main/java/App" + i + ".java"), content);
+        }
+
+        // One batch on one worker checks the files in turn, so all but the first come from the cache
+        createGradleRunner("verifyHeader", "--max-workers=1").buildAndFail();
+        Path metrics = projectDir.resolve("build/reports/levelHeadered/verifyHeader/metrics.json");
+        assertThat(Files.readString(metrics)).contains("\"filesCached\": 3");
+
+        // The failed task runs again in full, and the next build in the daemon finds all of the files in the cache
+        createGradleRunner("verifyHeader", "--max-workers=1").buildAndFail();
+        assertThat(Files.readString(metrics)).contains("\"filesCached\": 4");
+    }
+
+    @Test
+    void doesNotCacheResultsOfBuildScriptRewriters() throws IOException {
+        settingsFile("");
+        buildFile(
+            """
+            import net.octyl.levelheadered.rewriter.FileHeaderRewriter
+            import net.octyl.levelheadered.rewriter.StandardFileHeaderRewriter
+
+            plugins {
+                java
+                id("net.octyl.level-headered")
+            }
+
+            // Loaded by the build script, which must not be kept alive by the cache
+            class ScriptRewriter : FileHeaderRewriter by StandardFileHeaderRewriter.SLASH_STAR_COMMENT,
+                java.io.Serializable
+
+            levelHeadered {
+                headerTemplate("%s")
+                batchSize = 8
+                rewriters.put(".java", ScriptRewriter())
+            }
+            """.formatted(HEADER_TEXT_AS_EMBEDDABLE_STRING)
+        );
+        for (int i = 0; i < 4; i++) {
+            writeFile(projectDir.resolve("src/main/java/App" + i + ".java"), BASE_CONTENT);
+        }
+
+        createGradleRunner("verifyHeader", "--max-workers=1").buildAndFail();
+        assertThat(Files.readString(projectDir.resolve("build/reports/levelHeadered/verifyHeader/metrics.json")))
+            .contains("\"filesCached\": 0");
+    }
+
+    @Test
+    void onlyVerifiesFilesChangedSinceRef() throws IOException, InterruptedException {
+        settingsFile("");
+        buildFile(
+            """
+            plugins {
+                java
+                id("net.octyl.level-headered")
+            }
+            
+            levelHeadered {
+                headerTemplate("%s")
+                changedSince = "base"
+            }
+            """.formatted(HEADER_TEXT_AS_EMBEDDABLE_STRING)
+        );
+        writeFile(projectDir.resolve(".gitignore"), ".gradle/\nbuild/\n");
+        writeFile(projectDir.resolve("src/main/java/Unchanged.java"), BASE_CONTENT);
+        writeFile(projectDir.resolve("src/main/java/Modified.java"), BASE_CONTENT);
+        writeFile(projectDir.resolve("src/main/java/Committed.java"), WITH_HEADER_CONTENT);
+        git("init", "--quiet");
+        git("add", ".");
+        git("commit", "--quiet", "-m", "Base");
+        git("tag", "base");
+
+        // Changes since the ref may be committed, only in the working tree, or untracked
+        writeFile(projectDir.resolve("src/main/java/Committed.java"), BASE_CONTENT);
+        git("commit", "--quiet", "-am", "Remove header");
+        writeFile(projectDir.resolve("src/main/java/Modified.java"), BASE_CONTENT + "// Modified\n");
+        writeFile(projectDir.resolve("src/main/java/Untracked.java"), BASE_CONTENT);
+
+        BuildResult result = createGradleRunner("verifyHeader").buildAndFail();
+        assertThat(result.task(":verifyHeader").getOutcome()).isEqualTo(TaskOutcome.FAILED);
+        assertThat(result.getOutput()).contains("Header verification failed for 3 of 3 files.");
+        assertThat(result.getOutput()).containsMatch("- .*" + quotedFilePath("/src/main/java/Committed.java"));
+        assertThat(result.getOutput()).containsMatch("- .*" + quotedFilePath("/src/main/java/Modified.java"));
+        assertThat(result.getOutput()).containsMatch("- .*" + quotedFilePath("/src/main/java/Untracked.java"));
+        assertThat(result.getOutput()).doesNotContainMatch(quotedFilePath("/src/main/java/Unchanged.java"));
+    }
+
+    @Test
+    void appliesHeaderInCommentStyleOfResource() throws IOException {
+        settingsFile("");
+        buildFile(
+            """
+            import net.octyl.levelheadered.rewriter.StandardFileHeaderRewriter
+            
+            plugins {
+                java
+                id("net.octyl.level-headered")
+            }
+            
+            levelHeadered {
+                headerTemplate("%s")
+                legacyHeaders.add("Old header")
+                rewriters.putAll(StandardFileHeaderRewriter.commentStyleDefaults())
+            }
+            """.formatted(HEADER_TEXT_AS_EMBEDDABLE_STRING)
+        );
+        writeFile(projectDir.resolve("src/main/resources/run.sh"), "#!/bin/sh\n# Old header\necho hi\n");
+        writeFile(projectDir.resolve("src/main/resources/app.properties"), "# Settings of the app\nkey=value\n");
+        writeFile(projectDir.resolve("src/main/resources/config.xml"), "<?xml version=\"1.0\"?>\n<config/>\n");
+
+        BuildResult result = createGradleRunner("applyHeader").build();
+        assertThat(result.task(":applyHeader").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+        assertThat(Files.readString(projectDir.resolve("src/main/resources/run.sh"))).isEqualTo(
+            """
+            #!/bin/sh
+            # My custom header
+            # With other text too.
+            echo hi
+            """
+        );
+        assertThat(Files.readString(projectDir.resolve("src/main/resources/app.properties"))).isEqualTo(
+            """
+            # My custom header
+            # With other text too.
+            
+            # Settings of the app
+            key=value
+            """
+        );
+        assertThat(Files.readString(projectDir.resolve("src/main/resources/config.xml"))).isEqualTo(
+            """
+            <?xml version="1.0"?>
+            <!--
+              My custom header
+              With other text too.
+            -->
+            
+            <config/>
+            """
+        );
+
+        result = createGradleRunner("verifyHeader").build();
+        assertThat(result.task(":verifyHeader").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+    }
+
+    @Test
+    void leavesResourcesWithoutHeadersByDefault() throws IOException {
+        settingsFile("");
+        buildFile(
+            """
+            plugins {
+                java
+                id("net.octyl.level-headered")
+            }
+            
+            levelHeadered.headerTemplate("%s")
+            """.formatted(HEADER_TEXT_AS_EMBEDDABLE_STRING)
+        );
+        writeFile(projectDir.resolve("src/main/resources/app.properties"), "key=value\n");
+        writeFile(projectDir.resolve("src/main/resources/config.yml"), "key: value\n");
+
+        // Resources only need headers once their rewriters are opted into
+        BuildResult result = createGradleRunner("verifyHeader", "-i").build();
+        assertThat(result.task(":verifyHeader").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+        assertThat(result.getOutput()).contains(":verifyHeader: 2 files considered, 2 without a rewriter");
+    }
+
+    @Test
+    void appliesRewriterOfLongestMatchingSuffix() throws IOException {
+        settingsFile("");
+        buildFile(
+            """
+            plugins {
+                java
+                id("net.octyl.level-headered")
+            }
+            
+            levelHeadered {
+                headerTemplate("%s")
+                rewriters.set(mapOf(
+                    ".sh" to net.octyl.levelheadered.rewriter.StandardFileHeaderRewriter.HASH_COMMENT,
+                    ".test.sh" to net.octyl.levelheadered.rewriter.StandardFileHeaderRewriter.DOUBLE_DASH_COMMENT,
+                ))
+            }
+            """.formatted(HEADER_TEXT_AS_EMBEDDABLE_STRING)
+        );
+        writeFile(projectDir.resolve("src/main/resources/app.config.sh"), "echo hi\n");
+        writeFile(projectDir.resolve("src/main/resources/run.test.sh"), "echo hi\n");
+
+        BuildResult result = createGradleRunner("applyHeader").build();
+        assertThat(result.task(":applyHeader").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+        assertThat(Files.readString(projectDir.resolve("src/main/resources/app.config.sh"))).isEqualTo(
+            """
+            # My custom header
+            # With other text too.
+            
+            echo hi
+            """
+        );
+        assertThat(Files.readString(projectDir.resolve("src/main/resources/run.test.sh"))).isEqualTo(
+            """
+            -- My custom header
+            -- With other text too.
+            
+            echo hi
+            """
+        );
+    }
+
+    @Test
+    void acceptsHeaderWithOtherValueOfMatchedVariable() throws IOException {
+        settingsFile("");
+        buildFile(
+            """
+            plugins {
+                java
+                id("net.octyl.level-headered")
+            }
+            
+            levelHeadered {
+                headerTemplate("Copyright \\${year} Example")
+                templateVariables.put("year", "2026")
+                templateVariableMatches.put("year", net.octyl.levelheadered.rewriter.TemplateVariableMatch.YEAR_RANGE)
+            }
+            """
+        );
+        String withOldYears =
+            """
+            /*
+             * Copyright 2019-2025 Example
+             */
+            
+            """ + BASE_CONTENT;
+        writeFile(projectDir.resolve(FILE_PATH), withOldYears);
+        writeFile(projectDir.resolve(CUSTOM_HEADERED_FILE_PATH), BASE_CONTENT);
+
+        BuildResult result = createGradleRunner("applyHeader").build();
+        assertThat(result.task(":applyHeader").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+        assertThat(Files.readString(projectDir.resolve(FILE_PATH))).isEqualTo(withLocalLineSep(withOldYears));
+        assertThat(Files.readString(projectDir.resolve(CUSTOM_HEADERED_FILE_PATH))).isEqualTo(withLocalLineSep(
+            """
+            /*
+             * Copyright 2026 Example
+             */
+            
+            """ + BASE_CONTENT
+        ));
+
+        result = createGradleRunner("verifyHeader").build();
+        assertThat(result.task(":verifyHeader").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+    }
+
+    @Test
+    void replacesLegacyHeadersAndKeepsOtherComments() throws IOException {
+        settingsFile("");
+        buildFile(
+            """
+            plugins {
+                java
+                id("net.octyl.level-headered")
+            }
+            
+            levelHeadered {
+                headerTemplate("%s")
+                legacyHeaders.addAll("Old Corp 1999", "Acme License")
+            }
+            """.formatted(HEADER_TEXT_AS_EMBEDDABLE_STRING)
+        );
+        writeFile(projectDir.resolve(FILE_PATH),
+            """
+            /* eslint-disable */
+            
+            /*
+             * Acme License
+             */
+            
+            """ + BASE_CONTENT
+        );
+        writeFile(projectDir.resolve(CUSTOM_HEADERED_FILE_PATH), "/* Not a header */\n" + BASE_CONTENT);
+
+        BuildResult result = createGradleRunner("applyHeader").build();
+        assertThat(result.task(":applyHeader").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+        assertThat(Files.readString(projectDir.resolve(FILE_PATH))).isEqualTo(withLocalLineSep(
+            """
+            /*
+             * My custom header
+             * With other text too.
+             */
+            
+            /* eslint-disable */
+            
+            """ + BASE_CONTENT
+        ));
+        assertThat(Files.readString(projectDir.resolve(CUSTOM_HEADERED_FILE_PATH))).isEqualTo(withLocalLineSep(
+            """
+            /*
+             * My custom header
+             * With other text too.
+             */
+            
+            /* Not a header */
+            """ + BASE_CONTENT
+        ));
+
+        result = createGradleRunner("verifyHeader").build();
+        assertThat(result.task(":verifyHeader").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+    }
 }
@@ -0,0 +1,131 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Groups files into size-balanced batches, so that each batch can be submitted as a single work item.
+ */
+final class FileBatcher {
+    /**
+     * How many batches to aim for per worker when no batch size is configured. More than one per worker lets
+     * workers that finish early pick up more work, instead of waiting on the slowest batch.
+     */
+    static final int BATCHES_PER_WORKER = 4;
+
+    /**
+     * Computes the default batch size for the given number of files and workers.
+     *
+     * @param fileCount the number of files to process
+     * @param maxWorkerCount the maximum number of workers that may run concurrently
+     * @return the number of files to put in each batch
+     */
+    static int defaultBatchSize(int fileCount, int maxWorkerCount) {
+        int batchCount = Math.max(1, maxWorkerCount) * BATCHES_PER_WORKER;
+        return Math.max(1, (fileCount + batchCount - 1) / batchCount);
+    }
+
+    /**
+     * Splits the files into batches of at most {@code batchSize} files each, balancing the total bytes per batch.
+     *
+     * <p>
+     * Files are placed largest first into the batch with the fewest bytes so far, and batches are returned with the
+     * largest total first. Within each batch, files remain in descending size order. This gets the expensive files
+     * started early, which cuts down on tail latency.
+     * </p>
+     *
+     * @param files the files to batch
+     * @param batchSize the maximum number of files per batch
+     * @return the batches
+     */
+    static List<List<File>> batch(List<File> files, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1, got " + batchSize);
+        }
+        record SizedFile(File file, long size) {
+        }
+        List<SizedFile> sizedFiles = new ArrayList<>(files.size());
+        for (File file : files) {
+            sizedFiles.add(new SizedFile(file, file.length()));
+        }
+        sizedFiles.sort(Comparator.comparingLong(SizedFile::size).reversed());
+
+        final class Batch {
+            final List<File> files = new ArrayList<>();
+            long totalSize;
+        }
+        int batchCount = (sizedFiles.size() + batchSize - 1) / batchSize;
+        List<Batch> batches = new ArrayList<>(batchCount);
+        PriorityQueue<Batch> open = new PriorityQueue<>(
+            Math.max(1, batchCount), Comparator.comparingLong(b -> b.totalSize)
+        );
+        for (int i = 0; i < batchCount; i++) {
+            Batch batch = new Batch();
+            batches.add(batch);
+            open.add(batch);
+        }
+        for (SizedFile sizedFile : sizedFiles) {
+            // There is always an open batch, as batchCount * batchSize >= files.size()
+            Batch batch = open.remove();
+            batch.files.add(sizedFile.file());
+            batch.totalSize += sizedFile.size();
+            if (batch.files.size() < batchSize) {
+                open.add(batch);
+            }
+        }
+
+        batches.sort(Comparator.comparingLong((Batch b) -> b.totalSize).reversed());
+        List<List<File>> result = new ArrayList<>(batches.size());
+        for (Batch batch : batches) {
+            result.add(batch.files);
+        }
+        return result;
+    }
+
+    /**
+     * Splits the files into batches of at most {@code batchSize} files each, with the most recently modified files
+     * first.
+     *
+     * <p>
+     * Recently modified files are the most likely to have a bad header, so this finds failures sooner when work is
+     * stopped at the first ones. Batches are not balanced by size.
+     * </p>
+     *
+     * @param files the files to batch
+     * @param batchSize the maximum number of files per batch
+     * @return the batches
+     */
+    static List<List<File>> batchNewestFirst(List<File> files, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1, got " + batchSize);
+        }
+        record DatedFile(File file, long lastModified) {
+        }
+        List<DatedFile> datedFiles = new ArrayList<>(files.size());
+        for (File file : files) {
+            datedFiles.add(new DatedFile(file, file.lastModified()));
+        }
+        datedFiles.sort(Comparator.comparingLong(DatedFile::lastModified).reversed());
+
+        List<List<File>> result = new ArrayList<>((datedFiles.size() + batchSize - 1) / batchSize);
+        for (int start = 0; start < datedFiles.size(); start += batchSize) {
+            List<File> batch = new ArrayList<>(Math.min(batchSize, datedFiles.size() - start));
+            for (DatedFile datedFile : datedFiles.subList(start, Math.min(start + batchSize, datedFiles.size()))) {
+                batch.add(datedFile.file());
+            }
+            result.add(batch);
+        }
+        return result;
+    }
+
+    private FileBatcher() {
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered;
+
+import org.gradle.api.InvalidUserDataException;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.ValueSource;
+import org.gradle.api.provider.ValueSourceParameters;
+import org.gradle.process.ExecOperations;
+import org.gradle.process.ExecResult;
+
+import javax.inject.Inject;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Lists the files in a directory that were added or modified since the merge base of a git ref and {@code HEAD},
+ * including uncommitted and untracked files. Only the local repository is used, the ref is never fetched.
+ *
+ * <p>
+ * The value is the set of changed file paths, relative to the directory.
+ * </p>
+ */
+abstract class GitChangedFilesValueSource implements ValueSource<Set<String>, GitChangedFilesValueSource.Parameters> {
+    interface Parameters extends ValueSourceParameters {
+        DirectoryProperty getDirectory();
+
+        Property<String> getBaseRef();
+    }
+
+    @Inject
+    public GitChangedFilesValueSource() {
+    }
+
+    @Inject
+    protected abstract ExecOperations getExecOperations();
+
+    @Override
+    public Set<String> obtain() {
+        String baseRef = getParameters().getBaseRef().get();
+        String mergeBase = git("merge-base", baseRef, "HEAD").strip();
+        Set<String> changedFiles = new LinkedHashSet<>();
+        // Compares the working tree, so uncommitted changes count too. Deleted files are left out.
+        addNulSeparated(changedFiles, git("diff", "--name-only", "--relative", "--diff-filter=d", "-z", mergeBase));
+        addNulSeparated(changedFiles, git("ls-files", "--others", "--exclude-standard", "-z"));
+        return changedFiles;
+    }
+
+    private static void addNulSeparated(Set<String> paths, String output) {
+        for (String path : output.split("\0")) {
+            if (!path.isEmpty()) {
+                paths.add(path);
+            }
+        }
+    }
+
+    private String git(String... args) {
+        File directory = getParameters().getDirectory().get().getAsFile();
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+        ExecResult result = getExecOperations().exec(spec -> {
+            spec.commandLine("git");
+            spec.args(List.of(args));
+            spec.workingDir(directory);
+            spec.setStandardOutput(stdout);
+            spec.setErrorOutput(stderr);
+            spec.setIgnoreExitValue(true);
+        });
+        if (result.getExitValue() != 0) {
+            throw new InvalidUserDataException(
+                "Could not list files changed since '" + getParameters().getBaseRef().get() + "' in " + directory
+                    + ": git " + String.join(" ", args) + " failed: "
+                    + stderr.toString(StandardCharsets.UTF_8).strip()
+            );
+        }
+        return stdout.toString(StandardCharsets.UTF_8);
+    }
+}
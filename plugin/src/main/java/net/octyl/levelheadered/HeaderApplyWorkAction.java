@@ -6,18 +6,24 @@
 package net.octyl.levelheadered;
 
 import net.octyl.levelheadered.internal.Constants;
+import net.octyl.levelheadered.internal.HeaderWorkLimitService;
 import net.octyl.levelheadered.internal.HeaderWorkParameters;
-import net.octyl.levelheadered.rewriter.FileHeaderRewriter;
-import net.octyl.levelheadered.rewriter.ModificationWriter;
+import net.octyl.levelheadered.internal.TaskMetrics;
+import org.gradle.api.Action;
+import org.gradle.api.problems.Problem;
 import org.gradle.api.problems.ProblemGroup;
 import org.gradle.api.problems.ProblemId;
+import org.gradle.api.problems.ProblemSpec;
 import org.gradle.api.problems.Problems;
 import org.gradle.api.problems.Severity;
 import org.gradle.workers.WorkAction;
+import org.jspecify.annotations.Nullable;
 
 import javax.inject.Inject;
-import java.nio.file.Files;
+import java.io.File;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 abstract class HeaderApplyWorkAction implements WorkAction<HeaderApplyWorkAction.Parameters> {
     public interface Parameters extends HeaderWorkParameters {
@@ -39,28 +45,74 @@ abstract class HeaderApplyWorkAction implements WorkAction<HeaderApplyWorkAction
 
     @Override
     public void execute() {
-        String headerText = getParameters().getHeaderText().get();
-        FileHeaderRewriter rewriter = getParameters().getRewriter().get();
-        Path sourceFilePath = getParameters().getSourceFile().get().getAsFile().toPath();
-
+        HeaderWorkLimitService workLimit = getParameters().getWorkLimit().get();
+        String taskPath = getParameters().getTaskPath().get();
+        workLimit.start(taskPath);
         try {
-            String fileContent = Files.readString(sourceFilePath);
-            ModificationWriter modificationWriter = rewriter.rewriteHeader(fileContent, headerText);
-            if (modificationWriter == null) {
-                return;
+            applyToFiles();
+        } finally {
+            // Whether the work failed or not, let the task submit more
+            workLimit.release(taskPath);
+        }
+    }
+
+    private void applyToFiles() {
+        String taskPath = getParameters().getTaskPath().get();
+        TaskMetrics metrics = getParameters().getMetrics().get().get(taskPath);
+        metrics.addTime(TaskMetrics.Phase.QUEUE_WAIT, System.nanoTime() - getParameters().getSubmitTimeNanos().get());
+        HeaderFileProcessor processor = new HeaderFileProcessor(
+            getParameters().getHeader().get(),
+            getParameters().getRewriter().get(),
+            getParameters().getFileRegistry().get(),
+            getParameters().getResultCache().get(),
+            metrics
+        );
+
+        List<File> sourceFiles = List.copyOf(getParameters().getSourceFiles().getFiles());
+        // Indexed by file, so failures are reported in the same order however the files were scheduled
+        @Nullable Exception[] failures = new Exception[sourceFiles.size()];
+        IoFanOut.forEach(sourceFiles, getParameters().getIoConcurrency().get(), (index, sourceFile) -> {
+            try {
+                processor.apply(sourceFile.toPath());
+            } catch (Exception e) {
+                failures[index] = e;
             }
-            try (var writer = Files.newBufferedWriter(sourceFilePath)) {
-                modificationWriter.writeTo(writer);
+        });
+
+        long reportingStartNanos = System.nanoTime();
+        List<Problem> problems = new ArrayList<>();
+        Exception firstFailure = null;
+        Path firstFailurePath = null;
+        for (int i = 0; i < failures.length; i++) {
+            Exception e = failures[i];
+            if (e == null) {
+                continue;
             }
-        } catch (Exception e) {
+            Path sourceFilePath = sourceFiles.get(i).toPath();
+            problems.add(getProblems().getReporter().create(FAILED_TO_APPLY_HEADER, failureSpec(sourceFilePath, e)));
+            if (firstFailure == null) {
+                firstFailure = e;
+                firstFailurePath = sourceFilePath;
+            } else {
+                firstFailure.addSuppressed(e);
+            }
+        }
+        if (firstFailure == null) {
+            return;
+        }
+        metrics.addTime(TaskMetrics.Phase.REPORTING, System.nanoTime() - reportingStartNanos);
+        if (problems.size() == 1) {
             throw getProblems().getReporter().throwing(
-                e,
-                FAILED_TO_APPLY_HEADER,
-                spec -> spec
-                    .details("File: " + sourceFilePath)
-                    .severity(Severity.ERROR)
-                    .withException(e)
+                firstFailure, FAILED_TO_APPLY_HEADER, failureSpec(firstFailurePath, firstFailure)
             );
         }
+        throw getProblems().getReporter().throwing(firstFailure, problems);
+    }
+
+    private static Action<ProblemSpec> failureSpec(Path sourceFilePath, Exception e) {
+        return spec -> spec
+            .details("File: " + sourceFilePath)
+            .severity(Severity.ERROR)
+            .withException(e);
     }
 }
@@ -0,0 +1,331 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered;
+
+import net.octyl.levelheadered.internal.HeaderFileRegistryService;
+import net.octyl.levelheadered.internal.HeaderFileRegistryService.FileState;
+import net.octyl.levelheadered.internal.HeaderFileRegistryService.Stamp;
+import net.octyl.levelheadered.internal.HeaderResultCacheService;
+import net.octyl.levelheadered.internal.TaskMetrics;
+import net.octyl.levelheadered.rewriter.FileHeaderRewriter;
+import net.octyl.levelheadered.rewriter.HeaderReplacement;
+import net.octyl.levelheadered.rewriter.ModificationWriter;
+import net.octyl.levelheadered.rewriter.PreparedHeader;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.jspecify.annotations.Nullable;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Checks and applies a header to individual source files, shared by the work actions.
+ *
+ * <p>
+ * Results are shared through {@link HeaderFileRegistryService}, so a file covered by several tasks is only processed
+ * once per build. Whether the header is present is also cached by contents in {@link HeaderResultCacheService}, so
+ * contents seen before in the daemon are not checked again. Counters and timings are recorded into
+ * {@link TaskMetrics}.
+ * </p>
+ */
+final class HeaderFileProcessor {
+    private static final Logger LOGGER = Logging.getLogger(HeaderFileProcessor.class);
+    private static final int TAIL_BUFFER_SIZE = 64 * 1024;
+
+    enum Result {
+        /**
+         * The header was already present.
+         */
+        HEADER_PRESENT,
+        /**
+         * The header was missing, and the file was not modified.
+         */
+        HEADER_MISSING,
+        /**
+         * The header was missing, and has been applied to the file.
+         */
+        HEADER_APPLIED,
+        /**
+         * The file was detected as binary and skipped.
+         */
+        SKIPPED_BINARY,
+    }
+
+    private final PreparedHeader header;
+    private final FileHeaderRewriter rewriter;
+    private final HeaderFileRegistryService registry;
+    private final HeaderResultCacheService resultCache;
+    private final TaskMetrics metrics;
+    private final int windowSize;
+
+    HeaderFileProcessor(
+        PreparedHeader header, FileHeaderRewriter rewriter, HeaderFileRegistryService registry,
+        HeaderResultCacheService resultCache, TaskMetrics metrics
+    ) {
+        this.header = header;
+        this.rewriter = rewriter;
+        this.registry = registry;
+        this.resultCache = resultCache;
+        this.metrics = metrics;
+        this.windowSize = rewriter.headerWindowSize(header);
+    }
+
+    /**
+     * Checks the header of the given file, without modifying it.
+     *
+     * @param file the file to check
+     * @return the result, never {@link Result#HEADER_APPLIED}
+     * @throws IOException if an I/O error occurs
+     */
+    Result verify(Path file) throws IOException {
+        return process(file, false);
+    }
+
+    /**
+     * Applies the header to the given file, if needed.
+     *
+     * @param file the file to apply the header to
+     * @return the result, never {@link Result#HEADER_MISSING}
+     * @throws IOException if an I/O error occurs
+     */
+    Result apply(Path file) throws IOException {
+        return process(file, true);
+    }
+
+    private Result process(Path file, boolean write) throws IOException {
+        long startNanos = System.nanoTime();
+        try {
+            if (!write) {
+                return processShared(file, false);
+            }
+            // Only writing needs the lock, as files are replaced atomically
+            Lock lock = registry.lockFor(file);
+            lock.lock();
+            try {
+                return processShared(file, true);
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            metrics.recordFile(System.nanoTime() - startNanos);
+        }
+    }
+
+    private Result processShared(Path file, boolean write) throws IOException {
+        // Taken before reading, so a file modified while it is read is not recorded as unmodified
+        Stamp stamp = Stamp.read(file);
+        FileState knownState = registry.get(file, header, rewriter, stamp);
+        // A missing header still needs to be applied, even if another task already saw it
+        if (knownState != null && !(write && knownState == FileState.HEADER_MISSING)) {
+            LOGGER.debug("Reusing result for file {} from another task: {}", file, knownState);
+            metrics.add(TaskMetrics.Counter.FILES_REUSED, 1);
+            return switch (knownState) {
+                case HEADER_PRESENT -> Result.HEADER_PRESENT;
+                case HEADER_MISSING -> Result.HEADER_MISSING;
+                case BINARY -> Result.SKIPPED_BINARY;
+            };
+        }
+        Result result = processUnshared(file, write);
+        if (result == Result.HEADER_APPLIED) {
+            stamp = Stamp.read(file);
+        }
+        registry.put(file, header, rewriter, stamp, switch (result) {
+            case HEADER_PRESENT, HEADER_APPLIED -> FileState.HEADER_PRESENT;
+            case HEADER_MISSING -> FileState.HEADER_MISSING;
+            case SKIPPED_BINARY -> FileState.BINARY;
+        });
+        return result;
+    }
+
+    private Result processUnshared(Path file, boolean write) throws IOException {
+        long readStartNanos = System.nanoTime();
+        HeaderWindow window = HeaderWindow.read(file, windowSize);
+        long rewriteStartNanos = System.nanoTime();
+        metrics.addTime(TaskMetrics.Phase.READ, rewriteStartNanos - readStartNanos);
+        if (window == null) {
+            LOGGER.info("Skipping binary file {}", file);
+            metrics.add(TaskMetrics.Counter.FILES_BINARY, 1);
+            return Result.SKIPPED_BINARY;
+        }
+        metrics.add(TaskMetrics.Counter.BYTES_READ, window.length());
+        ModificationWriter modificationWriter;
+        HeaderResultCacheService.@Nullable Key cacheKey;
+        try {
+            if (rewriter.isHeaderPresent(window.bytes(), window.length(), header)) {
+                return Result.HEADER_PRESENT;
+            }
+            // Only hash when the quick check is not enough, as it is cheaper than hashing
+            cacheKey = resultCache.keyFor(window.bytes(), window.length(), window.complete(), header, rewriter);
+            Boolean cachedHeaderPresent = cacheKey == null ? null : resultCache.get(cacheKey);
+            // A missing header still needs to be rewritten to be applied
+            if (cachedHeaderPresent != null && (cachedHeaderPresent || !write)) {
+                LOGGER.debug("Reusing cached result for contents of file {}", file);
+                metrics.add(TaskMetrics.Counter.FILES_CACHED, 1);
+                return cachedHeaderPresent ? Result.HEADER_PRESENT : Result.HEADER_MISSING;
+            }
+            // Only decode when the header may need to be rewritten
+            modificationWriter = rewriter.rewriteHeader(window.decode(), header);
+            if (modificationWriter == null) {
+                putCached(cacheKey, true);
+                return Result.HEADER_PRESENT;
+            }
+        } finally {
+            metrics.addTime(TaskMetrics.Phase.REWRITE, System.nanoTime() - rewriteStartNanos);
+        }
+        if (window.complete() || isDecidedByWindow(modificationWriter)) {
+            // Decided by the window alone, so it holds for any file that starts the same
+            putCached(cacheKey, false);
+        } else {
+            // The window was not enough to decide, so the decision needs the whole file
+            readStartNanos = System.nanoTime();
+            byte[] content = Files.readAllBytes(file);
+            rewriteStartNanos = System.nanoTime();
+            metrics.addTime(TaskMetrics.Phase.READ, rewriteStartNanos - readStartNanos);
+            metrics.add(TaskMetrics.Counter.BYTES_READ, content.length);
+            try {
+                modificationWriter = rewriter.rewriteHeader(
+                    StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(content)).toString(), header
+                );
+                if (modificationWriter == null) {
+                    return Result.HEADER_PRESENT;
+                }
+            } finally {
+                metrics.addTime(TaskMetrics.Phase.REWRITE, System.nanoTime() - rewriteStartNanos);
+            }
+        }
+        if (!write) {
+            return Result.HEADER_MISSING;
+        }
+        long writeStartNanos = System.nanoTime();
+        long bytesWritten;
+        if (isDecidedByWindow(modificationWriter)) {
+            bytesWritten = replaceHeader(file, (HeaderReplacement) modificationWriter);
+        } else {
+            ModificationWriter fullWriter = modificationWriter;
+            bytesWritten = replaceAtomically(file, (source, target) -> {
+                try (var writer = new BufferedWriter(Channels.newWriter(target, StandardCharsets.UTF_8))) {
+                    fullWriter.writeTo(writer);
+                }
+            });
+        }
+        metrics.addTime(TaskMetrics.Phase.WRITE, System.nanoTime() - writeStartNanos);
+        metrics.add(TaskMetrics.Counter.BYTES_WRITTEN, bytesWritten);
+        return Result.HEADER_APPLIED;
+    }
+
+    /**
+     * A replacement from the window only holds for the whole file if the window shows which line ending the file
+     * uses. Otherwise, the rewriter fell back to the platform line ending, which the rest of the file may not use.
+     */
+    private static boolean isDecidedByWindow(ModificationWriter modificationWriter) {
+        return modificationWriter instanceof HeaderReplacement headerReplacement
+            && headerReplacement.fileContent().indexOf('\n') != -1;
+    }
+
+    private void putCached(HeaderResultCacheService.@Nullable Key cacheKey, boolean headerPresent) {
+        if (cacheKey != null) {
+            resultCache.put(cacheKey, headerPresent);
+        }
+    }
+
+    /**
+     * Writes the replacement, then copies the rest of the file without decoding it.
+     *
+     * <p>
+     * The rest of the file is checked for the other line ending while it is copied, as the rewriter only saw the
+     * window. If it is found, the file is left unchanged, like it would be if the rewriter had seen the whole file.
+     * </p>
+     *
+     * @return the number of bytes written
+     */
+    private static long replaceHeader(Path file, HeaderReplacement headerReplacement) throws IOException {
+        String fileContent = headerReplacement.fileContent();
+        int firstLf = fileContent.indexOf('\n');
+        boolean crlf = firstLf > 0 && fileContent.charAt(firstLf - 1) == '\r';
+        int replacedLength = headerReplacement.replacedLength();
+        boolean previousCr = replacedLength > 0 && fileContent.charAt(replacedLength - 1) == '\r';
+        ByteBuffer replacement = StandardCharsets.UTF_8.encode(headerReplacement.replacement());
+        long tailStart = StandardCharsets.UTF_8.encode(
+            CharBuffer.wrap(fileContent, 0, replacedLength)
+        ).remaining();
+        return replaceAtomically(file, (source, target) -> {
+            while (replacement.hasRemaining()) {
+                target.write(replacement);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(TAIL_BUFFER_SIZE);
+            long position = tailStart;
+            boolean lastCr = previousCr;
+            int read;
+            while ((read = source.read(buffer, position)) != -1) {
+                byte[] bytes = buffer.array();
+                for (int i = 0; i < read; i++) {
+                    if (bytes[i] == '\n' && (i == 0 ? lastCr : bytes[i - 1] == '\r') != crlf) {
+                        throw new IllegalArgumentException("Multiple line endings detected in content");
+                    }
+                }
+                if (read > 0) {
+                    lastCr = bytes[read - 1] == '\r';
+                }
+                position += read;
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+                buffer.clear();
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface ContentWriter {
+        void write(FileChannel source, FileChannel target) throws IOException;
+    }
+
+    /**
+     * Writes the new content to a sibling temporary file, then moves it over the original. This avoids leaving a
+     * truncated file behind if the build is interrupted.
+     *
+     * @return the number of bytes written
+     */
+    private static long replaceAtomically(Path file, ContentWriter contentWriter) throws IOException {
+        // Replace the file that links point to, rather than the links
+        Path realFile = file.toRealPath();
+        Path tempFile = Files.createTempFile(
+            realFile.getParent(), "." + realFile.getFileName(), ".tmp"
+        );
+        try {
+            try (FileChannel source = FileChannel.open(realFile, StandardOpenOption.READ);
+                 FileChannel target = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                contentWriter.write(source, target);
+            }
+            long bytesWritten = Files.size(tempFile);
+            PosixFileAttributeView posixView = Files.getFileAttributeView(realFile, PosixFileAttributeView.class);
+            if (posixView != null) {
+                Files.setPosixFilePermissions(tempFile, posixView.readAttributes().permissions());
+            }
+            try {
+                Files.move(tempFile, realFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, realFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return bytesWritten;
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+}
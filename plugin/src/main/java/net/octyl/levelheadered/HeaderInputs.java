@@ -0,0 +1,132 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered;
+
+import net.octyl.levelheadered.rewriter.FileHeaderRewriter;
+import net.octyl.levelheadered.rewriter.PreparedHeader;
+import org.gradle.api.InvalidUserDataException;
+import org.gradle.api.attributes.AttributeContainer;
+import org.gradle.api.attributes.Category;
+import org.gradle.api.attributes.Usage;
+import org.gradle.api.file.FileSystemLocation;
+import org.gradle.api.model.ObjectFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serial;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The header inputs a project publishes for {@link LevelHeaderedAggregatePlugin}: its source files, each with the
+ * rewriter to process it with and the header prepared for that rewriter. They are written by
+ * {@link HeaderInputsTask}, so the aggregate tasks never read the configuration of other projects.
+ */
+final class HeaderInputs implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private static final String ATTRIBUTE_VALUE = "level-headered-header-inputs";
+
+    /**
+     * Sets the attributes header inputs are published and resolved with. The category keeps other variants without a
+     * usage, such as the sources published for test aggregation, from matching.
+     *
+     * @param attributes the attributes to set
+     * @param objects the factory to create attribute values with
+     */
+    static void setAttributes(AttributeContainer attributes, ObjectFactory objects) {
+        attributes.attribute(Category.CATEGORY_ATTRIBUTE, objects.named(Category.class, ATTRIBUTE_VALUE));
+        attributes.attribute(Usage.USAGE_ATTRIBUTE, objects.named(Usage.class, ATTRIBUTE_VALUE));
+    }
+
+    /**
+     * How to process a file.
+     *
+     * @param rewriter the rewriter to process it with
+     * @param header the header, prepared for the rewriter
+     */
+    record Target(FileHeaderRewriter rewriter, PreparedHeader header) implements Serializable {
+    }
+
+    /**
+     * Reads the files of the given header inputs.
+     *
+     * @param inputFiles the files the header inputs were written to
+     * @return the source files, in the order they were written
+     */
+    static List<File> readFiles(Iterable<? extends FileSystemLocation> inputFiles) {
+        List<File> files = new ArrayList<>();
+        for (FileSystemLocation inputFile : inputFiles) {
+            files.addAll(read(inputFile.getAsFile().toPath()).targetsByFile.keySet());
+        }
+        return files;
+    }
+
+    /**
+     * Reads the targets of the given header inputs.
+     *
+     * @param inputFiles the files the header inputs were written to
+     * @return the target of each source file
+     */
+    static Map<File, Target> readTargets(Iterable<? extends FileSystemLocation> inputFiles) {
+        Map<File, Target> targets = new LinkedHashMap<>();
+        for (FileSystemLocation inputFile : inputFiles) {
+            targets.putAll(read(inputFile.getAsFile().toPath()).targetsByFile);
+        }
+        return targets;
+    }
+
+    private static HeaderInputs read(Path inputFile) {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(inputFile)))) {
+            return (HeaderInputs) in.readObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read header inputs from " + inputFile, e);
+        } catch (ClassNotFoundException e) {
+            throw new InvalidUserDataException(
+                "Header inputs in " + inputFile + " use a class that cannot be loaded here, rewriters must be "
+                    + "available to the project that applies the aggregate plugin", e
+            );
+        }
+    }
+
+    private final Map<File, Target> targetsByFile = new LinkedHashMap<>();
+
+    /**
+     * Adds a source file.
+     *
+     * @param file the source file
+     * @param target how to process it
+     */
+    void add(File file, Target target) {
+        targetsByFile.put(file, target);
+    }
+
+    /**
+     * Writes these header inputs.
+     *
+     * @param outputFile the file to write to
+     * @throws IOException if an I/O error occurs
+     */
+    void write(Path outputFile) throws IOException {
+        Files.createDirectories(outputFile.getParent());
+        try (ObjectOutputStream out = new ObjectOutputStream(
+            new BufferedOutputStream(Files.newOutputStream(outputFile))
+        )) {
+            out.writeObject(this);
+        }
+    }
+}
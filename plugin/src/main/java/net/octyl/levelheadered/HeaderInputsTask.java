@@ -0,0 +1,114 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered;
+
+import net.octyl.levelheadered.internal.HeaderTemplateService;
+import net.octyl.levelheadered.rewriter.FileHeaderRewriter;
+import net.octyl.levelheadered.rewriter.PreparedHeader;
+import net.octyl.levelheadered.rewriter.SuffixIndex;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.InvalidUserDataException;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.ProviderFactory;
+import org.gradle.api.tasks.IgnoreEmptyDirectories;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Task that writes the header inputs of a project for {@link LevelHeaderedAggregatePlugin}: its source files, filtered
+ * by {@link #getSourceMatchPatterns()}, each with the rewriter to use and the header prepared for it. The batch size,
+ * I/O concurrency, {@link #getMaxInFlightBatches()} and {@link #getChangedSince()} are not used, those are taken from
+ * the aggregate tasks.
+ *
+ * <p>
+ * Rewriters must be {@link Serializable}, and loadable by the project that applies the aggregate plugin. The
+ * {@linkplain net.octyl.levelheadered.rewriter.StandardFileHeaderRewriter standard rewriters} are.
+ * </p>
+ *
+ * <p>
+ * Only {@code abstract} for Gradle, not to be implemented by users.
+ * </p>
+ */
+public abstract class HeaderInputsTask extends DefaultTask implements LevelHeaderedConfig {
+    @SuppressWarnings("doclint:missing")
+    public HeaderInputsTask() {
+        getSourcesToProcess().from(getProviderFactory().provider(() ->
+            getSource().getAsFileTree().matching(getSourceMatchPatterns().get())
+        ));
+        getSourcesToProcess().builtBy(getSource());
+    }
+
+    @SuppressWarnings("doclint:missing")
+    @Inject
+    protected abstract ProviderFactory getProviderFactory();
+
+    @SuppressWarnings("doclint:missing")
+    @Internal
+    protected abstract Property<HeaderTemplateService> getTemplateService();
+
+    /**
+     * {@return Source files to publish} Will be filtered by {@link #getSourceMatchPatterns()}.
+     */
+    @Internal
+    public abstract ConfigurableFileCollection getSource();
+
+    @SuppressWarnings("doclint:missing")
+    @IgnoreEmptyDirectories
+    @InputFiles
+    @PathSensitive(PathSensitivity.ABSOLUTE)
+    protected abstract ConfigurableFileCollection getSourcesToProcess();
+
+    /**
+     * {@return the file to write the header inputs to}
+     */
+    @OutputFile
+    public abstract RegularFileProperty getOutputFile();
+
+    /**
+     * Prepares the header for each rewriter in use, and writes the header inputs.
+     *
+     * @throws IOException if the template cannot be expanded or the header inputs cannot be written
+     */
+    @TaskAction
+    public void writeInputs() throws IOException {
+        HeaderPreparer headerPreparer = HeaderPreparer.expand(this, getTemplateService().get());
+        SuffixIndex<FileHeaderRewriter> rewriters = new SuffixIndex<>(getRewriters().get());
+        Map<FileHeaderRewriter, HeaderInputs.Target> targets = new HashMap<>();
+        HeaderInputs inputs = new HeaderInputs();
+        for (File file : getSourcesToProcess().getFiles()) {
+            Map.Entry<String, FileHeaderRewriter> rewriterEntry = rewriters.find(file.getName());
+            if (rewriterEntry == null) {
+                getLogger().info("No rewriter configured for file {}, skipping it", file.getAbsolutePath());
+                continue;
+            }
+            String rewriterKey = rewriterEntry.getKey();
+            HeaderInputs.Target target = targets.computeIfAbsent(rewriterEntry.getValue(), rewriter -> {
+                if (!(rewriter instanceof Serializable)) {
+                    throw new InvalidUserDataException(
+                        "Rewriter for '" + rewriterKey + "' must be Serializable to be used by an aggregate task"
+                    );
+                }
+                PreparedHeader header = headerPreparer.prepare(rewriterKey, rewriter);
+                return new HeaderInputs.Target(rewriter, header);
+            });
+            inputs.add(file, target);
+        }
+        inputs.write(getOutputFile().get().getAsFile().toPath());
+    }
+}
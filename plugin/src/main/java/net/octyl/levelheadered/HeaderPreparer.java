@@ -0,0 +1,65 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered;
+
+import net.octyl.levelheadered.internal.HeaderTemplateService;
+import net.octyl.levelheadered.rewriter.FileHeaderRewriter;
+import net.octyl.levelheadered.rewriter.HeaderTexts;
+import net.octyl.levelheadered.rewriter.PreparedHeader;
+import org.gradle.api.InvalidUserDataException;
+
+import java.io.IOException;
+
+/**
+ * Expands the header template of a task once, so the header can be prepared for each rewriter without expanding it
+ * again. Reports invalid configuration as {@link InvalidUserDataException}.
+ */
+final class HeaderPreparer {
+    /**
+     * Expands the header template of the given configuration.
+     *
+     * @param config the configuration
+     * @param templateService the service to expand templates with
+     * @return the preparer
+     * @throws IOException if the template cannot be expanded
+     */
+    static HeaderPreparer expand(LevelHeaderedConfig config, HeaderTemplateService templateService)
+        throws IOException {
+        try {
+            return new HeaderPreparer(HeaderTexts.expand(
+                templateService::expand,
+                config.getHeaderTemplate().get().asString(),
+                config.getTemplateVariables().get(),
+                config.getTemplateVariableMatches().get(),
+                config.getLegacyHeaders().get()
+            ));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidUserDataException(e.getMessage(), e);
+        }
+    }
+
+    private final HeaderTexts headerTexts;
+
+    private HeaderPreparer(HeaderTexts headerTexts) {
+        this.headerTexts = headerTexts;
+    }
+
+    /**
+     * Prepares the header for the given rewriter, so invalid header text fails here instead of for every file.
+     *
+     * @param rewriterKey the key the rewriter is configured under, for error messages
+     * @param rewriter the rewriter
+     * @return the prepared header
+     * @throws InvalidUserDataException if the rewriter cannot apply the header
+     */
+    PreparedHeader prepare(String rewriterKey, FileHeaderRewriter rewriter) {
+        try {
+            return headerTexts.prepare(rewriterKey, rewriter);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidUserDataException(e.getMessage(), e);
+        }
+    }
+}
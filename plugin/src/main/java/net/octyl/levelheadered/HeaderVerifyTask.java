@@ -5,14 +5,45 @@
 
 package net.octyl.levelheadered;
 
+import net.octyl.levelheadered.internal.Constants;
+import net.octyl.levelheadered.internal.HeaderVerificationResultsService;
+import net.octyl.levelheadered.internal.HeaderVerificationResultsService.Failure;
+import net.octyl.levelheadered.internal.TaskMetrics;
+import org.gradle.api.Action;
+import org.gradle.api.GradleException;
+import org.gradle.api.InvalidUserDataException;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.problems.Problem;
+import org.gradle.api.problems.ProblemGroup;
+import org.gradle.api.problems.ProblemId;
+import org.gradle.api.problems.ProblemReporter;
+import org.gradle.api.problems.ProblemSpec;
+import org.gradle.api.problems.Problems;
+import org.gradle.api.problems.Severity;
 import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.Console;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.VerificationException;
 import org.gradle.work.DisableCachingByDefault;
+import org.gradle.workers.WorkQueue;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 
 /**
  * Task that verifies headers on source files.
  *
  * <p>
+ * All failures are collected before the task fails, and written to a {@linkplain #getReportFile() report}.
+ * </p>
+ *
+ * <p>
  * Only {@code abstract} for Gradle, not to be implemented by users.
  * </p>
  */
@@ -20,12 +51,41 @@ import org.gradle.work.DisableCachingByDefault;
 public abstract non-sealed class HeaderVerifyTask
     extends HeaderWorkerSourceTask<HeaderVerifyWorkAction, HeaderVerifyWorkAction.Parameters>
     implements LevelHeaderedConfig {
+    private static final ProblemGroup PROBLEM_GROUP = ProblemGroup.create(
+        "header-verification", "Header Verification Problems", Constants.PROBLEM_GROUP
+    );
+    private static final ProblemId HEADER_VERIFICATION_FAILURE = ProblemId.create(
+        "failure", "Header Verification Failure", PROBLEM_GROUP
+    );
+    private static final ProblemId FAILED_TO_RUN_HEADER_VERIFICATION = ProblemId.create(
+        "failed-to-run", "Failed to run header verification", PROBLEM_GROUP
+    );
+    /**
+     * How many failed files to list in the failure message. The rest are only in the report.
+     */
+    private static final int MAX_LISTED_FILES = 10;
+    /**
+     * How many failed files to report as separate problems. Each one costs an event, and a line in the console.
+     */
+    private static final int MAX_REPORTED_PROBLEMS = 100;
+
     @SuppressWarnings("doclint:missing")
     public HeaderVerifyTask() {
         // Our outputs are always up-to-date, given that our inputs haven't changed.
         getOutputs().upToDateWhen(t -> true);
+        getReportFile().convention(getProject().getLayout().getBuildDirectory().file(
+            "reports/levelHeadered/" + getName() + "/header-verification.sarif"
+        ));
     }
 
+    @SuppressWarnings("doclint:missing")
+    @Inject
+    protected abstract Problems getProblems();
+
+    @SuppressWarnings("doclint:missing")
+    @Internal
+    protected abstract Property<HeaderVerificationResultsService> getVerificationResults();
+
     /**
      * {@return the path of the corresponding header apply task} This is the task that can be run to fix
      * any header violations found by this task.
@@ -37,6 +97,25 @@ public abstract non-sealed class HeaderVerifyTask
     @Console
     public abstract Property<String> getHeaderApplyTaskPath();
 
+    /**
+     * {@return the number of failures after which to stop verifying} {@code 1} fails on the first bad file.
+     *
+     * <p>
+     * Once the limit is reached, no more batches are submitted, and files that have not been started are skipped. The
+     * most recently modified files are verified first, as they are the most likely to fail. If not set, all files are
+     * verified.
+     * </p>
+     */
+    @Internal
+    public abstract Property<Integer> getMaxFailures();
+
+    /**
+     * {@return the file to write the verification report to} The report is a SARIF log of the files that failed
+     * verification, and is deleted when verification passes.
+     */
+    @Internal
+    public abstract RegularFileProperty getReportFile();
+
     @Override
     Class<HeaderVerifyWorkAction> getWorkActionClass() {
         return HeaderVerifyWorkAction.class;
@@ -44,6 +123,178 @@ public abstract non-sealed class HeaderVerifyTask
 
     @Override
     void configureParameters(HeaderVerifyWorkAction.Parameters parameters) {
-        parameters.getHeaderApplyTaskPath().set(getHeaderApplyTaskPath());
+        parameters.getResults().set(getVerificationResults());
+    }
+
+    @Override
+    void startWork() {
+        Integer maxFailures = getMaxFailures().getOrNull();
+        if (maxFailures != null && maxFailures < 1) {
+            throw new InvalidUserDataException("Max failures must be at least 1, got " + maxFailures);
+        }
+        getVerificationResults().get().start(getPath(), maxFailures == null ? -1 : maxFailures);
+    }
+
+    @Override
+    boolean isStopped(int remainingFileCount) {
+        HeaderVerificationResultsService results = getVerificationResults().get();
+        if (results.isStopped(getPath())) {
+            results.recordSkipped(getPath(), remainingFileCount);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    List<List<File>> batch(List<File> files, int batchSize) {
+        if (getMaxFailures().isPresent()) {
+            return FileBatcher.batchNewestFirst(files, batchSize);
+        }
+        return super.batch(files, batchSize);
+    }
+
+    @Override
+    void finishWork(WorkQueue workQueue, int fileCount, TaskMetrics metrics) throws IOException {
+        workQueue.await();
+        long reportingStartNanos = System.nanoTime();
+        try {
+            HeaderVerificationResultsService.Results results = getVerificationResults().get().finish(getPath());
+            List<Failure> failures = new ArrayList<>(results.failures());
+            Path reportFile = getReportFile().get().getAsFile().toPath();
+            if (failures.isEmpty()) {
+                Files.deleteIfExists(reportFile);
+                return;
+            }
+            // Batches finish in any order, sort so the report and message are stable
+            failures.sort(Comparator.comparing(Failure::file));
+            VerificationReport.write(reportFile, getPath(), fileCount, results.skippedFileCount(), failures);
+            throw reportFailures(failures, fileCount, results.skippedFileCount(), reportFile);
+        } finally {
+            metrics.addTime(TaskMetrics.Phase.REPORTING, System.nanoTime() - reportingStartNanos);
+        }
+    }
+
+    private RuntimeException reportFailures(
+        List<Failure> failures, int fileCount, int skippedFileCount, Path reportFile
+    ) {
+        ProblemReporter reporter = getProblems().getReporter();
+        String adviceText = getHeaderApplyTaskPath()
+            .map(path -> "Run the " + path + " task to fix this.")
+            .getOrElse("Apply the correct header to this file to fix this.");
+        if (failures.size() == 1) {
+            Failure failure = failures.get(0);
+            Exception error = failure.error();
+            if (error == null) {
+                String message = missingHeaderMessage(failure.file()) + skippedMessage(skippedFileCount);
+                return reporter.throwing(
+                    new VerificationException(message),
+                    HEADER_VERIFICATION_FAILURE,
+                    spec -> {
+                        missingHeaderSpec(failure.file(), adviceText).execute(spec);
+                        spec.contextualLabel(message);
+                    }
+                );
+            }
+            return reporter.throwing(
+                error, FAILED_TO_RUN_HEADER_VERIFICATION, failedToRunSpec(failure.file(), error)
+            );
+        }
+
+        // Per-file problems only go to the problems report, the console gets one summary
+        int reportedProblems = Math.min(failures.size(), MAX_REPORTED_PROBLEMS);
+        List<Problem> problems = new ArrayList<>(reportedProblems);
+        for (Failure failure : failures.subList(0, reportedProblems)) {
+            Exception error = failure.error();
+            problems.add(error == null
+                ? reporter.create(HEADER_VERIFICATION_FAILURE, missingHeaderSpec(failure.file(), adviceText))
+                : reporter.create(FAILED_TO_RUN_HEADER_VERIFICATION, failedToRunSpec(failure.file(), error))
+            );
+        }
+        reporter.report(problems);
+
+        int missingHeaderCount = 0;
+        Exception firstError = null;
+        for (Failure failure : failures) {
+            if (failure.error() == null) {
+                missingHeaderCount++;
+            } else if (firstError == null) {
+                firstError = failure.error();
+            }
+        }
+        String message = failureMessage(failures, fileCount, missingHeaderCount, skippedFileCount, reportFile);
+        // Prefer surfacing a failure to run over a plain verification failure
+        if (firstError != null) {
+            return reporter.throwing(
+                new GradleException(message, firstError), FAILED_TO_RUN_HEADER_VERIFICATION,
+                summarySpec(message, adviceText)
+            );
+        }
+        return reporter.throwing(
+            new VerificationException(message), HEADER_VERIFICATION_FAILURE, summarySpec(message, adviceText)
+        );
+    }
+
+    private static String failureMessage(
+        List<Failure> failures, int fileCount, int missingHeaderCount, int skippedFileCount, Path reportFile
+    ) {
+        StringBuilder message = new StringBuilder();
+        if (missingHeaderCount > 0) {
+            message.append("Header verification failed for ").append(missingHeaderCount)
+                .append(" of ").append(fileCount).append(" files.\n");
+        }
+        int errorCount = failures.size() - missingHeaderCount;
+        if (errorCount > 0) {
+            message.append("Header verification could not run for ").append(errorCount)
+                .append(" of ").append(fileCount).append(" files.\n");
+        }
+        for (Failure failure : failures.subList(0, Math.min(failures.size(), MAX_LISTED_FILES))) {
+            message.append("  - ").append(failure.file());
+            if (failure.error() != null) {
+                message.append(" (").append(failure.error()).append(')');
+            }
+            message.append('\n');
+        }
+        if (failures.size() > MAX_LISTED_FILES) {
+            message.append("  ... and ").append(failures.size() - MAX_LISTED_FILES).append(" more.\n");
+        }
+        if (skippedFileCount > 0) {
+            message.append(skippedMessage(skippedFileCount).strip()).append('\n');
+        }
+        message.append("See the full report at ").append(reportFile.toUri()).append('.');
+        return message.toString();
+    }
+
+    private static Action<ProblemSpec> summarySpec(String message, String adviceText) {
+        return spec -> spec
+            .contextualLabel(message)
+            .solution(adviceText)
+            .severity(Severity.ERROR);
+    }
+
+    private static String skippedMessage(int skippedFileCount) {
+        if (skippedFileCount == 0) {
+            return "";
+        }
+        return " Stopped at the failure limit, " + skippedFileCount + " files were not verified.";
+    }
+
+    private static String missingHeaderMessage(Path file) {
+        return "Header verification failed for file: " + file + ".";
+    }
+
+    private static Action<ProblemSpec> missingHeaderSpec(Path file, String adviceText) {
+        return spec -> spec
+            .contextualLabel(missingHeaderMessage(file))
+            .solution(adviceText)
+            .severity(Severity.ERROR)
+            .fileLocation(file.toString());
+    }
+
+    private static Action<ProblemSpec> failedToRunSpec(Path file, Exception error) {
+        return spec -> spec
+            .contextualLabel("Failed to verify header of file: " + file + ".")
+            .details("File: " + file)
+            .severity(Severity.ERROR)
+            .withException(error);
     }
 }
@@ -0,0 +1,278 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered;
+
+import net.octyl.levelheadered.internal.HeaderFileRegistryService;
+import net.octyl.levelheadered.internal.HeaderResultCacheService;
+import net.octyl.levelheadered.internal.HeaderTemplateService;
+import net.octyl.levelheadered.internal.TaskMetrics;
+import net.octyl.levelheadered.rewriter.FileHeaderRewriter;
+import net.octyl.levelheadered.rewriter.SuffixIndex;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.InvalidUserDataException;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.FilePermissions;
+import org.gradle.api.file.FileTreeElement;
+import org.gradle.api.file.RelativePath;
+import org.gradle.api.provider.Property;
+import org.gradle.api.specs.Spec;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.UntrackedTask;
+import org.jspecify.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Task that watches source directories, and applies headers to files as they are created or modified.
+ *
+ * <p>
+ * The task runs until the build is cancelled. Events are debounced, so a burst of changes, such as a checkout, is
+ * processed as one batch. The header is prepared once per rewriter for the whole run, and files already known to have
+ * the header are skipped without reading them, so the task's own writes do not cause more work. Files are filtered by
+ * {@link #getSourceMatchPatterns()}, relative to the source directory they are in, and processed
+ * {@linkplain #getIoConcurrency() concurrently}. The batch size, {@link #getMaxInFlightBatches()} and
+ * {@link #getChangedSince()} are not used.
+ * </p>
+ *
+ * <p>
+ * Failures to apply a header are logged, and the task keeps watching.
+ * </p>
+ *
+ * <p>
+ * Only {@code abstract} for Gradle, not to be implemented by users.
+ * </p>
+ */
+@UntrackedTask(because = "Runs until cancelled, and writes to the source files directly")
+public abstract class HeaderWatchTask extends DefaultTask implements LevelHeaderedConfig {
+    @SuppressWarnings("doclint:missing")
+    public HeaderWatchTask() {
+        getDebounce().convention(Duration.ofMillis(200));
+    }
+
+    @SuppressWarnings("doclint:missing")
+    @Internal
+    protected abstract Property<HeaderTemplateService> getTemplateService();
+
+    @SuppressWarnings("doclint:missing")
+    @Internal
+    protected abstract Property<HeaderFileRegistryService> getFileRegistry();
+
+    @SuppressWarnings("doclint:missing")
+    @Internal
+    protected abstract Property<HeaderResultCacheService> getResultCache();
+
+    /**
+     * {@return the directories to watch, with all of their subdirectories}
+     * Directories that do not exist when the task starts are not watched.
+     */
+    @Internal
+    public abstract ConfigurableFileCollection getSourceDirectories();
+
+    /**
+     * {@return how long no changes must come in before the changed files are processed} Defaults to 200 milliseconds.
+     */
+    @Internal
+    public abstract Property<Duration> getDebounce();
+
+    /**
+     * Watches the source directories until the build is cancelled.
+     *
+     * @throws IOException if the source directories cannot be watched
+     */
+    @TaskAction
+    public void watch() throws IOException {
+        Duration debounce = getDebounce().get();
+        if (debounce.isNegative() || debounce.isZero()) {
+            throw new InvalidUserDataException("Debounce must be positive, got " + debounce);
+        }
+        int ioConcurrency = getIoConcurrency().getOrElse(Runtime.getRuntime().availableProcessors());
+        if (ioConcurrency < 1) {
+            throw new InvalidUserDataException("I/O concurrency must be at least 1, got " + ioConcurrency);
+        }
+        List<Path> roots = new ArrayList<>();
+        for (File directory : getSourceDirectories().getFiles()) {
+            roots.add(directory.toPath().toAbsolutePath().normalize());
+        }
+        // Longest first, so a file is matched relative to the innermost source directory it is in
+        roots.sort(Comparator.comparingInt(Path::getNameCount).reversed());
+        Applier applier = new Applier(
+            HeaderPreparer.expand(this, getTemplateService().get()),
+            new SuffixIndex<>(getRewriters().get()),
+            getSourceMatchPatterns().get().getAsSpec(),
+            roots,
+            ioConcurrency
+        );
+        try (HeaderWatcher watcher = new HeaderWatcher(roots)) {
+            getLogger().lifecycle(
+                "Watching {} directories for new and modified files, cancel the build to stop",
+                watcher.getDirectoryCount()
+            );
+            while (!Thread.currentThread().isInterrupted()) {
+                Set<Path> changes;
+                try {
+                    changes = watcher.awaitChanges(debounce);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                applier.apply(changes);
+            }
+        }
+        getLogger().lifecycle("Stopped watching");
+    }
+
+    /**
+     * The state that is kept for the whole run, to process each batch of changes.
+     */
+    private final class Applier {
+        private final HeaderPreparer headerPreparer;
+        private final SuffixIndex<FileHeaderRewriter> rewriters;
+        private final Spec<FileTreeElement> sourceSpec;
+        private final List<Path> roots;
+        private final int ioConcurrency;
+        private final Map<FileHeaderRewriter, HeaderFileProcessor> processors = new HashMap<>();
+        private final TaskMetrics metrics = new TaskMetrics();
+
+        Applier(
+            HeaderPreparer headerPreparer, SuffixIndex<FileHeaderRewriter> rewriters,
+            Spec<FileTreeElement> sourceSpec, List<Path> roots, int ioConcurrency
+        ) {
+            this.headerPreparer = headerPreparer;
+            this.rewriters = rewriters;
+            this.sourceSpec = sourceSpec;
+            this.roots = roots;
+            this.ioConcurrency = ioConcurrency;
+        }
+
+        void apply(Set<Path> changes) {
+            List<File> files = new ArrayList<>(changes.size());
+            List<HeaderFileProcessor> fileProcessors = new ArrayList<>(changes.size());
+            for (Path file : changes) {
+                // Removed since, or only a temporary file
+                if (!Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)) {
+                    continue;
+                }
+                Path root = rootOf(file);
+                if (root == null || !sourceSpec.isSatisfiedBy(new WatchedFile(file, root.relativize(file)))) {
+                    continue;
+                }
+                Map.Entry<String, FileHeaderRewriter> rewriterEntry = rewriters.find(file.getFileName().toString());
+                if (rewriterEntry == null) {
+                    continue;
+                }
+                fileProcessors.add(processors.computeIfAbsent(rewriterEntry.getValue(), rewriter ->
+                    new HeaderFileProcessor(
+                        headerPreparer.prepare(rewriterEntry.getKey(), rewriter), rewriter,
+                        getFileRegistry().get(), getResultCache().get(), metrics
+                    )
+                ));
+                files.add(file.toFile());
+            }
+            AtomicInteger applied = new AtomicInteger();
+            IoFanOut.forEach(files, ioConcurrency, (index, file) -> {
+                try {
+                    if (fileProcessors.get(index).apply(file.toPath()) == HeaderFileProcessor.Result.HEADER_APPLIED) {
+                        applied.incrementAndGet();
+                        getLogger().info("Applied header to {}", file);
+                    }
+                } catch (Exception e) {
+                    getLogger().warn("Failed to apply header to {}", file, e);
+                }
+            });
+            if (applied.get() > 0) {
+                getLogger().lifecycle("Applied headers to {} of {} changed files", applied.get(), files.size());
+            }
+        }
+
+        private @Nullable Path rootOf(Path file) {
+            for (Path root : roots) {
+                if (file.startsWith(root)) {
+                    return root;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A changed file, as far as the source match patterns need to see it.
+     */
+    private record WatchedFile(Path file, Path relativePath) implements FileTreeElement {
+        @Override
+        public File getFile() {
+            return file.toFile();
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return false;
+        }
+
+        @Override
+        public long getLastModified() {
+            return file.toFile().lastModified();
+        }
+
+        @Override
+        public long getSize() {
+            return file.toFile().length();
+        }
+
+        @Override
+        public InputStream open() {
+            throw new UnsupportedOperationException("Not needed to match patterns");
+        }
+
+        @Override
+        public void copyTo(OutputStream output) {
+            throw new UnsupportedOperationException("Not needed to match patterns");
+        }
+
+        @Override
+        public boolean copyTo(File target) {
+            throw new UnsupportedOperationException("Not needed to match patterns");
+        }
+
+        @Override
+        public String getName() {
+            return file.getFileName().toString();
+        }
+
+        @Override
+        public String getPath() {
+            return getRelativePath().getPathString();
+        }
+
+        @Override
+        public RelativePath getRelativePath() {
+            String[] segments = new String[relativePath.getNameCount()];
+            for (int i = 0; i < segments.length; i++) {
+                segments[i] = relativePath.getName(i).toString();
+            }
+            return new RelativePath(true, segments);
+        }
+
+        @Override
+        public FilePermissions getPermissions() {
+            throw new UnsupportedOperationException("Not needed to match patterns");
+        }
+    }
+}
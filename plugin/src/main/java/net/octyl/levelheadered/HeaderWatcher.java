@@ -0,0 +1,190 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches directory trees for created and modified files, and hands them out in debounced batches.
+ *
+ * <p>
+ * Directories created while watching are registered as they appear, and the files already in them are reported, as
+ * they may have been written before the directory was registered. If the watch service drops events, every root is
+ * walked again and all of its files are reported. Roots that do not exist when watching starts are not watched.
+ * </p>
+ */
+final class HeaderWatcher implements Closeable {
+    private static final Logger LOGGER = Logging.getLogger(HeaderWatcher.class);
+    /**
+     * How many quiet periods a batch may be held back for by a steady stream of events, such as a long checkout.
+     */
+    private static final int MAX_QUIET_PERIODS = 10;
+
+    private final List<Path> roots;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    private final Set<Path> pending = new LinkedHashSet<>();
+
+    /**
+     * Starts watching the given roots.
+     *
+     * @param roots the directories to watch, with all of their subdirectories
+     * @throws IOException if the roots cannot be watched
+     */
+    HeaderWatcher(List<Path> roots) throws IOException {
+        this.roots = roots;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        try {
+            for (Path root : roots) {
+                registerTree(root, false);
+            }
+        } catch (IOException | RuntimeException e) {
+            watchService.close();
+            throw e;
+        }
+    }
+
+    /**
+     * {@return the number of directories being watched}
+     */
+    int getDirectoryCount() {
+        return directories.size();
+    }
+
+    /**
+     * Waits for files to be created or modified, then waits until no more events come in for the quiet period, so
+     * that a burst of changes is returned as one batch. A steady stream of events is cut into batches every
+     * {@value #MAX_QUIET_PERIODS} quiet periods.
+     *
+     * @param quietPeriod how long no events must come in for the batch to be complete
+     * @return the files that were created or modified, which may no longer exist
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IOException if a new directory cannot be watched
+     */
+    Set<Path> awaitChanges(Duration quietPeriod) throws InterruptedException, IOException {
+        while (pending.isEmpty()) {
+            handle(watchService.take());
+        }
+        long quietNanos = quietPeriod.toNanos();
+        long deadline = System.nanoTime() + quietNanos * MAX_QUIET_PERIODS;
+        while (true) {
+            long waitNanos = Math.min(quietNanos, deadline - System.nanoTime());
+            if (waitNanos <= 0) {
+                break;
+            }
+            WatchKey key = watchService.poll(waitNanos, TimeUnit.NANOSECONDS);
+            if (key == null) {
+                break;
+            }
+            handle(key);
+        }
+        Set<Path> changes = new LinkedHashSet<>(pending);
+        pending.clear();
+        return changes;
+    }
+
+    private void handle(WatchKey key) throws IOException {
+        Path directory = directories.get(key);
+        if (directory == null) {
+            key.cancel();
+            return;
+        }
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                LOGGER.info("Missed file events in {}, looking at all watched files again", roots);
+                for (Path root : roots) {
+                    registerTree(root, true);
+                }
+                continue;
+            }
+            Path child = directory.resolve((Path) event.context());
+            if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                    registerTree(child, true);
+                }
+            } else {
+                pending.add(child);
+            }
+        }
+        if (!key.reset()) {
+            // The directory is gone
+            directories.remove(key);
+        }
+    }
+
+    /**
+     * Registers the directory and all directories under it, optionally reporting the files in them.
+     */
+    private void registerTree(Path start, boolean reportFiles) throws IOException {
+        if (!Files.isDirectory(start, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        try {
+            Files.walkFileTree(start, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    WatchKey key;
+                    try {
+                        key = dir.register(
+                            watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY
+                        );
+                    } catch (NoSuchFileException e) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    directories.put(key, dir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (reportFiles && attrs.isRegularFile()) {
+                        pending.add(file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+                    // Files come and go during a checkout, those that are gone no longer matter
+                    if (exc instanceof NoSuchFileException) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    throw exc;
+                }
+            });
+        } catch (NoSuchFileException e) {
+            LOGGER.debug("Directory {} was removed before it could be watched", start, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
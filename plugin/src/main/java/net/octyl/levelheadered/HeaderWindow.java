@@ -0,0 +1,148 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered;
+
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The raw bytes of a prefix of a source file, large enough to check its header.
+ */
+final class HeaderWindow {
+    /**
+     * The smallest number of bytes to read, even if the header is shorter. Reading less than a page is no cheaper.
+     */
+    private static final int MIN_WINDOW_BYTES = 4096;
+    /**
+     * The largest array size that is safe to allocate on all JVMs.
+     */
+    private static final int MAX_WINDOW_BYTES = Integer.MAX_VALUE - 8;
+    /**
+     * The most bytes UTF-8 needs for one {@code char}. Supplementary characters take 4 bytes, but also two chars.
+     */
+    private static final int MAX_UTF_8_BYTES_PER_CHAR = 3;
+
+    /**
+     * Reads the header window of the given file.
+     *
+     * <p>
+     * Enough bytes are read to decode at least {@code windowChars} characters as UTF-8, unless the end of the file is
+     * reached first. If the bytes contain a NUL byte, the file is considered binary and {@code null} is returned.
+     * </p>
+     *
+     * @param file the file to read
+     * @param windowChars the number of characters needed, or {@code -1} to read the whole file
+     * @return the header window, or {@code null} if the file is binary
+     * @throws IOException if an I/O error occurs
+     */
+    static @Nullable HeaderWindow read(Path file, int windowChars) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // One extra byte lets us see the end of the file without another read when the window covers it
+            long wanted = windowChars < 0
+                ? channel.size() + 1
+                // The extra char covers one that is cut off at the end of the window
+                : Math.max(MIN_WINDOW_BYTES, (windowChars + 1L) * MAX_UTF_8_BYTES_PER_CHAR);
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(MAX_WINDOW_BYTES, wanted));
+            boolean eof = fill(channel, buffer);
+            // If the file grew since we checked its size, keep reading
+            while (windowChars < 0 && !eof) {
+                if (buffer.capacity() == MAX_WINDOW_BYTES) {
+                    throw new IOException("File is too large to read: " + file);
+                }
+                ByteBuffer larger = ByteBuffer.allocate((int) Math.min(MAX_WINDOW_BYTES, buffer.capacity() * 2L));
+                larger.put(buffer.flip());
+                buffer = larger;
+                eof = fill(channel, buffer);
+            }
+            HeaderWindow window = new HeaderWindow(buffer.array(), buffer.position(), eof);
+            return window.containsNul() ? null : window;
+        }
+    }
+
+    private static boolean fill(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private final byte[] bytes;
+    private final int length;
+    private final boolean complete;
+
+    private HeaderWindow(byte[] bytes, int length, boolean complete) {
+        this.bytes = bytes;
+        this.length = length;
+        this.complete = complete;
+    }
+
+    /**
+     * {@return the bytes of the window} Only the first {@link #length()} bytes are part of it.
+     */
+    byte[] bytes() {
+        return bytes;
+    }
+
+    /**
+     * {@return the number of bytes in the window}
+     */
+    int length() {
+        return length;
+    }
+
+    /**
+     * {@return {@code true} if the window covers the whole file}
+     */
+    boolean complete() {
+        return complete;
+    }
+
+    private boolean containsNul() {
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Decodes the window as UTF-8. If the window is not complete, a character cut off at its end is left out.
+     *
+     * @return the decoded text
+     * @throws IOException if the window is not valid UTF-8
+     */
+    String decode() throws IOException {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+        ByteBuffer input = ByteBuffer.wrap(bytes, 0, length);
+        CharBuffer output = CharBuffer.allocate(length);
+        CoderResult result = decoder.decode(input, output, complete);
+        if (result.isError()) {
+            result.throwException();
+        }
+        if (complete) {
+            result = decoder.flush(output);
+            if (result.isError()) {
+                result.throwException();
+            }
+        }
+        return output.flip().toString();
+    }
+}
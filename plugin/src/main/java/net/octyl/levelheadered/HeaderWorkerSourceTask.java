@@ -5,13 +5,24 @@
 
 package net.octyl.levelheadered;
 
-import groovy.lang.Writable;
-import groovy.text.SimpleTemplateEngine;
+import net.octyl.levelheadered.internal.HeaderFileRegistryService;
+import net.octyl.levelheadered.internal.HeaderMetricsService;
+import net.octyl.levelheadered.internal.HeaderResultCacheService;
+import net.octyl.levelheadered.internal.HeaderTemplateService;
+import net.octyl.levelheadered.internal.HeaderWorkLimitService;
 import net.octyl.levelheadered.internal.HeaderWorkParameters;
+import net.octyl.levelheadered.internal.TaskMetrics;
 import net.octyl.levelheadered.rewriter.FileHeaderRewriter;
+import net.octyl.levelheadered.rewriter.PreparedHeader;
+import net.octyl.levelheadered.rewriter.SuffixIndex;
 import org.gradle.api.DefaultTask;
+import org.gradle.api.InvalidUserDataException;
 import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.Directory;
+import org.gradle.api.file.FileCollection;
 import org.gradle.api.file.FileType;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
 import org.gradle.api.provider.ProviderFactory;
 import org.gradle.api.tasks.IgnoreEmptyDirectories;
 import org.gradle.api.tasks.InputFiles;
@@ -21,17 +32,27 @@ import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.SkipWhenEmpty;
 import org.gradle.api.tasks.TaskAction;
 import org.gradle.work.ChangeType;
+import org.gradle.work.FileChange;
 import org.gradle.work.InputChanges;
 import org.gradle.workers.WorkAction;
 import org.gradle.workers.WorkQueue;
 import org.gradle.workers.WorkerExecutor;
+import org.jspecify.annotations.Nullable;
 
 import javax.inject.Inject;
+import java.io.File;
 import java.io.IOException;
-import java.io.StringWriter;
+import java.io.InterruptedIOException;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 
 /**
  * Base class for tasks that perform actions with headers on source files.
@@ -41,14 +62,11 @@ import java.util.Map;
  */
 public abstract sealed class HeaderWorkerSourceTask<W extends WorkAction<P>, P extends HeaderWorkParameters>
     extends DefaultTask implements LevelHeaderedConfig permits HeaderApplyTask, HeaderVerifyTask {
-    private static String getExtensionsOrName(Path file) {
-        String name = file.getFileName().toString();
-        int firstDot = name.indexOf('.');
-        if (firstDot == -1) {
-            return name;
-        }
-        return name.substring(firstDot);
-    }
+    /**
+     * How long to wait for a permit before checking whether this task's own batches are all queued, and need its
+     * worker lease to start.
+     */
+    private static final Duration PERMIT_WAIT_SLICE = Duration.ofMillis(20);
 
     @SuppressWarnings("doclint:missing")
     protected HeaderWorkerSourceTask() {
@@ -62,6 +80,33 @@ public abstract sealed class HeaderWorkerSourceTask<W extends WorkAction<P>, P e
     @Inject
     protected abstract ProviderFactory getProviderFactory();
 
+    @SuppressWarnings("doclint:missing")
+    @Internal
+    protected abstract Property<HeaderTemplateService> getTemplateService();
+
+    @SuppressWarnings("doclint:missing")
+    @Internal
+    protected abstract Property<HeaderFileRegistryService> getFileRegistry();
+
+    @SuppressWarnings("doclint:missing")
+    @Internal
+    protected abstract Property<HeaderResultCacheService> getResultCache();
+
+    @SuppressWarnings("doclint:missing")
+    @Internal
+    protected abstract Property<HeaderWorkLimitService> getWorkLimit();
+
+    @SuppressWarnings("doclint:missing")
+    @Internal
+    protected abstract Property<HeaderMetricsService> getMetrics();
+
+    /**
+     * {@return the file to write the metrics of the last run to} The metrics are counters and timings in JSON, to see
+     * where the time of the task goes. They are also summarized in the log at info level.
+     */
+    @Internal
+    public abstract RegularFileProperty getMetricsFile();
+
     /**
      * {@return Source files to process} Will be filtered by {@link #getSourceMatchPatterns()}.
      */
@@ -75,45 +120,225 @@ public abstract sealed class HeaderWorkerSourceTask<W extends WorkAction<P>, P e
     @PathSensitive(PathSensitivity.NONE)
     protected abstract ConfigurableFileCollection getSourcesToProcess();
 
+    /**
+     * {@return the header inputs published by other projects, for {@link LevelHeaderedAggregatePlugin}} If any are set,
+     * each file is processed with the rewriter and header published for it, instead of the configuration of this task,
+     * and files without published header inputs are skipped.
+     */
+    @InputFiles
+    @PathSensitive(PathSensitivity.NONE)
+    protected abstract ConfigurableFileCollection getHeaderInputs();
+
+    private final int maxWorkerCount = getProject().getGradle().getStartParameter().getMaxWorkerCount();
+
     {
-        // Wire up sources to process
-        getSourcesToProcess().from(
-            getProviderFactory().provider(() -> getSource().getAsFileTree().matching(getSourceMatchPatterns().get()))
-        );
+        getMetricsFile().convention(getProject().getLayout().getBuildDirectory().file(
+            "reports/levelHeadered/" + getName() + "/metrics.json"
+        ));
+        // Wire up sources to process. Sources are queried several times while configuring, so the filtered tree is
+        // only built, and git only run, on the first query. Nothing should be configured on the task after that.
+        Directory projectDirectory = getProject().getLayout().getProjectDirectory();
+        Property<FileCollection> sourcesToProcess = getProject().getObjects().property(FileCollection.class);
+        sourcesToProcess.set(getProviderFactory().provider(() -> {
+            FileCollection sources = getSource().getAsFileTree().matching(getSourceMatchPatterns().get());
+            String changedSince = getChangedSince().getOrNull();
+            if (changedSince == null) {
+                return sources;
+            }
+            // Filtering before the collection is fingerprinted means unchanged files are never read
+            Set<File> changed = getChangedFiles(projectDirectory, changedSince);
+            return sources.filter(changed::contains);
+        }));
+        sourcesToProcess.finalizeValueOnRead();
+        getSourcesToProcess().from(sourcesToProcess);
         getSourcesToProcess().builtBy(getSource());
     }
 
+    private Set<File> getChangedFiles(Directory projectDirectory, String changedSince) {
+        Set<String> relativePaths = getProviderFactory().of(GitChangedFilesValueSource.class, spec -> {
+            spec.getParameters().getDirectory().set(projectDirectory);
+            spec.getParameters().getBaseRef().set(changedSince);
+        }).get();
+        Set<File> files = new HashSet<>(relativePaths.size() * 2);
+        for (String relativePath : relativePaths) {
+            files.add(projectDirectory.file(relativePath).getAsFile());
+        }
+        return files;
+    }
+
     /**
      * Runs the work action on changed files.
      *
+     * <p>
+     * Files are grouped by rewriter and header, then split into size-balanced batches. Each batch is submitted as a
+     * single work item, so the header and rewriter are only passed to the worker once per batch. The header is prepared
+     * once per rewriter, so invalid header text fails here instead of for every file. With
+     * {@linkplain #getHeaderInputs() header inputs}, the headers were already prepared by the projects that published
+     * them.
+     * </p>
+     *
+     * <p>
+     * Once {@link #getMaxInFlightBatches()} batches are in flight, or the batches of all header tasks reach the limit
+     * of {@link HeaderWorkLimitService}, the task waits for a batch to finish before submitting more.
+     * </p>
+     *
+     * <p>
+     * Once all work is done, its {@linkplain #getMetricsFile() metrics} are written, even if it failed.
+     * </p>
+     *
      * @param inputChanges the input changes from Gradle
      * @throws IOException if an I/O error occurs
      */
     @TaskAction
     public void runWork(InputChanges inputChanges) throws IOException {
-        WorkQueue workQueue = getWorkerExecutor().noIsolation();
-        String headerText = expandHeaderTemplate();
-        Map<String, FileHeaderRewriter> rewriters = getRewriters().get();
-        inputChanges.getFileChanges(getSourcesToProcess()).forEach(change -> {
-            if (change.getChangeType() != ChangeType.REMOVED && change.getFileType() == FileType.FILE) {
-                Path file = change.getFile().toPath();
-                String rewriterKey = getExtensionsOrName(file);
-                FileHeaderRewriter rewriter = rewriters.get(rewriterKey);
-                if (rewriter == null) {
-                    getLogger().info(
-                        "No rewriter configured for key '{}', skipping file {}", rewriterKey, file.toAbsolutePath()
-                    );
-                    return;
+        long startNanos = System.nanoTime();
+        TaskMetrics metrics = getMetrics().get().start(getPath());
+        try {
+            WorkQueue workQueue = getWorkerExecutor().noIsolation();
+            int fileCount = submitWork(inputChanges, workQueue, metrics);
+            finishWork(workQueue, fileCount, metrics);
+            // The metrics are only complete once all work is done
+            workQueue.await();
+        } finally {
+            getMetrics().get().finish(getPath());
+            reportMetrics(System.nanoTime() - startNanos, metrics);
+        }
+    }
+
+    private int submitWork(InputChanges inputChanges, WorkQueue workQueue, TaskMetrics metrics) throws IOException {
+        startWork();
+        Function<File, HeaderInputs.@Nullable Target> targets = getHeaderInputs().isEmpty()
+            ? configuredTargets(metrics)
+            : HeaderInputs.readTargets(getHeaderInputs().getElements().get())::get;
+        Map<HeaderInputs.Target, List<File>> filesByTarget = new LinkedHashMap<>();
+        int fileCount = 0;
+        for (FileChange change : inputChanges.getFileChanges(getSourcesToProcess())) {
+            if (change.getChangeType() == ChangeType.REMOVED || change.getFileType() != FileType.FILE) {
+                continue;
+            }
+            metrics.add(TaskMetrics.Counter.FILES_CONSIDERED, 1);
+            Path file = change.getFile().toPath();
+            HeaderInputs.Target target = targets.apply(change.getFile());
+            if (target == null) {
+                metrics.add(TaskMetrics.Counter.FILES_WITHOUT_REWRITER, 1);
+                getLogger().info("No rewriter configured for file {}, skipping it", file.toAbsolutePath());
+                continue;
+            }
+            getLogger().info("Processing {} file: {}", change.getChangeType(), file.toAbsolutePath());
+            filesByTarget.computeIfAbsent(target, k -> new ArrayList<>()).add(change.getFile());
+            fileCount++;
+        }
+
+        Integer ioConcurrency = getIoConcurrency().getOrNull();
+        if (ioConcurrency != null && ioConcurrency < 1) {
+            throw new InvalidUserDataException("I/O concurrency must be at least 1, got " + ioConcurrency);
+        }
+        // Batches are still spread over the workers with concurrent I/O, each worker only reads its own batch faster
+        int batchSize = getBatchSize().getOrElse(FileBatcher.defaultBatchSize(fileCount, maxWorkerCount));
+        Integer maxInFlightBatches = getMaxInFlightBatches().getOrNull();
+        if (maxInFlightBatches != null && maxInFlightBatches < 1) {
+            throw new InvalidUserDataException("Max in-flight batches must be at least 1, got " + maxInFlightBatches);
+        }
+        int taskLimit = maxInFlightBatches == null ? Integer.MAX_VALUE : maxInFlightBatches;
+        int submittedFileCount = 0;
+        submitting:
+        for (Map.Entry<HeaderInputs.Target, List<File>> entry : filesByTarget.entrySet()) {
+            FileHeaderRewriter rewriter = entry.getKey().rewriter();
+            PreparedHeader header = entry.getKey().header();
+            for (List<File> batch : batch(entry.getValue(), batchSize)) {
+                if (isStopped(fileCount - submittedFileCount)) {
+                    break submitting;
+                }
+                long waitStartNanos = System.nanoTime();
+                acquirePermit(workQueue, taskLimit);
+                metrics.addTime(TaskMetrics.Phase.SUBMIT_WAIT, System.nanoTime() - waitStartNanos);
+                // Waiting for the permit may have let earlier batches stop the task
+                if (isStopped(fileCount - submittedFileCount)) {
+                    getWorkLimit().get().giveBack(getPath());
+                    break submitting;
                 }
-                getLogger().info("Processing {} file: {}", change.getChangeType(), file.toAbsolutePath());
+                submittedFileCount += batch.size();
+                metrics.add(TaskMetrics.Counter.BATCHES, 1);
                 workQueue.submit(getWorkActionClass(), p -> {
-                    p.getHeaderText().set(headerText);
+                    p.getHeader().set(header);
                     p.getRewriter().set(rewriter);
-                    p.getSourceFile().set(change.getFile());
+                    p.getSourceFiles().from(batch);
+                    p.getFileRegistry().set(getFileRegistry());
+                    p.getResultCache().set(getResultCache());
+                    p.getWorkLimit().set(getWorkLimit());
+                    p.getIoConcurrency().set(ioConcurrency == null ? 1 : ioConcurrency);
+                    p.getTaskPath().set(getPath());
+                    p.getMetrics().set(getMetrics());
+                    p.getSubmitTimeNanos().set(System.nanoTime());
                     configureParameters(p);
                 });
             }
-        });
+        }
+        return fileCount;
+    }
+
+    /**
+     * Takes a permit of {@link HeaderWorkLimitService} for the next batch, waiting until one is given back if needed.
+     *
+     * <p>
+     * This task holds a worker lease while it waits, which its queued batches may need to start. If none of them are
+     * running, it waits for them instead, which gives up the lease. If it has no batches in flight, it has nothing to
+     * wait for that would give up the lease, so the batch is submitted without a permit.
+     * </p>
+     */
+    private void acquirePermit(WorkQueue workQueue, int taskLimit) throws IOException {
+        HeaderWorkLimitService workLimit = getWorkLimit().get();
+        try {
+            while (!workLimit.tryAcquire(getPath(), taskLimit, PERMIT_WAIT_SLICE)) {
+                if (workLimit.acquireFirstWithoutPermit(getPath())) {
+                    getLogger().info("No header batches of {} in flight, submitting one without a permit", getPath());
+                    return;
+                }
+                if (workLimit.isOnlyQueued(getPath())) {
+                    workQueue.await();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to submit a batch");
+        }
+    }
+
+    /**
+     * Creates the lookup of targets from the configuration of this task. The header template is expanded right away,
+     * but the header is only prepared for rewriters that have files.
+     */
+    private Function<File, HeaderInputs.@Nullable Target> configuredTargets(TaskMetrics metrics) throws IOException {
+        long expansionStartNanos = System.nanoTime();
+        HeaderPreparer headerPreparer = HeaderPreparer.expand(this, getTemplateService().get());
+        metrics.addTime(TaskMetrics.Phase.TEMPLATE_EXPANSION, System.nanoTime() - expansionStartNanos);
+        // Built once per run, so each file only walks its name once to find the longest matching key
+        SuffixIndex<FileHeaderRewriter> rewriters = new SuffixIndex<>(getRewriters().get());
+        Map<FileHeaderRewriter, HeaderInputs.Target> targets = new HashMap<>();
+        return file -> {
+            Map.Entry<String, FileHeaderRewriter> rewriterEntry = rewriters.find(file.getName());
+            if (rewriterEntry == null) {
+                return null;
+            }
+            String rewriterKey = rewriterEntry.getKey();
+            return targets.computeIfAbsent(rewriterEntry.getValue(), rewriter -> {
+                long prepareStartNanos = System.nanoTime();
+                PreparedHeader header = headerPreparer.prepare(rewriterKey, rewriter);
+                metrics.addTime(TaskMetrics.Phase.HEADER_PREPARATION, System.nanoTime() - prepareStartNanos);
+                return new HeaderInputs.Target(rewriter, header);
+            });
+        };
+    }
+
+    private void reportMetrics(long wallNanos, TaskMetrics metrics) {
+        getLogger().info("{}: {}", getPath(), MetricsReport.summary(wallNanos, metrics));
+        Path metricsFile = getMetricsFile().get().getAsFile().toPath();
+        try {
+            MetricsReport.write(metricsFile, getPath(), wallNanos, metrics);
+        } catch (IOException e) {
+            // Metrics are not worth failing the build over
+            getLogger().warn("Failed to write metrics to {}", metricsFile, e);
+        }
     }
 
     @Internal
@@ -122,13 +347,41 @@ public abstract sealed class HeaderWorkerSourceTask<W extends WorkAction<P>, P e
     void configureParameters(P parameters) {
     }
 
-    private String expandHeaderTemplate() throws IOException {
-        Writable result = new SimpleTemplateEngine()
-            .createTemplate(getHeaderTemplate().get().asReader())
-            // Must copy variables into a new map, as the SimpleTemplateEngine may modify the map during expansion
-            .make(new HashMap<>(getTemplateVariables().get()));
-        StringWriter writer = new StringWriter();
-        result.writeTo(writer);
-        return writer.toString();
+    /**
+     * Called before any work is submitted.
+     */
+    void startWork() {
+    }
+
+    /**
+     * Checks whether to stop submitting batches, before each one is submitted.
+     *
+     * @param remainingFileCount the number of files not yet submitted, which are skipped if stopped
+     * @return {@code true} if no more batches should be submitted
+     */
+    boolean isStopped(int remainingFileCount) {
+        return false;
+    }
+
+    /**
+     * Splits the files into batches, in the order they should be submitted.
+     *
+     * @param files the files to batch
+     * @param batchSize the maximum number of files per batch
+     * @return the batches
+     */
+    List<List<File>> batch(List<File> files, int batchSize) {
+        return FileBatcher.batch(files, batchSize);
+    }
+
+    /**
+     * Called once all work has been submitted.
+     *
+     * @param workQueue the queue the work was submitted to
+     * @param fileCount the number of files submitted
+     * @param metrics the metrics to record into
+     * @throws IOException if an I/O error occurs
+     */
+    void finishWork(WorkQueue workQueue, int fileCount, TaskMetrics metrics) throws IOException {
     }
 }
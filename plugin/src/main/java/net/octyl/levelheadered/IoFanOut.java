@@ -0,0 +1,129 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered;
+
+import org.gradle.api.GradleException;
+import org.jspecify.annotations.Nullable;
+
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs an action for each file of a batch, with several files in flight at once.
+ *
+ * <p>
+ * Checking headers is mostly waiting on file I/O, so a single worker can keep a fast disk busy by having many files
+ * open at once. On Java 21 and later each file gets a virtual thread, otherwise a pool of platform threads is used.
+ * Either way, at most the given number of files are processed at once.
+ * </p>
+ */
+final class IoFanOut {
+    private static final @Nullable MethodHandle NEW_VIRTUAL_THREAD_EXECUTOR = findVirtualThreadExecutorFactory();
+
+    private static @Nullable MethodHandle findVirtualThreadExecutorFactory() {
+        try {
+            return MethodHandles.publicLookup().findStatic(
+                Executors.class, "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class)
+            );
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * An action to run for a file. Must be thread-safe if the concurrency is more than one.
+     */
+    @FunctionalInterface
+    interface FileAction {
+        /**
+         * Processes the file.
+         *
+         * @param index the index of the file in the batch
+         * @param file the file
+         */
+        void process(int index, File file);
+    }
+
+    /**
+     * Runs the action for each file, returning once all files are processed.
+     *
+     * @param files the files to process, started in order
+     * @param concurrency the maximum number of files to process at once
+     * @param action the action to run for each file
+     */
+    static void forEach(List<File> files, int concurrency, FileAction action) {
+        if (concurrency <= 1 || files.size() <= 1) {
+            for (int i = 0; i < files.size(); i++) {
+                action.process(i, files.get(i));
+            }
+            return;
+        }
+        ExecutorService executor = newExecutor(Math.min(concurrency, files.size()));
+        Semaphore permits = new Semaphore(concurrency);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        try {
+            for (int i = 0; i < files.size() && failure.get() == null; i++) {
+                permits.acquire();
+                int index = i;
+                executor.execute(() -> {
+                    try {
+                        action.process(index, files.get(index));
+                    } catch (Throwable t) {
+                        if (!failure.compareAndSet(null, t)) {
+                            failure.get().addSuppressed(t);
+                        }
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+            // All permits are back once every submitted file is done
+            permits.acquire(concurrency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GradleException("Interrupted while processing files", e);
+        } finally {
+            executor.shutdownNow();
+        }
+        Throwable t = failure.get();
+        if (t instanceof RuntimeException e) {
+            throw e;
+        }
+        if (t instanceof Error e) {
+            throw e;
+        }
+        if (t != null) {
+            throw new GradleException("Failed to process files", t);
+        }
+    }
+
+    private static ExecutorService newExecutor(int threads) {
+        if (NEW_VIRTUAL_THREAD_EXECUTOR != null) {
+            try {
+                return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invokeExact();
+            } catch (Throwable t) {
+                throw new IllegalStateException("Failed to create a virtual thread executor", t);
+            }
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "LevelHeadered I/O " + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private IoFanOut() {
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered;
+
+import org.gradle.api.NamedDomainObjectProvider;
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.Task;
+import org.gradle.api.artifacts.DependencyScopeConfiguration;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.tasks.TaskProvider;
+import org.gradle.api.tasks.util.PatternSet;
+
+import javax.inject.Inject;
+import java.util.Map;
+
+/**
+ * Plugin that processes the sources of a project and all of its subprojects in one task. Applies
+ * {@link LevelHeaderedPlugin}, and registers {@code applyHeaderAggregate} and {@code verifyHeaderAggregate}.
+ *
+ * <p>
+ * Every project with {@link LevelHeaderedPlugin} and Java source sets publishes its header inputs: the sources of its
+ * source sets, filtered by its own {@link LevelHeaderedConfig#getSourceMatchPatterns() source match patterns}, each
+ * with the header and rewriter of its own configuration. The aggregate tasks resolve them through the
+ * {@code levelHeaderedAggregate} configuration, which depends on all projects unless dependencies are declared in it,
+ * and skip projects that publish nothing. Only the batching, I/O concurrency and
+ * {@link LevelHeaderedConfig#getChangedSince()} come from the project this plugin is applied to. This saves the
+ * overhead of a pair of tasks per source set, without reading the configuration of other projects, so it works with
+ * isolated projects.
+ * </p>
+ *
+ * <p>
+ * Only {@code abstract} for Gradle, not to be implemented by users.
+ * </p>
+ */
+public abstract class LevelHeaderedAggregatePlugin implements Plugin<Project> {
+    @SuppressWarnings("doclint:missing")
+    public LevelHeaderedAggregatePlugin() {
+    }
+
+    @SuppressWarnings("doclint:missing")
+    @Inject
+    protected abstract ObjectFactory getObjects();
+
+    public void apply(Project project) {
+        project.getPluginManager().apply(LevelHeaderedPlugin.class);
+
+        NamedDomainObjectProvider<DependencyScopeConfiguration> aggregate =
+            project.getConfigurations().dependencyScope("levelHeaderedAggregate", configuration ->
+                configuration.defaultDependencies(dependencies -> {
+                    // Only the paths of the projects are used, never their configuration
+                    for (Project contributor : project.getAllprojects()) {
+                        dependencies.add(project.getDependencies().project(Map.of("path", contributor.getPath())));
+                    }
+                })
+            );
+        FileCollection headerInputs = project.getConfigurations().resolvable(
+            "levelHeaderedAggregateInputs", configuration -> {
+                configuration.extendsFrom(aggregate.get());
+                configuration.attributes(attributes -> HeaderInputs.setAttributes(attributes, getObjects()));
+            }
+        ).get().getIncoming().artifactView(view -> {
+            // Projects without the plugin or without source sets publish nothing
+            view.setLenient(true);
+        }).getFiles();
+
+        TaskProvider<HeaderApplyTask> applyTaskProvider = project.getTasks().register(
+            "applyHeaderAggregate", HeaderApplyTask.class, task -> {
+                task.setDescription("Applies a file header to the sources of this project and all subprojects.");
+                task.setGroup("formatting");
+                addHeaderInputs(project, task, headerInputs);
+            }
+        );
+        project.getTasks().register(
+            "verifyHeaderAggregate", HeaderVerifyTask.class, task -> {
+                task.setDescription("Verifies the file headers of the sources of this project and all subprojects.");
+                task.setGroup("verification");
+                task.getHeaderApplyTaskPath().convention(applyTaskProvider.map(Task::getPath));
+                addHeaderInputs(project, task, headerInputs);
+            }
+        );
+    }
+
+    private static void addHeaderInputs(
+        Project project, HeaderWorkerSourceTask<?, ?> task, FileCollection headerInputs
+    ) {
+        task.getHeaderInputs().from(headerInputs);
+        task.getSource().from(headerInputs.getElements().map(HeaderInputs::readFiles));
+        // Each project's header inputs carry its header, and its patterns already filter its sources
+        task.getHeaderTemplate().convention(project.getResources().getText().fromString(""));
+        task.getSourceMatchPatterns().convention(new PatternSet());
+    }
+}
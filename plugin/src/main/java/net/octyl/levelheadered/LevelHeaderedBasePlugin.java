@@ -5,15 +5,21 @@
 
 package net.octyl.levelheadered;
 
+import net.octyl.levelheadered.internal.HeaderFileRegistryService;
+import net.octyl.levelheadered.internal.HeaderMetricsService;
+import net.octyl.levelheadered.internal.HeaderResultCacheService;
+import net.octyl.levelheadered.internal.HeaderTemplateService;
+import net.octyl.levelheadered.internal.HeaderVerificationResultsService;
+import net.octyl.levelheadered.internal.HeaderWorkLimitService;
 import net.octyl.levelheadered.rewriter.StandardFileHeaderRewriter;
 import org.gradle.api.InvalidUserDataException;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
+import org.gradle.api.provider.Provider;
 import org.gradle.api.provider.ProviderFactory;
 import org.gradle.api.tasks.util.PatternSet;
 
 import javax.inject.Inject;
-import java.util.Map;
 
 /**
  * Base plugin that applies common conventions to all LevelHeadered tasks.
@@ -28,25 +34,21 @@ public abstract class LevelHeaderedBasePlugin implements Plugin<Project> {
             throw new InvalidUserDataException("No header template configured for LevelHeadered plugin. " +
                 "Please configure the 'levelHeadered.headerTemplate' property.");
         }));
-        // Keep alphabetized for better merging:
-        config.getRewriters().convention(Map.of(
-            ".css", StandardFileHeaderRewriter.SLASH_STAR_COMMENT,
-            ".gradle", StandardFileHeaderRewriter.SLASH_STAR_COMMENT,
-            ".groovy", StandardFileHeaderRewriter.SLASH_STAR_COMMENT,
-            ".java", StandardFileHeaderRewriter.SLASH_STAR_COMMENT,
-            ".js", StandardFileHeaderRewriter.SLASH_STAR_COMMENT,
-            ".kt", StandardFileHeaderRewriter.SLASH_STAR_COMMENT,
-            ".kts", StandardFileHeaderRewriter.SLASH_STAR_COMMENT,
-            ".scala", StandardFileHeaderRewriter.SLASH_STAR_COMMENT
-        ));
+        config.getRewriters().convention(StandardFileHeaderRewriter.defaults());
         config.getSourceMatchPatterns().convention(new PatternSet());
     }
 
     static void copyViaConvention(LevelHeaderedConfig from, LevelHeaderedConfig to) {
         to.getHeaderTemplate().convention(from.getHeaderTemplate());
         to.getTemplateVariables().convention(from.getTemplateVariables());
+        to.getTemplateVariableMatches().convention(from.getTemplateVariableMatches());
+        to.getLegacyHeaders().convention(from.getLegacyHeaders());
         to.getRewriters().convention(from.getRewriters());
         to.getSourceMatchPatterns().convention(from.getSourceMatchPatterns());
+        to.getBatchSize().convention(from.getBatchSize());
+        to.getIoConcurrency().convention(from.getIoConcurrency());
+        to.getMaxInFlightBatches().convention(from.getMaxInFlightBatches());
+        to.getChangedSince().convention(from.getChangedSince());
     }
 
     @SuppressWarnings("doclint:missing")
@@ -57,9 +59,84 @@ public abstract class LevelHeaderedBasePlugin implements Plugin<Project> {
     @Inject
     protected abstract ProviderFactory getProviders();
 
+    private static int parseMaxInFlightBatches(String value) {
+        int maxInFlightBatches;
+        try {
+            maxInFlightBatches = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new InvalidUserDataException(
+                "Gradle property " + HeaderWorkLimitService.MAX_IN_FLIGHT_BATCHES_PROPERTY
+                    + " must be a number, got '" + value + "'", e
+            );
+        }
+        if (maxInFlightBatches < 1) {
+            throw new InvalidUserDataException(
+                "Gradle property " + HeaderWorkLimitService.MAX_IN_FLIGHT_BATCHES_PROPERTY
+                    + " must be at least 1, got " + maxInFlightBatches
+            );
+        }
+        return maxInFlightBatches;
+    }
+
     public void apply(Project project) {
-        project.getTasks().withType(HeaderWorkerSourceTask.class).configureEach(config ->
-            applyConventions(config, getProviders())
+        Provider<HeaderTemplateService> templateService = project.getGradle().getSharedServices().registerIfAbsent(
+            HeaderTemplateService.NAME, HeaderTemplateService.class
+        );
+        Provider<HeaderFileRegistryService> fileRegistry = project.getGradle().getSharedServices().registerIfAbsent(
+            HeaderFileRegistryService.NAME, HeaderFileRegistryService.class
+        );
+        Provider<HeaderResultCacheService> resultCache = project.getGradle().getSharedServices().registerIfAbsent(
+            HeaderResultCacheService.NAME, HeaderResultCacheService.class
+        );
+        // By default, enough for the batches of one task with the default batch size, so only many tasks at once wait
+        int defaultMaxInFlightBatches = project.getGradle().getStartParameter().getMaxWorkerCount()
+            * FileBatcher.BATCHES_PER_WORKER;
+        Provider<HeaderWorkLimitService> workLimit = project.getGradle().getSharedServices().registerIfAbsent(
+            HeaderWorkLimitService.NAME, HeaderWorkLimitService.class,
+            spec -> spec.getParameters().getMaxInFlightBatches().set(
+                getProviders().gradleProperty(HeaderWorkLimitService.MAX_IN_FLIGHT_BATCHES_PROPERTY)
+                    .map(LevelHeaderedBasePlugin::parseMaxInFlightBatches)
+                    .orElse(defaultMaxInFlightBatches)
+            )
+        );
+        Provider<HeaderMetricsService> metrics = project.getGradle().getSharedServices().registerIfAbsent(
+            HeaderMetricsService.NAME, HeaderMetricsService.class
         );
+        project.getTasks().withType(HeaderWorkerSourceTask.class).configureEach(rawTask -> {
+            HeaderWorkerSourceTask<?, ?> task = rawTask;
+            applyConventions(task, getProviders());
+            task.getTemplateService().convention(templateService);
+            task.usesService(templateService);
+            task.getFileRegistry().convention(fileRegistry);
+            task.usesService(fileRegistry);
+            task.getResultCache().convention(resultCache);
+            task.usesService(resultCache);
+            task.getWorkLimit().convention(workLimit);
+            task.usesService(workLimit);
+            task.getMetrics().convention(metrics);
+            task.usesService(metrics);
+        });
+        project.getTasks().withType(HeaderWatchTask.class).configureEach(task -> {
+            applyConventions(task, getProviders());
+            task.getTemplateService().convention(templateService);
+            task.usesService(templateService);
+            task.getFileRegistry().convention(fileRegistry);
+            task.usesService(fileRegistry);
+            task.getResultCache().convention(resultCache);
+            task.usesService(resultCache);
+        });
+        project.getTasks().withType(HeaderInputsTask.class).configureEach(task -> {
+            applyConventions(task, getProviders());
+            task.getTemplateService().convention(templateService);
+            task.usesService(templateService);
+        });
+        Provider<HeaderVerificationResultsService> verificationResults =
+            project.getGradle().getSharedServices().registerIfAbsent(
+                HeaderVerificationResultsService.NAME, HeaderVerificationResultsService.class
+            );
+        project.getTasks().withType(HeaderVerifyTask.class).configureEach(task -> {
+            task.getVerificationResults().convention(verificationResults);
+            task.usesService(verificationResults);
+        });
     }
 }
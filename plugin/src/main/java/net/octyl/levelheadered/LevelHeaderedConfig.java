@@ -6,7 +6,9 @@
 package net.octyl.levelheadered;
 
 import net.octyl.levelheadered.rewriter.FileHeaderRewriter;
+import net.octyl.levelheadered.rewriter.TemplateVariableMatch;
 import org.gradle.api.file.ContentFilterable;
+import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.MapProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.resources.TextResource;
@@ -44,6 +46,32 @@ public interface LevelHeaderedConfig {
     @Input
     MapProperty<String, String> getTemplateVariables();
 
+    /**
+     * {@return how the values of template variables may differ in headers that are already present}
+     *
+     * <p>
+     * By default, a header is only present if it is exactly the expanded template. The variables given here may have
+     * other values in a present header, such as an older copyright year, so changing their values does not rewrite
+     * every file. Each of them must have a value in {@link #getTemplateVariables()}, which the template inserts as-is.
+     * That value is still used when a header is applied.
+     * </p>
+     */
+    @Input
+    MapProperty<String, TemplateVariableMatch> getTemplateVariableMatches();
+
+    /**
+     * {@return the texts of legacy headers to replace with the header}
+     *
+     * <p>
+     * Each text is rendered as a comment by each rewriter, like the expanded header template. The first legacy header
+     * found at the start of a line near the start of a file is replaced, even if other comments come before it.
+     * If any are set, other leading comments are no longer taken to be headers, and the header is inserted before them
+     * instead of replacing them.
+     * </p>
+     */
+    @Input
+    ListProperty<String> getLegacyHeaders();
+
     /**
      * {@return the patterns to match source files to apply headers to}
      *
@@ -54,4 +82,53 @@ public interface LevelHeaderedConfig {
      */
     @Internal
     Property<PatternSet> getSourceMatchPatterns();
+
+    /**
+     * {@return the maximum number of files to process in a single work item}
+     *
+     * <p>
+     * Files are grouped into batches of similar total size, and each batch is processed by one worker.
+     * If not set, the batch size is picked from the number of files and the maximum worker count.
+     * </p>
+     */
+    @Internal
+    Property<Integer> getBatchSize();
+
+    /**
+     * {@return the maximum number of files each worker reads or writes at once}
+     *
+     * <p>
+     * If set, each worker processes the files of its batch concurrently, on virtual threads on Java 21 and later, or
+     * on a pool of platform threads otherwise. This keeps fast disks busy without using more of Gradle's workers,
+     * which are sized for CPU-bound work. Files are batched the same way either way.
+     * If not set, each worker processes one file at a time.
+     * </p>
+     */
+    @Internal
+    Property<Integer> getIoConcurrency();
+
+    /**
+     * {@return the maximum number of batches to have queued or running at once}
+     *
+     * <p>
+     * Once this many batches are in flight, the task waits for one of them to finish before submitting another. This
+     * bounds the work queued at once, and leaves workers to other tasks. The batches of all tasks together are also
+     * limited by the {@code levelHeadered.maxInFlightBatchesPerBuild} Gradle property. If not set, only that limit
+     * applies.
+     * </p>
+     */
+    @Internal
+    Property<Integer> getMaxInFlightBatches();
+
+    /**
+     * {@return the git ref to compare against, to only process files changed since then}
+     *
+     * <p>
+     * If set, only files added or modified since the merge base of this ref and {@code HEAD} are processed, including
+     * uncommitted and untracked files. Other files are never read. Only the local repository is used, so the ref must
+     * already be fetched. Only files inside the project directory are considered.
+     * </p>
+     */
+    @Internal
+    Property<String> getChangedSince();
 }
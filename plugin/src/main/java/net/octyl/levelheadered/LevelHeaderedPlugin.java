@@ -55,6 +55,12 @@ public abstract class LevelHeaderedPlugin implements Plugin<Project> {
         project.getTasks().withType(HeaderWorkerSourceTask.class).configureEach(task ->
             LevelHeaderedBasePlugin.copyViaConvention(levelHeadered, task)
         );
+        project.getTasks().withType(HeaderWatchTask.class).configureEach(task ->
+            LevelHeaderedBasePlugin.copyViaConvention(levelHeadered, task)
+        );
+        project.getTasks().withType(HeaderInputsTask.class).configureEach(task ->
+            LevelHeaderedBasePlugin.copyViaConvention(levelHeadered, task)
+        );
 
         project.getPluginManager().withPlugin("java-base", p -> addTasksForJavaSourceSets(project));
     }
@@ -62,9 +68,27 @@ public abstract class LevelHeaderedPlugin implements Plugin<Project> {
     private void addTasksForJavaSourceSets(Project project) {
         List<TaskProvider<?>> allApplyTasks = new ArrayList<>();
         List<TaskProvider<?>> allVerifyTasks = new ArrayList<>();
-        // Eagerly evaluate like java-base does. If java-base becomes lazy in the future, we want to still eagerly
-        // evaluate this in existing releases, then update the code to use the lazy APIs that java-base does.
-        project.getExtensions().getByType(SourceSetContainer.class).all(sourceSet -> {
+        TaskProvider<HeaderWatchTask> watchTaskProvider = project.getTasks().register(
+            "watchHeader", HeaderWatchTask.class, task -> {
+                task.setDescription("Watches all source sets, and applies file headers to new and modified files.");
+                task.setGroup("formatting");
+            }
+        );
+        // Published for LevelHeaderedAggregatePlugin, which must not read this project's configuration itself
+        TaskProvider<HeaderInputsTask> inputsTaskProvider = project.getTasks().register(
+            "levelHeaderedInputs", HeaderInputsTask.class, task -> {
+                task.setDescription("Writes the header inputs of all source sets for aggregate tasks.");
+                task.getOutputFile().convention(
+                    project.getLayout().getBuildDirectory().file("levelHeadered/header-inputs.bin")
+                );
+            }
+        );
+        project.getConfigurations().consumable("levelHeaderedInputsElements", configuration -> {
+            configuration.attributes(attributes -> HeaderInputs.setAttributes(attributes, getObjects()));
+            configuration.getOutgoing().artifact(inputsTaskProvider.flatMap(HeaderInputsTask::getOutputFile));
+        });
+        // Only registers tasks, so source sets are never realized early, and the tasks are only configured if needed
+        project.getExtensions().getByType(SourceSetContainer.class).configureEach(sourceSet -> {
             TaskProvider<HeaderApplyTask> applyTaskProvider = project.getTasks().register(
                 sourceSet.getTaskName("apply", "header"), HeaderApplyTask.class,
                 task -> {
@@ -84,6 +108,10 @@ public abstract class LevelHeaderedPlugin implements Plugin<Project> {
                 }
             );
             allVerifyTasks.add(verifyTaskProvider);
+            watchTaskProvider.configure(task ->
+                task.getSourceDirectories().from(sourceSet.getAllSource().getSourceDirectories())
+            );
+            inputsTaskProvider.configure(task -> task.getSource().from(sourceSet.getAllSource()));
         });
 
         project.getTasks().register("applyHeaderToAll", task -> {
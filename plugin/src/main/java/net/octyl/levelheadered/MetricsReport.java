@@ -0,0 +1,119 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered;
+
+import groovy.json.JsonOutput;
+import net.octyl.levelheadered.internal.TaskMetrics;
+import net.octyl.levelheadered.internal.TaskMetrics.Counter;
+import net.octyl.levelheadered.internal.TaskMetrics.Phase;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Writes the metrics of a header task as JSON, and summarizes them for the log.
+ */
+final class MetricsReport {
+    private static final double[] PERCENTILES = {50, 90, 99};
+
+    /**
+     * Writes the report, replacing any previous one.
+     *
+     * @param reportFile the file to write to
+     * @param taskPath the path of the task
+     * @param wallNanos the time the task took, in nanoseconds
+     * @param metrics the metrics of the task
+     * @throws IOException if an I/O error occurs
+     */
+    static void write(Path reportFile, String taskPath, long wallNanos, TaskMetrics metrics) throws IOException {
+        Map<String, Object> counters = new LinkedHashMap<>();
+        for (Counter counter : Counter.values()) {
+            counters.put(jsonName(counter), metrics.get(counter));
+        }
+        Map<String, Object> phaseNanos = new LinkedHashMap<>();
+        for (Phase phase : Phase.values()) {
+            phaseNanos.put(jsonName(phase), metrics.getNanos(phase));
+        }
+        Map<String, Object> fileNanos = new LinkedHashMap<>();
+        for (double percentile : PERCENTILES) {
+            fileNanos.put("p" + (int) percentile, metrics.getFileNanosPercentile(percentile));
+        }
+        fileNanos.put("max", metrics.getMaxFileNanos());
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("task", taskPath);
+        report.put("wallNanos", wallNanos);
+        report.put("counters", counters);
+        report.put("phaseNanos", phaseNanos);
+        report.put("fileNanos", fileNanos);
+
+        Files.createDirectories(reportFile.getParent());
+        try (Writer writer = Files.newBufferedWriter(reportFile)) {
+            writer.write(JsonOutput.prettyPrint(JsonOutput.toJson(report)));
+        }
+    }
+
+    /**
+     * Summarizes the metrics in one line.
+     *
+     * @param wallNanos the time the task took, in nanoseconds
+     * @param metrics the metrics of the task
+     * @return the summary
+     */
+    static String summary(long wallNanos, TaskMetrics metrics) {
+        return String.format(
+            Locale.ROOT,
+            "%d files considered, %d without a rewriter, %d processed (%d reused, %d cached, %d binary) in %d batches"
+                + ", %d bytes read, %d bytes written in %s"
+                + "; template %s, prepare %s, submit wait %s, queue wait %s, read %s, rewrite %s, write %s"
+                + ", reporting %s"
+                + "; per file p50 %s, p90 %s, p99 %s, max %s",
+            metrics.get(Counter.FILES_CONSIDERED),
+            metrics.get(Counter.FILES_WITHOUT_REWRITER),
+            metrics.get(Counter.FILES_PROCESSED),
+            metrics.get(Counter.FILES_REUSED),
+            metrics.get(Counter.FILES_CACHED),
+            metrics.get(Counter.FILES_BINARY),
+            metrics.get(Counter.BATCHES),
+            metrics.get(Counter.BYTES_READ),
+            metrics.get(Counter.BYTES_WRITTEN),
+            millis(wallNanos),
+            millis(metrics.getNanos(Phase.TEMPLATE_EXPANSION)),
+            millis(metrics.getNanos(Phase.HEADER_PREPARATION)),
+            millis(metrics.getNanos(Phase.SUBMIT_WAIT)),
+            millis(metrics.getNanos(Phase.QUEUE_WAIT)),
+            millis(metrics.getNanos(Phase.READ)),
+            millis(metrics.getNanos(Phase.REWRITE)),
+            millis(metrics.getNanos(Phase.WRITE)),
+            millis(metrics.getNanos(Phase.REPORTING)),
+            millis(metrics.getFileNanosPercentile(50)),
+            millis(metrics.getFileNanosPercentile(90)),
+            millis(metrics.getFileNanosPercentile(99)),
+            millis(metrics.getMaxFileNanos())
+        );
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f ms", nanos / 1e6);
+    }
+
+    private static String jsonName(Enum<?> constant) {
+        String[] words = constant.name().toLowerCase(Locale.ROOT).split("_");
+        StringBuilder name = new StringBuilder(words[0]);
+        for (int i = 1; i < words.length; i++) {
+            name.append(Character.toUpperCase(words[i].charAt(0))).append(words[i], 1, words[i].length());
+        }
+        return name.toString();
+    }
+
+    private MetricsReport() {
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered;
+
+import groovy.json.JsonOutput;
+import net.octyl.levelheadered.internal.HeaderVerificationResultsService.Failure;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes header verification failures as a SARIF 2.1.0 log, which CI systems and code review tools can display.
+ */
+final class VerificationReport {
+    static final String MISSING_HEADER_RULE = "missing-header";
+    static final String FAILED_TO_RUN_RULE = "failed-to-run";
+
+    /**
+     * Writes the report, replacing any previous one.
+     *
+     * @param reportFile the file to write to
+     * @param taskPath the path of the task that verified the files
+     * @param fileCount the number of files to verify
+     * @param skippedFileCount the number of files that were not verified, as the failure limit was reached
+     * @param failures the failures, in the order to report them
+     * @throws IOException if an I/O error occurs
+     */
+    static void write(
+        Path reportFile, String taskPath, int fileCount, int skippedFileCount, List<Failure> failures
+    ) throws IOException {
+        List<Map<String, Object>> results = new ArrayList<>(failures.size());
+        for (Failure failure : failures) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            Exception error = failure.error();
+            if (error == null) {
+                result.put("ruleId", MISSING_HEADER_RULE);
+                result.put("message", Map.of("text", "The file header is missing or incorrect."));
+            } else {
+                result.put("ruleId", FAILED_TO_RUN_RULE);
+                result.put("message", Map.of("text", String.valueOf(error)));
+            }
+            result.put("level", "error");
+            result.put("locations", List.of(Map.of(
+                "physicalLocation", Map.of(
+                    "artifactLocation", Map.of("uri", failure.file().toUri().toString())
+                )
+            )));
+            results.add(result);
+        }
+
+        Map<String, Object> driver = new LinkedHashMap<>();
+        driver.put("name", "LevelHeadered");
+        driver.put("informationUri", "https://github.com/octylFractal/LevelHeadered");
+        driver.put("rules", List.of(
+            rule(MISSING_HEADER_RULE, "The file header is missing or incorrect."),
+            rule(FAILED_TO_RUN_RULE, "The file header could not be verified.")
+        ));
+        Map<String, Object> run = new LinkedHashMap<>();
+        run.put("tool", Map.of("driver", driver));
+        run.put("properties", Map.of(
+            "task", taskPath,
+            "fileCount", fileCount,
+            "skippedFileCount", skippedFileCount,
+            "failedFileCount", failures.size()
+        ));
+        run.put("results", results);
+
+        Map<String, Object> log = new LinkedHashMap<>();
+        log.put("$schema", "https://json.schemastore.org/sarif-2.1.0.json");
+        log.put("version", "2.1.0");
+        log.put("runs", List.of(run));
+
+        Files.createDirectories(reportFile.getParent());
+        try (Writer writer = Files.newBufferedWriter(reportFile)) {
+            // Not pretty-printed, as the report may list a lot of files
+            writer.write(JsonOutput.toJson(log));
+        }
+    }
+
+    private static Map<String, Object> rule(String id, String description) {
+        return Map.of(
+            "id", id,
+            "shortDescription", Map.of("text", description)
+        );
+    }
+
+    private VerificationReport() {
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered.internal;
+
+import net.octyl.levelheadered.rewriter.FileHeaderRewriter;
+import net.octyl.levelheadered.rewriter.PreparedHeader;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Build service that records which files have already been processed in the current build.
+ *
+ * <p>
+ * Source sets may share source directories, in which case several tasks cover the same files. This service lets
+ * them process each file once per header and rewriter, and share the result. It also provides per-file locks, so that
+ * tasks running in parallel do not write to the same file at once. Reading does not need the lock, as files are
+ * replaced atomically, so checking files is never held up by unrelated files that share a lock.
+ * </p>
+ *
+ * <p>
+ * Results are recorded with a {@linkplain Stamp stamp} of the file taken before it was read, so a file modified
+ * while or after it is read is processed again.
+ * </p>
+ *
+ * <p>
+ * Not to be used directly by users.
+ * </p>
+ */
+public abstract class HeaderFileRegistryService implements BuildService<BuildServiceParameters.None> {
+    /**
+     * The name this service is registered under.
+     */
+    public static final String NAME = "levelHeaderedFileRegistry";
+
+    /**
+     * The number of locks to spread files over. Enough that unrelated files rarely wait on each other.
+     */
+    private static final int LOCK_STRIPES = 256;
+
+    /**
+     * The state of a file's header after it was processed.
+     */
+    public enum FileState {
+        /**
+         * The header is present, either because it already was or because it was applied.
+         */
+        HEADER_PRESENT,
+        /**
+         * The header is missing.
+         */
+        HEADER_MISSING,
+        /**
+         * The file is binary, and was skipped.
+         */
+        BINARY,
+    }
+
+    private record Key(Path file, PreparedHeader header, FileHeaderRewriter rewriter) {
+    }
+
+    /**
+     * The modification time and size of a file, to tell whether it was modified since it was processed.
+     *
+     * @param lastModified the modification time
+     * @param size the size in bytes
+     */
+    public record Stamp(FileTime lastModified, long size) {
+        /**
+         * Reads the stamp of the given file.
+         *
+         * @param file the file
+         * @return the stamp, or {@code null} if the file does not exist
+         * @throws IOException if an I/O error occurs
+         */
+        public static @Nullable Stamp read(Path file) throws IOException {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                return new Stamp(attributes.lastModifiedTime(), attributes.size());
+            } catch (NoSuchFileException e) {
+                return null;
+            }
+        }
+    }
+
+    private record Entry(FileState state, Stamp stamp) {
+    }
+
+    private final Lock[] locks = new Lock[LOCK_STRIPES];
+    private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("doclint:missing")
+    public HeaderFileRegistryService() {
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Gets the lock for the given file. It should be held while writing the file.
+     *
+     * @param file the file
+     * @return the lock
+     */
+    public Lock lockFor(Path file) {
+        return locks[Math.floorMod(normalize(file).hashCode(), locks.length)];
+    }
+
+    /**
+     * Gets the recorded state of the given file, if it has not been modified since.
+     *
+     * @param file the file
+     * @param header the header the file was processed with
+     * @param rewriter the rewriter the file was processed with
+     * @param stamp the current stamp of the file
+     * @return the recorded state, or {@code null} if the file needs to be processed
+     */
+    public @Nullable FileState get(
+        Path file, PreparedHeader header, FileHeaderRewriter rewriter, @Nullable Stamp stamp
+    ) {
+        Entry entry = entries.get(new Key(normalize(file), header, rewriter));
+        if (entry == null || !entry.stamp().equals(stamp)) {
+            return null;
+        }
+        return entry.state();
+    }
+
+    /**
+     * Records the state of the given file, after processing it.
+     *
+     * @param file the file
+     * @param header the header the file was processed with
+     * @param rewriter the rewriter the file was processed with
+     * @param stamp the stamp of the file taken before it was read, or after it was written
+     * @param state the state of the file
+     */
+    public void put(
+        Path file, PreparedHeader header, FileHeaderRewriter rewriter, @Nullable Stamp stamp, FileState state
+    ) {
+        if (stamp != null) {
+            entries.put(new Key(normalize(file), header, rewriter), new Entry(state, stamp));
+        }
+    }
+
+    private static Path normalize(Path file) {
+        return file.toAbsolutePath().normalize();
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered.internal;
+
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Build service that holds the {@link TaskMetrics} of running header tasks, so workers can record into them.
+ *
+ * <p>
+ * Not to be used directly by users.
+ * </p>
+ */
+public abstract class HeaderMetricsService implements BuildService<BuildServiceParameters.None> {
+    /**
+     * The name this service is registered under.
+     */
+    public static final String NAME = "levelHeaderedMetrics";
+
+    private final ConcurrentHashMap<String, TaskMetrics> metricsByTask = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("doclint:missing")
+    public HeaderMetricsService() {
+    }
+
+    /**
+     * Starts collecting metrics for the given task, discarding any previous ones.
+     *
+     * @param taskPath the path of the task
+     * @return the metrics to record into
+     */
+    public TaskMetrics start(String taskPath) {
+        TaskMetrics metrics = new TaskMetrics();
+        metricsByTask.put(taskPath, metrics);
+        return metrics;
+    }
+
+    /**
+     * Gets the metrics of the given task.
+     *
+     * @param taskPath the path of the task
+     * @return the metrics to record into
+     * @throws IllegalStateException if collecting was not started for the task
+     */
+    public TaskMetrics get(String taskPath) {
+        TaskMetrics metrics = metricsByTask.get(taskPath);
+        if (metrics == null) {
+            throw new IllegalStateException("Metrics were not started for task " + taskPath);
+        }
+        return metrics;
+    }
+
+    /**
+     * Stops collecting metrics for the given task.
+     *
+     * @param taskPath the path of the task
+     * @return the collected metrics
+     * @throws IllegalStateException if collecting was not started for the task
+     */
+    public TaskMetrics finish(String taskPath) {
+        TaskMetrics metrics = metricsByTask.remove(taskPath);
+        if (metrics == null) {
+            throw new IllegalStateException("Metrics were not started for task " + taskPath);
+        }
+        return metrics;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered.internal;
+
+import net.octyl.levelheadered.rewriter.FileHeaderRewriter;
+import net.octyl.levelheadered.rewriter.PreparedHeader;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.jspecify.annotations.Nullable;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Build service that remembers whether headers are present in file contents it has seen, keyed by a hash of the
+ * contents.
+ *
+ * <p>
+ * Verification re-checks every file whenever Gradle cannot run it incrementally, such as after switching branches or
+ * after a failed run, even though most contents were checked before. So the cache is static on purpose, with the
+ * same lifetime as the caches of {@link HeaderTemplateService}: it is kept for as long as the plugin classes are
+ * loaded, and later builds in the daemon find what earlier ones checked. Unlike
+ * {@link HeaderFileRegistryService}, it is keyed by contents rather than path, so identical files are also only
+ * checked once. It is bounded, so memory use stays flat no matter how many contents are seen.
+ * </p>
+ *
+ * <p>
+ * Not to be used directly by users.
+ * </p>
+ */
+public abstract class HeaderResultCacheService implements BuildService<BuildServiceParameters.None> {
+    /**
+     * The name this service is registered under.
+     */
+    public static final String NAME = "levelHeaderedResultCache";
+
+    /**
+     * About 150 bytes per entry, so a few megabytes in total.
+     */
+    private static final int MAX_ENTRIES = 32768;
+
+    /**
+     * A key for the cache.
+     *
+     * @param contentHash the SHA-256 hash of the contents
+     * @param complete whether the contents are the whole file, rather than only its start
+     * @param header the header checked for
+     * @param rewriter the rewriter that checked for it
+     */
+    public record Key(byte[] contentHash, boolean complete, PreparedHeader header, FileHeaderRewriter rewriter) {
+        @Override
+        public boolean equals(@Nullable Object o) {
+            return o instanceof Key that
+                && complete == that.complete
+                && Arrays.equals(contentHash, that.contentHash)
+                && header.equals(that.header)
+                && rewriter.equals(that.rewriter);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Arrays.hashCode(contentHash);
+            result = 31 * result + Boolean.hashCode(complete);
+            result = 31 * result + header.hashCode();
+            result = 31 * result + rewriter.hashCode();
+            return result;
+        }
+    }
+
+    private static final LruCache<Key, Boolean> HEADER_PRESENT = new LruCache<>(MAX_ENTRIES);
+
+    @SuppressWarnings("doclint:missing")
+    public HeaderResultCacheService() {
+    }
+
+    /**
+     * Creates the key for the given contents.
+     *
+     * <p>
+     * Only rewriters loaded with the plugin are cached. Other rewriters come from build scripts, whose class loaders
+     * should not be kept alive across builds, and may not be as deterministic.
+     * </p>
+     *
+     * @param content the buffer holding the contents
+     * @param length the number of bytes of contents in the buffer
+     * @param complete whether the contents are the whole file, rather than only its start
+     * @param header the header to check for
+     * @param rewriter the rewriter to check with
+     * @return the key, or {@code null} if results of the rewriter are not cached
+     */
+    public @Nullable Key keyFor(
+        byte[] content, int length, boolean complete, PreparedHeader header, FileHeaderRewriter rewriter
+    ) {
+        if (rewriter.getClass().getClassLoader() != HeaderResultCacheService.class.getClassLoader()) {
+            return null;
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required to be supported", e);
+        }
+        digest.update(content, 0, length);
+        return new Key(digest.digest(), complete, header, rewriter);
+    }
+
+    /**
+     * Gets whether the header was present in the contents with the given key.
+     *
+     * @param key the key
+     * @return whether the header was present, or {@code null} if the contents have not been checked
+     */
+    public @Nullable Boolean get(Key key) {
+        return HEADER_PRESENT.get(key);
+    }
+
+    /**
+     * Records whether the header is present in the contents with the given key.
+     *
+     * @param key the key
+     * @param headerPresent whether the header is present
+     */
+    public void put(Key key, boolean headerPresent) {
+        HEADER_PRESENT.put(key, headerPresent);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered.internal;
+
+import groovy.text.SimpleTemplateEngine;
+import groovy.text.Template;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Build service that expands header templates, caching compiled templates and their expansions.
+ *
+ * <p>
+ * Compiling a template creates a new Groovy class, so doing it in every task fills up metaspace in long-lived
+ * daemons. So the caches deliberately live for the whole daemon rather than for one build like this service: they are
+ * kept for as long as the plugin classes are loaded, and shared by all tasks and all builds that use this version of
+ * the plugin in the daemon. {@link HeaderResultCacheService} does the same. They are bounded, so memory use stays flat
+ * no matter how many templates are seen.
+ * </p>
+ *
+ * <p>
+ * Not to be used directly by users.
+ * </p>
+ */
+public abstract class HeaderTemplateService implements BuildService<BuildServiceParameters.None> {
+    /**
+     * The name this service is registered under.
+     */
+    public static final String NAME = "levelHeaderedTemplates";
+
+    private static final int MAX_COMPILED_TEMPLATES = 64;
+    private static final int MAX_EXPANDED_TEMPLATES = 256;
+
+    private static final TemplateCache DAEMON_CACHE = new TemplateCache(
+        MAX_COMPILED_TEMPLATES, MAX_EXPANDED_TEMPLATES, HeaderTemplateService::compile
+    );
+
+    @SuppressWarnings("doclint:missing")
+    public HeaderTemplateService() {
+    }
+
+    /**
+     * Expands the given template with {@link SimpleTemplateEngine}.
+     *
+     * <p>
+     * Like task up-to-date checks, this assumes that the expansion only depends on the template and the variables.
+     * </p>
+     *
+     * @param template the template text
+     * @param variables the variables to expand the template with
+     * @return the expanded template
+     * @throws IOException if the template cannot be compiled or expanded
+     */
+    public String expand(String template, Map<String, String> variables) throws IOException {
+        return DAEMON_CACHE.expand(template, variables);
+    }
+
+    static Template compile(String template) throws IOException {
+        try {
+            // A new engine per template, as an engine's class loader keeps every class it compiled. This way, the
+            // classes of evicted templates can be unloaded.
+            return new SimpleTemplateEngine().createTemplate(template);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Failed to compile header template", e);
+        }
+    }
+}
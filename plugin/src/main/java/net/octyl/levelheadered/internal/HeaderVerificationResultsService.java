@@ -0,0 +1,133 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered.internal;
+
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.jspecify.annotations.Nullable;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Build service that collects header verification failures from workers, so the verify task can report them together.
+ *
+ * <p>
+ * Workers only add to a lock-free queue, so recording a failure costs no more than an allocation, no matter how many
+ * files fail. Once a task reaches its failure limit, workers see it as stopped and skip their remaining files.
+ * </p>
+ *
+ * <p>
+ * Not to be used directly by users.
+ * </p>
+ */
+public abstract class HeaderVerificationResultsService implements BuildService<BuildServiceParameters.None> {
+    /**
+     * The name this service is registered under.
+     */
+    public static final String NAME = "levelHeaderedVerificationResults";
+
+    /**
+     * A file that failed verification.
+     *
+     * @param file the file
+     * @param error the error that prevented verifying the file, or {@code null} if its header is missing
+     */
+    public record Failure(Path file, @Nullable Exception error) {
+    }
+
+    /**
+     * The results of a task's verification.
+     *
+     * @param failures the failures, in no particular order
+     * @param skippedFileCount the number of files that were not verified, as the failure limit was reached
+     */
+    public record Results(List<Failure> failures, int skippedFileCount) {
+    }
+
+    private static final class TaskResults {
+        final Queue<Failure> failures = new ConcurrentLinkedQueue<>();
+        final AtomicInteger failureCount = new AtomicInteger();
+        final AtomicInteger skippedFileCount = new AtomicInteger();
+        final int maxFailures;
+
+        TaskResults(int maxFailures) {
+            this.maxFailures = maxFailures;
+        }
+    }
+
+    private final ConcurrentHashMap<String, TaskResults> resultsByTask = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("doclint:missing")
+    public HeaderVerificationResultsService() {
+    }
+
+    /**
+     * Starts collecting results for the given task, discarding any previous ones.
+     *
+     * @param taskPath the path of the task
+     * @param maxFailures the number of failures after which to stop verifying, or {@code -1} for no limit
+     */
+    public void start(String taskPath, int maxFailures) {
+        resultsByTask.put(taskPath, new TaskResults(maxFailures < 0 ? Integer.MAX_VALUE : maxFailures));
+    }
+
+    private TaskResults resultsFor(String taskPath) {
+        return resultsByTask.computeIfAbsent(taskPath, k -> new TaskResults(Integer.MAX_VALUE));
+    }
+
+    /**
+     * Records a failure for the given task.
+     *
+     * @param taskPath the path of the task verifying the file
+     * @param failure the failure
+     */
+    public void record(String taskPath, Failure failure) {
+        TaskResults results = resultsFor(taskPath);
+        results.failures.add(failure);
+        results.failureCount.incrementAndGet();
+    }
+
+    /**
+     * Records files that were skipped, as the task was {@linkplain #isStopped(String) stopped}.
+     *
+     * @param taskPath the path of the task
+     * @param fileCount the number of skipped files
+     */
+    public void recordSkipped(String taskPath, int fileCount) {
+        resultsFor(taskPath).skippedFileCount.addAndGet(fileCount);
+    }
+
+    /**
+     * Checks if the given task has reached its failure limit. Files that have not been started should be skipped.
+     *
+     * @param taskPath the path of the task
+     * @return {@code true} if no more files should be verified
+     */
+    public boolean isStopped(String taskPath) {
+        TaskResults results = resultsFor(taskPath);
+        return results.failureCount.get() >= results.maxFailures;
+    }
+
+    /**
+     * Removes and returns all results recorded for the given task. Should only be called once all of its work has
+     * finished.
+     *
+     * @param taskPath the path of the task
+     * @return the results
+     */
+    public Results finish(String taskPath) {
+        TaskResults results = resultsByTask.remove(taskPath);
+        if (results == null) {
+            return new Results(List.of(), 0);
+        }
+        return new Results(List.copyOf(results.failures), results.skippedFileCount.get());
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered.internal;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Property;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Build service that limits how many batches all header tasks of the build have queued or running at once, and how
+ * many each task has.
+ *
+ * <p>
+ * Every batch takes a permit before it is submitted, which its work action gives back once it is done. A task waits
+ * until a permit is given back, but it holds a worker lease while it waits, which queued batches may need to start.
+ * So if all of its own batches are queued, it waits for them instead, which gives up the lease. If it has no batches
+ * in flight at all, there is nothing of its own to wait for, and it submits one batch without a permit. Each task can
+ * therefore always have one batch in flight, and the limit is only exceeded by those first batches, at most by one
+ * less than the number of header tasks running at once.
+ * </p>
+ *
+ * <p>
+ * Not to be used directly by users.
+ * </p>
+ */
+public abstract class HeaderWorkLimitService
+    implements BuildService<HeaderWorkLimitService.Parameters>, AutoCloseable {
+    private static final Logger LOGGER = Logging.getLogger(HeaderWorkLimitService.class);
+
+    /**
+     * The name this service is registered under.
+     */
+    public static final String NAME = "levelHeaderedWorkLimit";
+
+    /**
+     * The Gradle property to set {@linkplain Parameters#getMaxInFlightBatches() the limit} with.
+     */
+    public static final String MAX_IN_FLIGHT_BATCHES_PROPERTY = "levelHeadered.maxInFlightBatchesPerBuild";
+
+    /**
+     * Parameters for {@link HeaderWorkLimitService}.
+     */
+    public interface Parameters extends BuildServiceParameters {
+        /**
+         * {@return the maximum number of batches of all tasks to have queued or running at once} It must be at least
+         * 1. The first batch of a task may still go over it, see {@link HeaderWorkLimitService}.
+         */
+        Property<Integer> getMaxInFlightBatches();
+    }
+
+    private static final class TaskBatches {
+        private int inFlight;
+        private int running;
+    }
+
+    private final int maxInFlightBatches;
+    private final Map<String, TaskBatches> batchesByTask = new HashMap<>();
+    private int inFlight;
+    private int peakInFlight;
+
+    @SuppressWarnings("doclint:missing")
+    public HeaderWorkLimitService() {
+        this.maxInFlightBatches = getParameters().getMaxInFlightBatches().get();
+    }
+
+    /**
+     * Takes a permit to submit a batch of the given task with, waiting until one is given back if none is free.
+     *
+     * @param taskPath the path of the task
+     * @param taskLimit the maximum number of batches of the task to have in flight
+     * @param timeout how long to wait at most
+     * @return whether a permit was taken
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized boolean tryAcquire(String taskPath, int taskLimit, Duration timeout)
+        throws InterruptedException {
+        long deadlineNanos = System.nanoTime() + timeout.toNanos();
+        TaskBatches task = batchesByTask.computeIfAbsent(taskPath, k -> new TaskBatches());
+        while (inFlight >= maxInFlightBatches || task.inFlight >= taskLimit) {
+            long remainingNanos = deadlineNanos - System.nanoTime();
+            if (remainingNanos <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+        }
+        add(task);
+        return true;
+    }
+
+    /**
+     * Records a batch of the given task as in flight without a permit, if the task has no other batches in flight.
+     * Such a task has nothing of its own to wait for that would give up its worker lease, so waiting for a permit
+     * could keep the batches holding them from ever starting.
+     *
+     * @param taskPath the path of the task
+     * @return whether the batch was recorded, otherwise the task has to wait for a permit
+     */
+    public synchronized boolean acquireFirstWithoutPermit(String taskPath) {
+        TaskBatches task = batchesByTask.computeIfAbsent(taskPath, k -> new TaskBatches());
+        if (task.inFlight > 0) {
+            return false;
+        }
+        add(task);
+        return true;
+    }
+
+    private void add(TaskBatches task) {
+        task.inFlight++;
+        inFlight++;
+        peakInFlight = Math.max(peakInFlight, inFlight);
+    }
+
+    /**
+     * Gives back a permit that was taken for a batch of the given task that is not submitted after all.
+     *
+     * @param taskPath the path of the task
+     */
+    public synchronized void giveBack(String taskPath) {
+        batchesByTask.get(taskPath).inFlight--;
+        inFlight--;
+        notifyAll();
+    }
+
+    /**
+     * Records that a batch of the given task started running.
+     *
+     * @param taskPath the path of the task
+     */
+    public synchronized void start(String taskPath) {
+        batchesByTask.get(taskPath).running++;
+    }
+
+    /**
+     * Gives back the permit of a started batch of the given task, once it is done.
+     *
+     * @param taskPath the path of the task
+     */
+    public synchronized void release(String taskPath) {
+        TaskBatches task = batchesByTask.get(taskPath);
+        task.inFlight--;
+        task.running--;
+        inFlight--;
+        notifyAll();
+    }
+
+    /**
+     * {@return whether the given task has batches in flight, but none of them are running}
+     *
+     * @param taskPath the path of the task
+     */
+    public synchronized boolean isOnlyQueued(String taskPath) {
+        TaskBatches task = batchesByTask.get(taskPath);
+        return task != null && task.inFlight > 0 && task.running == 0;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (peakInFlight > 0) {
+            LOGGER.info("At most {} of {} header batches were in flight at once", peakInFlight, maxInFlightBatches);
+        }
+    }
+}
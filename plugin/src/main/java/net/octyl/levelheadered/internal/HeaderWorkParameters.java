@@ -6,7 +6,8 @@
 package net.octyl.levelheadered.internal;
 
 import net.octyl.levelheadered.rewriter.FileHeaderRewriter;
-import org.gradle.api.file.RegularFileProperty;
+import net.octyl.levelheadered.rewriter.PreparedHeader;
+import org.gradle.api.file.ConfigurableFileCollection;
 import org.gradle.api.provider.Property;
 import org.gradle.workers.WorkParameters;
 
@@ -19,17 +20,53 @@ import org.gradle.workers.WorkParameters;
  */
 public interface HeaderWorkParameters extends WorkParameters {
     /**
-     * {@return the header text to apply to the source file} It is not yet in the comment format.
+     * {@return the header to apply to the source files} It was prepared by {@link #getRewriter()}.
      */
-    Property<String> getHeaderText();
+    Property<PreparedHeader> getHeader();
 
     /**
-     * {@return the rewriter to use to apply the header text to the source file}
+     * {@return the rewriter to use to apply the header to the source files}
      */
     Property<FileHeaderRewriter> getRewriter();
 
     /**
-     * {@return the source file to apply the header to}
+     * {@return the source files to apply the header to} They are processed in iteration order.
      */
-    RegularFileProperty getSourceFile();
+    ConfigurableFileCollection getSourceFiles();
+
+    /**
+     * {@return the maximum number of source files to process at once}
+     */
+    Property<Integer> getIoConcurrency();
+
+    /**
+     * {@return the registry of files already processed in this build}
+     */
+    Property<HeaderFileRegistryService> getFileRegistry();
+
+    /**
+     * {@return the cache of results by file contents, kept across builds}
+     */
+    Property<HeaderResultCacheService> getResultCache();
+
+    /**
+     * {@return the limit on batches in flight, which holds a permit for the work} It must be given back once the
+     * work is done.
+     */
+    Property<HeaderWorkLimitService> getWorkLimit();
+
+    /**
+     * {@return the path of the task the work is for}
+     */
+    Property<String> getTaskPath();
+
+    /**
+     * {@return the service to record the task's metrics into}
+     */
+    Property<HeaderMetricsService> getMetrics();
+
+    /**
+     * {@return the {@link System#nanoTime()} at which the work was submitted}
+     */
+    Property<Long> getSubmitTimeNanos();
 }
@@ -0,0 +1,108 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered.internal;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A thread-safe cache that evicts the least recently used entry once it holds too many.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public final class LruCache<K, V> {
+    private final LinkedHashMap<K, V> entries;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxSize the maximum number of entries to hold
+     */
+    public LruCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Max size must be at least 1, got " + maxSize);
+        }
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Gets the cached value for the given key.
+     *
+     * @param key the key
+     * @return the cached value, or {@code null} if there is none
+     */
+    public synchronized @Nullable V get(K key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Caches the given value.
+     *
+     * @param key the key
+     * @param value the value
+     */
+    public synchronized void put(K key, V value) {
+        entries.put(key, value);
+    }
+
+    /**
+     * Gets the cached value for the given key, computing and caching it if there is none.
+     *
+     * <p>
+     * The value is computed without holding the lock, so other threads are not blocked by slow computations. Two
+     * threads may compute the same value, in which case the last one is kept.
+     * </p>
+     *
+     * @param key the key
+     * @param compute the function to compute the value
+     * @param <X> the exception type the computation may throw
+     * @return the cached or computed value
+     * @throws X if the computation fails
+     */
+    public <X extends Exception> V computeIfAbsent(K key, Computation<? super K, ? extends V, X> compute) throws X {
+        V value = get(key);
+        if (value == null) {
+            value = compute.compute(key);
+            put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * {@return the number of cached entries}
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * A {@link Function} that may throw a checked exception.
+     *
+     * @param <K> the key type
+     * @param <V> the value type
+     * @param <X> the exception type
+     */
+    @FunctionalInterface
+    public interface Computation<K, V, X extends Exception> {
+        /**
+         * Computes the value for the given key.
+         *
+         * @param key the key
+         * @return the value
+         * @throws X if the computation fails
+         */
+        V compute(K key) throws X;
+    }
+}
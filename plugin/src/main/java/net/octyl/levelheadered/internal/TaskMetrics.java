@@ -0,0 +1,226 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered.internal;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and timings of one run of a header task.
+ *
+ * <p>
+ * Recording only adds to striped counters, so it is cheap enough to leave on, even from many threads at once.
+ * Per-file times are kept in a histogram with four buckets per power of two, so percentiles are accurate to within
+ * 25%.
+ * </p>
+ *
+ * <p>
+ * Not to be used directly by users.
+ * </p>
+ */
+public final class TaskMetrics {
+    /**
+     * A count of files or bytes.
+     */
+    public enum Counter {
+        /**
+         * Files the task was asked to process.
+         */
+        FILES_CONSIDERED,
+        /**
+         * Files skipped as no rewriter is configured for them.
+         */
+        FILES_WITHOUT_REWRITER,
+        /**
+         * Files processed by workers, including reused and binary ones.
+         */
+        FILES_PROCESSED,
+        /**
+         * Files whose result was reused from another task in the same build.
+         */
+        FILES_REUSED,
+        /**
+         * Files whose contents were checked before in the daemon, so their result came from the cache.
+         */
+        FILES_CACHED,
+        /**
+         * Files skipped as binary.
+         */
+        FILES_BINARY,
+        /**
+         * Batches of files submitted to workers.
+         */
+        BATCHES,
+        /**
+         * Bytes read to check headers.
+         */
+        BYTES_READ,
+        /**
+         * Bytes written when applying headers.
+         */
+        BYTES_WRITTEN,
+    }
+
+    /**
+     * A part of the work whose time is measured. Times of work done by workers add up over all of them.
+     */
+    public enum Phase {
+        /**
+         * Expanding the header template.
+         */
+        TEMPLATE_EXPANSION,
+        /**
+         * Preparing the header for each rewriter.
+         */
+        HEADER_PREPARATION,
+        /**
+         * Waiting for submitted batches to finish, as too many were in flight to submit more.
+         */
+        SUBMIT_WAIT,
+        /**
+         * Waiting between submitting a batch and a worker starting it.
+         */
+        QUEUE_WAIT,
+        /**
+         * Reading files.
+         */
+        READ,
+        /**
+         * Checking and rewriting headers in memory.
+         */
+        REWRITE,
+        /**
+         * Writing files.
+         */
+        WRITE,
+        /**
+         * Writing reports and reporting problems.
+         */
+        REPORTING,
+    }
+
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static int bucketOf(long nanos) {
+        long value = Math.max(1, nanos);
+        int log = 63 - Long.numberOfLeadingZeros(value);
+        if (log < SUB_BUCKET_BITS) {
+            return (int) value - 1;
+        }
+        int subBucket = (int) (value >>> (log - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (log - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long lowestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket + 1;
+        }
+        int log = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (log - SUB_BUCKET_BITS);
+    }
+
+    private final LongAdder[] counters = newAdders(Counter.values().length);
+    private final LongAdder[] phaseNanos = newAdders(Phase.values().length);
+    private final AtomicLongArray fileNanosHistogram = new AtomicLongArray(bucketOf(Long.MAX_VALUE) + 1);
+    private final LongAccumulator maxFileNanos = new LongAccumulator(Math::max, 0);
+
+    private static LongAdder[] newAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    @SuppressWarnings("doclint:missing")
+    public TaskMetrics() {
+    }
+
+    /**
+     * Adds to a counter.
+     *
+     * @param counter the counter
+     * @param amount the amount to add
+     */
+    public void add(Counter counter, long amount) {
+        counters[counter.ordinal()].add(amount);
+    }
+
+    /**
+     * Adds time spent in a phase.
+     *
+     * @param phase the phase
+     * @param nanos the time spent, in nanoseconds
+     */
+    public void addTime(Phase phase, long nanos) {
+        phaseNanos[phase.ordinal()].add(nanos);
+    }
+
+    /**
+     * Records a processed file.
+     *
+     * @param nanos the time it took to process the file, in nanoseconds
+     */
+    public void recordFile(long nanos) {
+        counters[Counter.FILES_PROCESSED.ordinal()].increment();
+        fileNanosHistogram.incrementAndGet(bucketOf(nanos));
+        maxFileNanos.accumulate(nanos);
+    }
+
+    /**
+     * {@return the value of a counter}
+     *
+     * @param counter the counter
+     */
+    public long get(Counter counter) {
+        return counters[counter.ordinal()].sum();
+    }
+
+    /**
+     * {@return the time spent in a phase, in nanoseconds}
+     *
+     * @param phase the phase
+     */
+    public long getNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()].sum();
+    }
+
+    /**
+     * Gets a percentile of the per-file processing times. This is the lowest time of the histogram bucket the
+     * percentile falls in.
+     *
+     * @param percentile the percentile, from {@code 0} to {@code 100}
+     * @return the time, in nanoseconds, or {@code 0} if no files were recorded
+     */
+    public long getFileNanosPercentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < fileNanosHistogram.length(); i++) {
+            total += fileNanosHistogram.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < fileNanosHistogram.length(); i++) {
+            seen += fileNanosHistogram.get(i);
+            if (seen >= rank) {
+                return Math.min(lowestValueOf(i), getMaxFileNanos());
+            }
+        }
+        return getMaxFileNanos();
+    }
+
+    /**
+     * {@return the longest time it took to process a file, in nanoseconds}
+     */
+    public long getMaxFileNanos() {
+        return maxFileNanos.get();
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered.internal;
+
+import groovy.text.Template;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bounded caches of compiled templates and their expansions, see {@link HeaderTemplateService}.
+ */
+final class TemplateCache {
+    private record ExpansionKey(String template, Map<String, String> variables) {
+    }
+
+    private final LruCache<String, Template> compiledTemplates;
+    private final LruCache<ExpansionKey, String> expandedTemplates;
+    private final LruCache.Computation<String, Template, IOException> compiler;
+
+    TemplateCache(
+        int maxCompiledTemplates,
+        int maxExpandedTemplates,
+        LruCache.Computation<String, Template, IOException> compiler
+    ) {
+        this.compiledTemplates = new LruCache<>(maxCompiledTemplates);
+        this.expandedTemplates = new LruCache<>(maxExpandedTemplates);
+        this.compiler = compiler;
+    }
+
+    /**
+     * Expands the given template, compiling it if it is not cached.
+     *
+     * <p>
+     * Expansions are keyed by the template and all variables, so values that change between builds, such as the year,
+     * get their own expansion.
+     * </p>
+     *
+     * @param template the template text
+     * @param variables the variables to expand the template with
+     * @return the expanded template
+     * @throws IOException if the template cannot be compiled or expanded
+     */
+    String expand(String template, Map<String, String> variables) throws IOException {
+        ExpansionKey key = new ExpansionKey(template, Map.copyOf(variables));
+        return expandedTemplates.computeIfAbsent(key, k -> {
+            Template compiled = compiledTemplates.computeIfAbsent(k.template(), compiler);
+            StringWriter writer = new StringWriter();
+            // Must copy variables into a new map, as the SimpleTemplateEngine may modify the map during expansion
+            compiled.make(new HashMap<>(k.variables())).writeTo(writer);
+            return writer.toString();
+        });
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered;
+
+import org.gradle.testkit.runner.BuildResult;
+import org.gradle.testkit.runner.BuildTask;
+import org.gradle.testkit.runner.TaskOutcome;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Measures the plugin on large synthetic builds, and writes the results to a JSON file.
+ *
+ * <p>
+ * The scale can be changed with the {@code levelheadered.perf.*} system properties, see {@link #SPEC}. The results
+ * are written to the file named by the {@code levelheadered.perf.results} system property.
+ * </p>
+ */
+// Builds running at the same time would skew each other's measurements
+@Execution(ExecutionMode.SAME_THREAD)
+class LargeProjectPerfTest extends AbstractFunctionalTest {
+    private static final SyntheticProjectGenerator.Spec SPEC = new SyntheticProjectGenerator.Spec(
+        Integer.getInteger("levelheadered.perf.subprojects", 10),
+        Integer.getInteger("levelheadered.perf.filesPerSubproject", 500),
+        Integer.getInteger("levelheadered.perf.minFileSize", 500),
+        Integer.getInteger("levelheadered.perf.maxFileSize", 50_000),
+        0.0,
+        SyntheticProjectGenerator.LineEndings.valueOf(
+            System.getProperty("levelheadered.perf.lineEndings", "PER_FILE_RANDOM")
+        ),
+        Long.getLong("levelheadered.perf.seed", 42L)
+    );
+    private static final double APPLY_MISSING_HEADER_SHARE = Double.parseDouble(
+        System.getProperty("levelheadered.perf.missingHeaderShare", "0.3")
+    );
+
+    /**
+     * Records memory use of the daemon for the duration of each build. Heap and GC numbers are for the whole daemon,
+     * so they include Gradle's own work.
+     */
+    private static final String ROOT_BUILD_SCRIPT = """
+        import java.lang.management.ManagementFactory
+        import java.lang.management.MemoryType
+
+        abstract class PerfProbe implements BuildService<PerfProbe.Params>, AutoCloseable {
+            interface Params extends BuildServiceParameters {
+                RegularFileProperty getOutput()
+            }
+
+            private final gcBeans = ManagementFactory.garbageCollectorMXBeans
+            private final heapPools = ManagementFactory.memoryPoolMXBeans.findAll { it.type == MemoryType.HEAP }
+            private final long gcCountAtStart = gcBeans.sum(0L) { it.collectionCount }
+            private final long gcMillisAtStart = gcBeans.sum(0L) { it.collectionTime }
+
+            PerfProbe() {
+                heapPools.each { it.resetPeakUsage() }
+            }
+
+            @Override
+            void close() {
+                long gcCount = gcBeans.sum(0L) { it.collectionCount } - gcCountAtStart
+                long gcMillis = gcBeans.sum(0L) { it.collectionTime } - gcMillisAtStart
+                long peakHeapBytes = heapPools.sum(0L) { it.peakUsage.used }
+                def file = parameters.output.get().asFile
+                file.parentFile.mkdirs()
+                file.text = "gcCount=$gcCount\\ngcMillis=$gcMillis\\npeakHeapBytes=$peakHeapBytes\\n"
+            }
+        }
+
+        gradle.sharedServices.registerIfAbsent("perfProbe", PerfProbe) {
+            parameters.output = layout.buildDirectory.file("perf-probe.properties")
+        }.get()
+        """;
+
+    private record Measurement(
+        String scenario,
+        int fileCount,
+        long totalBytes,
+        long wallMillis,
+        long gcCount,
+        long gcMillis,
+        long peakHeapBytes
+    ) {
+    }
+
+    private static final List<Measurement> MEASUREMENTS = new ArrayList<>();
+
+    @AfterAll
+    static void writeResults() throws IOException {
+        String resultsPath = System.getProperty("levelheadered.perf.results");
+        if (resultsPath == null) {
+            return;
+        }
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"timestamp\": \"").append(Instant.now()).append("\",\n");
+        json.append("  \"javaVersion\": \"").append(System.getProperty("java.version")).append("\",\n");
+        json.append("  \"availableProcessors\": ").append(Runtime.getRuntime().availableProcessors()).append(",\n");
+        json.append("  \"spec\": {")
+            .append("\"subprojects\": ").append(SPEC.subprojects())
+            .append(", \"filesPerSubproject\": ").append(SPEC.filesPerSubproject())
+            .append(", \"minFileSize\": ").append(SPEC.minFileSize())
+            .append(", \"maxFileSize\": ").append(SPEC.maxFileSize())
+            .append(", \"applyMissingHeaderShare\": ").append(APPLY_MISSING_HEADER_SHARE)
+            .append(", \"lineEndings\": \"").append(SPEC.lineEndings()).append('"')
+            .append(", \"seed\": ").append(SPEC.seed())
+            .append("},\n");
+        json.append("  \"scenarios\": [\n");
+        for (int i = 0; i < MEASUREMENTS.size(); i++) {
+            Measurement m = MEASUREMENTS.get(i);
+            json.append(String.format(
+                Locale.ROOT,
+                "    {\"scenario\": \"%s\", \"fileCount\": %d, \"totalBytes\": %d, \"wallMillis\": %d,"
+                    + " \"gcCount\": %d, \"gcMillis\": %d, \"peakHeapBytes\": %d}",
+                m.scenario(), m.fileCount(), m.totalBytes(), m.wallMillis(),
+                m.gcCount(), m.gcMillis(), m.peakHeapBytes()
+            ));
+            json.append(i + 1 < MEASUREMENTS.size() ? ",\n" : "\n");
+        }
+        json.append("  ]\n");
+        json.append("}\n");
+        Path resultsFile = Path.of(resultsPath);
+        Files.createDirectories(resultsFile.getParent());
+        Files.writeString(resultsFile, json);
+    }
+
+    private SyntheticProjectGenerator.GeneratedProject generate(SyntheticProjectGenerator.Spec spec)
+        throws IOException {
+        SyntheticProjectGenerator.GeneratedProject project = new SyntheticProjectGenerator(spec).generate(projectDir);
+        Files.writeString(projectDir.resolve("build.gradle"), ROOT_BUILD_SCRIPT);
+        return project;
+    }
+
+    private BuildResult measure(
+        String scenario, SyntheticProjectGenerator.GeneratedProject project, String task
+    ) throws IOException {
+        long start = System.nanoTime();
+        BuildResult result = createGradleRunner(task, "--parallel").build();
+        long wallMillis = (System.nanoTime() - start) / 1_000_000;
+
+        Properties probe = new Properties();
+        try (Reader reader = Files.newBufferedReader(projectDir.resolve("build/perf-probe.properties"))) {
+            probe.load(reader);
+        }
+        Measurement measurement = new Measurement(
+            scenario,
+            project.sourceFiles().size(),
+            project.totalBytes(),
+            wallMillis,
+            Long.parseLong(probe.getProperty("gcCount")),
+            Long.parseLong(probe.getProperty("gcMillis")),
+            Long.parseLong(probe.getProperty("peakHeapBytes"))
+        );
+        MEASUREMENTS.add(measurement);
+        System.out.println("Measured " + measurement);
+        return result;
+    }
+
+    private static void assertAllTasks(BuildResult result, String taskName, TaskOutcome outcome) {
+        for (int p = 0; p < SPEC.subprojects(); p++) {
+            BuildTask task = result.task(":project" + p + ":" + taskName);
+            assertThat(task).isNotNull();
+            assertThat(task.getOutcome()).isEqualTo(outcome);
+        }
+    }
+
+    @Test
+    void verify() throws IOException {
+        SyntheticProjectGenerator.GeneratedProject project = generate(SPEC);
+
+        BuildResult result = measure("coldVerify", project, "verifyHeader");
+        assertAllTasks(result, "verifyHeader", TaskOutcome.SUCCESS);
+
+        // Touch one file, keeping its header and line endings
+        Path touched = project.sourceFiles().get(0);
+        String content = Files.readString(touched);
+        String newline = content.contains("\r\n") ? "\r\n" : "\n";
+        Files.writeString(touched, content + "// touched" + newline);
+
+        result = measure("incrementalVerify", project, "verifyHeader");
+        assertThat(result.task(":project0:verifyHeader").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+        if (SPEC.subprojects() > 1) {
+            assertThat(result.task(":project1:verifyHeader").getOutcome()).isEqualTo(TaskOutcome.UP_TO_DATE);
+        }
+    }
+
+    @Test
+    void apply() throws IOException {
+        SyntheticProjectGenerator.GeneratedProject project = generate(
+            SPEC.withMissingHeaderShare(APPLY_MISSING_HEADER_SHARE)
+        );
+
+        BuildResult result = measure("fullApply", project, "applyHeader");
+        assertAllTasks(result, "applyHeader", TaskOutcome.SUCCESS);
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates multi-project builds with many Java files, for measuring how the plugin scales.
+ */
+final class SyntheticProjectGenerator {
+    /**
+     * The header text every generated build is configured with.
+     */
+    static final String HEADER_TEXT = "Copyright (c) Example Corp.\nSPDX-License-Identifier: MPL-2.0";
+
+    private static final int FILES_PER_PACKAGE = 100;
+
+    /**
+     * How the generated files end their lines.
+     */
+    enum LineEndings {
+        LF,
+        CRLF,
+        /**
+         * Each file picks LF or CRLF at random. A single file never mixes them.
+         */
+        PER_FILE_RANDOM,
+    }
+
+    /**
+     * The shape of a generated build.
+     *
+     * @param subprojects the number of subprojects
+     * @param filesPerSubproject the number of Java files in each subproject's main source set
+     * @param minFileSize the smallest file size, in characters
+     * @param maxFileSize the largest file size, in characters
+     * @param missingHeaderShare the share of files generated without the header, from 0 to 1
+     * @param lineEndings the line endings of the files
+     * @param seed the seed for everything chosen at random, so the same spec always generates the same build
+     */
+    record Spec(
+        int subprojects,
+        int filesPerSubproject,
+        int minFileSize,
+        int maxFileSize,
+        double missingHeaderShare,
+        LineEndings lineEndings,
+        long seed
+    ) {
+        Spec {
+            if (minFileSize < 1 || maxFileSize < minFileSize) {
+                throw new IllegalArgumentException(
+                    "File sizes must satisfy 1 <= min <= max, got " + minFileSize + " and " + maxFileSize
+                );
+            }
+            if (missingHeaderShare < 0 || missingHeaderShare > 1) {
+                throw new IllegalArgumentException("Missing header share must be in [0, 1], got " + missingHeaderShare);
+            }
+        }
+
+        /**
+         * {@return the total number of Java files}
+         */
+        int fileCount() {
+            return subprojects * filesPerSubproject;
+        }
+
+        Spec withMissingHeaderShare(double missingHeaderShare) {
+            return new Spec(
+                subprojects, filesPerSubproject, minFileSize, maxFileSize, missingHeaderShare, lineEndings, seed
+            );
+        }
+    }
+
+    /**
+     * A generated build.
+     *
+     * @param projectDir the root project directory
+     * @param sourceFiles all generated Java files
+     * @param totalBytes the total size of the generated Java files
+     */
+    record GeneratedProject(Path projectDir, List<Path> sourceFiles, long totalBytes) {
+    }
+
+    private final Spec spec;
+
+    SyntheticProjectGenerator(Spec spec) {
+        this.spec = spec;
+    }
+
+    /**
+     * Generates the build into the given directory. The root build script is left to the caller.
+     *
+     * @param projectDir the root project directory
+     * @return the generated build
+     * @throws IOException if an I/O error occurs
+     */
+    GeneratedProject generate(Path projectDir) throws IOException {
+        Random random = new Random(spec.seed());
+        StringBuilder settings = new StringBuilder("rootProject.name = \"synthetic\"\n");
+        List<Path> sourceFiles = new ArrayList<>(spec.fileCount());
+        long totalBytes = 0;
+        for (int p = 0; p < spec.subprojects(); p++) {
+            String projectName = "project" + p;
+            settings.append("include(\"").append(projectName).append("\")\n");
+            Path subprojectDir = projectDir.resolve(projectName);
+            Files.createDirectories(subprojectDir);
+            Files.writeString(subprojectDir.resolve("build.gradle.kts"), subprojectBuildScript());
+            for (int f = 0; f < spec.filesPerSubproject(); f++) {
+                String packageName = "com.example." + projectName + ".pkg" + (f / FILES_PER_PACKAGE);
+                String className = "Generated" + f;
+                Path file = subprojectDir.resolve("src/main/java")
+                    .resolve(packageName.replace('.', '/'))
+                    .resolve(className + ".java");
+                String content = javaFile(random, packageName, className);
+                Files.createDirectories(file.getParent());
+                Files.writeString(file, content);
+                sourceFiles.add(file);
+                totalBytes += content.length();
+            }
+        }
+        Files.writeString(projectDir.resolve("settings.gradle.kts"), settings);
+        return new GeneratedProject(projectDir, sourceFiles, totalBytes);
+    }
+
+    private static String subprojectBuildScript() {
+        return """
+            plugins {
+                java
+                id("net.octyl.level-headered")
+            }
+
+            levelHeadered.headerTemplate("%s")
+            """.formatted(HEADER_TEXT.replace("\n", "\\n"));
+    }
+
+    private String javaFile(Random random, String packageName, String className) {
+        String newline = switch (spec.lineEndings()) {
+            case LF -> "\n";
+            case CRLF -> "\r\n";
+            case PER_FILE_RANDOM -> random.nextBoolean() ? "\n" : "\r\n";
+        };
+        int size = fileSize(random);
+        StringBuilder content = new StringBuilder(size + 256);
+        if (random.nextDouble() >= spec.missingHeaderShare()) {
+            content.append("/*\n");
+            for (String line : HEADER_TEXT.split("\n")) {
+                content.append(" * ").append(line).append('\n');
+            }
+            content.append(" */\n\n");
+        }
+        content.append("package ").append(packageName).append(";\n\n");
+        content.append("public class ").append(className).append(" {\n");
+        for (int method = 0; content.length() < size; method++) {
+            content.append("""
+                    /**
+                     * Computes a value from the given input.
+                     */
+                    public int method%d(int input) {
+                        int result = input * %d;
+                        return result + "%s".length();
+                    }
+
+                """.formatted(method, random.nextInt(1000), Integer.toHexString(random.nextInt())));
+        }
+        content.append("}\n");
+        return newline.equals("\n") ? content.toString() : content.toString().replace("\n", newline);
+    }
+
+    /**
+     * Picks a file size, log-uniformly between the minimum and maximum, so there are many small files and few large
+     * ones, like in real code bases.
+     */
+    private int fileSize(Random random) {
+        double logMin = Math.log(spec.minFileSize());
+        double logMax = Math.log(spec.maxFileSize());
+        return (int) Math.round(Math.exp(logMin + random.nextDouble() * (logMax - logMin)));
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Tests for {@link FileBatcher}.
+ */
+class FileBatcherTest {
+    private static final Instant BASE_TIME = Instant.parse("2020-01-01T00:00:00Z");
+
+    @TempDir
+    Path tempDir;
+
+    private File fileModifiedAt(String name, long secondsAfterBase) throws IOException {
+        Path file = Files.writeString(tempDir.resolve(name), name);
+        Files.setLastModifiedTime(file, FileTime.from(BASE_TIME.plusSeconds(secondsAfterBase)));
+        return file.toFile();
+    }
+
+    @Test
+    void batchesNewestFilesFirst() throws IOException {
+        File oldest = fileModifiedAt("Oldest.java", 0);
+        File middle = fileModifiedAt("Middle.java", 60);
+        File newest = fileModifiedAt("Newest.java", 3600);
+        File older = fileModifiedAt("Older.java", 30);
+        File newer = fileModifiedAt("Newer.java", 120);
+
+        List<List<File>> batches = FileBatcher.batchNewestFirst(List.of(oldest, middle, newest, older, newer), 2);
+
+        assertThat(batches).containsExactly(
+            List.of(newest, newer),
+            List.of(middle, older),
+            List.of(oldest)
+        ).inOrder();
+    }
+
+    @Test
+    void batchesNothingWithoutFiles() {
+        assertThat(FileBatcher.batchNewestFirst(List.of(), 2)).isEmpty();
+    }
+}
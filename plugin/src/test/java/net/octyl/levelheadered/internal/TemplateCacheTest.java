@@ -0,0 +1,58 @@
+/*
+ * SPDX-FileCopyrightText: Octavia Togami <octy@octyl.net>
+ * SPDX-License-Identifier: MPL-2.0
+ */
+
+package net.octyl.levelheadered.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Tests for {@link TemplateCache}.
+ */
+class TemplateCacheTest {
+    private static final String TEMPLATE = "Copyright ${year} ${author}";
+
+    private final List<String> compiled = new ArrayList<>();
+    private final TemplateCache cache = new TemplateCache(4, 4, template -> {
+        compiled.add(template);
+        return HeaderTemplateService.compile(template);
+    });
+
+    @Test
+    void expandsEachYearSeparately() throws IOException {
+        assertThat(cache.expand(TEMPLATE, Map.of("year", "2025", "author", "Alice")))
+            .isEqualTo("Copyright 2025 Alice");
+        assertThat(cache.expand(TEMPLATE, Map.of("year", "2026", "author", "Alice")))
+            .isEqualTo("Copyright 2026 Alice");
+        assertThat(cache.expand(TEMPLATE, Map.of("year", "2026", "author", "Bob")))
+            .isEqualTo("Copyright 2026 Bob");
+        assertThat(cache.expand(TEMPLATE, Map.of("year", "2025", "author", "Alice")))
+            .isEqualTo("Copyright 2025 Alice");
+    }
+
+    @Test
+    void reusesCompiledTemplate() throws IOException {
+        cache.expand(TEMPLATE, Map.of("year", "2025", "author", "Alice"));
+        cache.expand(TEMPLATE, Map.of("year", "2026", "author", "Alice"));
+        cache.expand(TEMPLATE, Map.of("year", "2025", "author", "Alice"));
+        cache.expand("Other ${year}", Map.of("year", "2025"));
+        assertThat(compiled).containsExactly(TEMPLATE, "Other ${year}").inOrder();
+    }
+
+    @Test
+    void recompilesEvictedTemplate() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            cache.expand("Template " + i + " ${year}", Map.of("year", "2026"));
+        }
+        assertThat(cache.expand("Template 0 ${year}", Map.of("year", "2027"))).isEqualTo("Template 0 2027");
+        assertThat(compiled).hasSize(6);
+    }
+}
@@ -11,4 +11,6 @@ pluginManagement {
 }
 
 rootProject.name = "LevelHeadered"
+include("core")
 include("plugin")
+include("cli")